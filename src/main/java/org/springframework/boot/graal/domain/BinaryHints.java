@@ -0,0 +1,359 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationDescriptor;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationJsonMarshaller;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptor;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptorJsonMarshaller;
+import org.springframework.boot.graal.domain.proxies.ProxyDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.ConditionDescriptor;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.JsonMarshaller;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.domain.resources.ResourcesDescriptor;
+import org.springframework.boot.graal.domain.resources.ResourcesJsonMarshaller;
+
+/**
+ * The reflection, resources, proxies and initialization hints in a single compact binary file, for libraries
+ * to ship alongside (or instead of) the JSON. All names go into a string table written once up front, the
+ * rest of the file is varint encoded indexes into it, with the reflection flags of a class packed into one
+ * varint bitmask of {@link Flag} ordinals. A file on disk is memory mapped and decoded in one pass.
+ * <p>
+ * Layout: magic, version, string table (count, then length prefixed UTF8), reflection (count, then per class
+ * name, flags, condition, fields and methods), resources, proxies and finally the four initialization lists. Run
+ * {@link #main(String[])} to create one from the JSON files.
+ *
+ * @author Andy Clement
+ */
+public class BinaryHints {
+
+	private final static int MAGIC = 0x5342_4748; // SBGH
+
+	private final static int VERSION = 2;
+
+	private ReflectionDescriptor reflection = new ReflectionDescriptor();
+
+	private ResourcesDescriptor resources = new ResourcesDescriptor();
+
+	private ProxiesDescriptor proxies = new ProxiesDescriptor();
+
+	private InitializationDescriptor initialization = new InitializationDescriptor();
+
+	public ReflectionDescriptor getReflection() {
+		return reflection;
+	}
+
+	public void setReflection(ReflectionDescriptor reflection) {
+		this.reflection = reflection;
+	}
+
+	public ResourcesDescriptor getResources() {
+		return resources;
+	}
+
+	public void setResources(ResourcesDescriptor resources) {
+		this.resources = resources;
+	}
+
+	public ProxiesDescriptor getProxies() {
+		return proxies;
+	}
+
+	public void setProxies(ProxiesDescriptor proxies) {
+		this.proxies = proxies;
+	}
+
+	public InitializationDescriptor getInitialization() {
+		return initialization;
+	}
+
+	public void setInitialization(InitializationDescriptor initialization) {
+		this.initialization = initialization;
+	}
+
+	public void write(OutputStream outputStream) throws IOException {
+		StringTable strings = new StringTable();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		writeVarint(body, reflection.size());
+		for (ClassDescriptor cd : reflection.getClassDescriptors()) {
+			writeVarint(body, strings.index(cd.getName()));
+			int flags = 0;
+			if (cd.getFlags() != null) {
+				for (Flag flag : cd.getFlags()) {
+					flags |= 1 << flag.ordinal();
+				}
+			}
+			writeVarint(body, flags);
+			// 0 for none, otherwise the kind ordinal plus one followed by the trigger type
+			ConditionDescriptor condition = cd.getCondition();
+			writeVarint(body, condition == null ? 0 : condition.getKind().ordinal() + 1);
+			if (condition != null) {
+				writeVarint(body, strings.index(condition.getTypename()));
+			}
+			List<FieldDescriptor> fields = cd.getFields();
+			writeVarint(body, fields == null ? 0 : fields.size());
+			if (fields != null) {
+				for (FieldDescriptor fd : fields) {
+					writeVarint(body, (strings.index(fd.getName()) << 1) | (fd.isAllowWrite() ? 1 : 0));
+				}
+			}
+			List<MethodDescriptor> methods = cd.getMethods();
+			writeVarint(body, methods == null ? 0 : methods.size());
+			if (methods != null) {
+				for (MethodDescriptor md : methods) {
+					writeVarint(body, strings.index(md.getName()));
+					// 0 means no parameter types given, so all methods with that name
+					List<String> parameterTypes = md.getParameterTypes();
+					writeVarint(body, parameterTypes == null ? 0 : parameterTypes.size() + 1);
+					if (parameterTypes != null) {
+						for (String parameterType : parameterTypes) {
+							writeVarint(body, strings.index(parameterType));
+						}
+					}
+				}
+			}
+		}
+		writeStrings(body, strings, resources.getPatterns());
+		writeVarint(body, proxies.getProxyDescriptors().size());
+		for (ProxyDescriptor pd : proxies.getProxyDescriptors()) {
+			writeStrings(body, strings, pd.getInterfaces());
+		}
+		writeStrings(body, strings, initialization.getBuildtimeClasses());
+		writeStrings(body, strings, initialization.getBuildtimePackages());
+		writeStrings(body, strings, initialization.getRuntimeClasses());
+		writeStrings(body, strings, initialization.getRuntimePackages());
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		writeInt(header, MAGIC);
+		writeVarint(header, VERSION);
+		writeVarint(header, strings.strings.size());
+		for (String s : strings.strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarint(header, bytes.length);
+			header.write(bytes);
+		}
+		header.writeTo(outputStream);
+		body.writeTo(outputStream);
+	}
+
+	public static BinaryHints read(ByteBuffer bb) {
+		if (bb.getInt() != MAGIC) {
+			throw new IllegalStateException("Not a hints file");
+		}
+		int version = readVarint(bb);
+		if (version != VERSION) {
+			throw new IllegalStateException("Unsupported hints file version " + version);
+		}
+		String[] strings = new String[readVarint(bb)];
+		byte[] scratch = new byte[256];
+		for (int i = 0; i < strings.length; i++) {
+			int length = readVarint(bb);
+			if (scratch.length < length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			bb.get(scratch, 0, length);
+			strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+		BinaryHints hints = new BinaryHints();
+		Flag[] allFlags = Flag.values();
+		ConditionDescriptor.Kind[] allKinds = ConditionDescriptor.Kind.values();
+		for (int i = 0, max = readVarint(bb); i < max; i++) {
+			ClassDescriptor cd = ClassDescriptor.of(strings[readVarint(bb)]);
+			int flags = readVarint(bb);
+			for (Flag flag : allFlags) {
+				if ((flags & (1 << flag.ordinal())) != 0) {
+					cd.setFlag(flag);
+				}
+			}
+			int kind = readVarint(bb);
+			if (kind != 0) {
+				cd.setCondition(ConditionDescriptor.of(allKinds[kind - 1], strings[readVarint(bb)]));
+			}
+			for (int f = 0, fmax = readVarint(bb); f < fmax; f++) {
+				int field = readVarint(bb);
+				cd.addFieldDescriptor(FieldDescriptor.of(strings[field >>> 1], (field & 1) != 0));
+			}
+			for (int m = 0, mmax = readVarint(bb); m < mmax; m++) {
+				String name = strings[readVarint(bb)];
+				int count = readVarint(bb);
+				List<String> parameterTypes = null;
+				if (count != 0) {
+					parameterTypes = new ArrayList<>(count - 1);
+					for (int p = 1; p < count; p++) {
+						parameterTypes.add(strings[readVarint(bb)]);
+					}
+				}
+				MethodDescriptor md = MethodDescriptor.of(name);
+				md.setParameterTypes(parameterTypes);
+				cd.addMethodDescriptor(md);
+			}
+			hints.reflection.add(cd);
+		}
+		readStrings(bb, strings).forEach(hints.resources::add);
+		for (int i = 0, max = readVarint(bb); i < max; i++) {
+			hints.proxies.add(ProxyDescriptor.of(readStrings(bb, strings)));
+		}
+		readStrings(bb, strings).forEach(hints.initialization::addBuildtimeClass);
+		readStrings(bb, strings).forEach(hints.initialization::addBuildtimePackage);
+		readStrings(bb, strings).forEach(hints.initialization::addRuntimeClass);
+		readStrings(bb, strings).forEach(hints.initialization::addRuntimePackage);
+		return hints;
+	}
+
+	/**
+	 * Load hints from a URL, memory mapping it if it is a file and reading it fully otherwise (e.g. an entry
+	 * in a jar).
+	 */
+	public static BinaryHints load(URL url) throws IOException {
+		if (url.getProtocol().equals("file")) {
+			try (FileChannel fc = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+				return read(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+			} catch (URISyntaxException e) {
+				throw new IOException("Unable to load hints from " + url, e);
+			}
+		}
+		try (InputStream is = url.openStream()) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			return read(ByteBuffer.wrap(baos.toByteArray()));
+		}
+	}
+
+	/**
+	 * Convert JSON hint files into a binary one. Usage: <tt>BinaryHints &lt;output&gt; &lt;json&gt;...</tt>
+	 * where each JSON file is recognized by name (reflect.json, resources.json, proxies.json and
+	 * initialization.json).
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: BinaryHints <output> <json>...");
+			return;
+		}
+		BinaryHints hints = new BinaryHints();
+		for (int i = 1; i < args.length; i++) {
+			File f = new File(args[i]);
+			try (InputStream is = new FileInputStream(f)) {
+				switch (f.getName()) {
+				case "reflect.json":
+					hints.setReflection(JsonMarshaller.read(is));
+					break;
+				case "resources.json":
+					hints.setResources(ResourcesJsonMarshaller.read(is));
+					break;
+				case "proxies.json":
+					hints.setProxies(ProxiesDescriptorJsonMarshaller.read(is));
+					break;
+				case "initialization.json":
+					hints.setInitialization(InitializationJsonMarshaller.read(is));
+					break;
+				default:
+					throw new IllegalArgumentException("Unrecognized hint file " + f);
+				}
+			}
+		}
+		try (OutputStream os = new FileOutputStream(args[0])) {
+			hints.write(os);
+		}
+	}
+
+	private static void writeStrings(OutputStream os, StringTable strings, List<String> list) throws IOException {
+		writeVarint(os, list.size());
+		for (String s : list) {
+			writeVarint(os, strings.index(s));
+		}
+	}
+
+	private static List<String> readStrings(ByteBuffer bb, String[] strings) {
+		int count = readVarint(bb);
+		List<String> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(strings[readVarint(bb)]);
+		}
+		return list;
+	}
+
+	private static void writeInt(OutputStream os, int value) throws IOException {
+		os.write(value >>> 24);
+		os.write(value >>> 16);
+		os.write(value >>> 8);
+		os.write(value);
+	}
+
+	static void writeVarint(OutputStream os, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			os.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		os.write(value);
+	}
+
+	static int readVarint(ByteBuffer bb) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = bb.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed varint");
+	}
+
+	private static class StringTable {
+
+		final List<String> strings = new ArrayList<>();
+
+		final Map<String, Integer> indexes = new HashMap<>();
+
+		int index(String s) {
+			Integer index = indexes.get(s);
+			if (index == null) {
+				index = strings.size();
+				strings.add(s);
+				indexes.put(s, index);
+			}
+			return index;
+		}
+	}
+
+}
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming pull parser for the JSON hint files, letting the marshallers build descriptors as they go rather
+ * than materializing a complete <tt>JSONArray</tt>/<tt>JSONObject</tt> tree first. Accepts the same relaxed
+ * input as the shaded <tt>JSONTokener</tt> the files were written for: <tt>//</tt>, <tt>/* *&#47;</tt> and
+ * <tt>#</tt> comments, single quoted strings, unquoted names and values and trailing commas.
+ * <p>
+ * Usage is the usual pull style, e.g. <tt>beginArray(); while (hasNext()) { ... } endArray();</tt>.
+ * Not thread safe.
+ *
+ * @author Andy Clement
+ */
+public class JsonPullParser {
+
+	public enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	// What the parser is inside of, held on a stack
+	private final static byte EMPTY_DOCUMENT = 0;
+
+	private final static byte NONEMPTY_DOCUMENT = 1;
+
+	private final static byte EMPTY_ARRAY = 2;
+
+	private final static byte NONEMPTY_ARRAY = 3;
+
+	private final static byte EMPTY_OBJECT = 4;
+
+	private final static byte DANGLING_NAME = 5;
+
+	private final static byte NONEMPTY_OBJECT = 6;
+
+	private final Reader reader;
+
+	private final char[] buffer = new char[8192];
+
+	private int pos;
+
+	private int limit;
+
+	private int line = 1;
+
+	private byte[] stack = new byte[32];
+
+	private int depth = 1;
+
+	private Token peeked;
+
+	// Text of a peeked NAME, STRING, NUMBER or BOOLEAN
+	private String peekedText;
+
+	private final StringBuilder sb = new StringBuilder();
+
+	public JsonPullParser(Reader reader) {
+		this.reader = reader;
+		stack[0] = EMPTY_DOCUMENT;
+	}
+
+	public static JsonPullParser of(InputStream inputStream) {
+		return new JsonPullParser(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+	}
+
+	public Token peek() throws IOException {
+		if (peeked != null) {
+			return peeked;
+		}
+		int c;
+		switch (stack[depth - 1]) {
+		case EMPTY_DOCUMENT:
+			stack[depth - 1] = NONEMPTY_DOCUMENT;
+			c = nextNonWhitespace();
+			if (c == -1) {
+				throw syntaxError("Empty document");
+			}
+			return peeked = value(c);
+		case NONEMPTY_DOCUMENT:
+			c = nextNonWhitespace();
+			if (c != -1) {
+				throw syntaxError("Unexpected content after the end of the document");
+			}
+			return peeked = Token.END_DOCUMENT;
+		case EMPTY_ARRAY:
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (stack[depth - 1] == NONEMPTY_ARRAY && (c == ',' || c == ';')) {
+				c = nextNonWhitespace();
+			} else if (stack[depth - 1] == NONEMPTY_ARRAY && c != ']') {
+				throw syntaxError("Expected , or ] but was " + describe(c));
+			}
+			if (c == ']') {
+				return peeked = Token.END_ARRAY;
+			}
+			stack[depth - 1] = NONEMPTY_ARRAY;
+			return peeked = value(c);
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (stack[depth - 1] == NONEMPTY_OBJECT && (c == ',' || c == ';')) {
+				c = nextNonWhitespace();
+			} else if (stack[depth - 1] == NONEMPTY_OBJECT && c != '}') {
+				throw syntaxError("Expected , or } but was " + describe(c));
+			}
+			if (c == '}') {
+				return peeked = Token.END_OBJECT;
+			}
+			if (c == '"' || c == '\'') {
+				peekedText = string((char) c);
+			} else if (c != -1 && !isDelimiter(c)) {
+				peekedText = literal((char) c);
+			} else {
+				throw syntaxError("Expected a name but was " + describe(c));
+			}
+			stack[depth - 1] = DANGLING_NAME;
+			return peeked = Token.NAME;
+		case DANGLING_NAME:
+			c = nextNonWhitespace();
+			if (c == '=') {
+				// JSONTokener also takes = and =>
+				if (peekChar() == '>') {
+					pos++;
+				}
+			} else if (c != ':') {
+				throw syntaxError("Expected : but was " + describe(c));
+			}
+			stack[depth - 1] = NONEMPTY_OBJECT;
+			return peeked = value(nextNonWhitespace());
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * @return true if the current array or object has another element
+	 */
+	public boolean hasNext() throws IOException {
+		Token t = peek();
+		return t != Token.END_ARRAY && t != Token.END_OBJECT && t != Token.END_DOCUMENT;
+	}
+
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		depth--;
+	}
+
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		depth--;
+	}
+
+	/**
+	 * Check nothing but whitespace and comments follow the value just read.
+	 */
+	public void endDocument() throws IOException {
+		expect(Token.END_DOCUMENT);
+	}
+
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		return peekedText;
+	}
+
+	/**
+	 * @return the next value as a string, numbers and booleans are returned as they were written
+	 */
+	public String nextString() throws IOException {
+		Token t = peek();
+		if (t != Token.STRING && t != Token.NUMBER && t != Token.BOOLEAN) {
+			throw syntaxError("Expected a string but was " + t);
+		}
+		peeked = null;
+		return peekedText;
+	}
+
+	/**
+	 * @return the next value as a boolean, the strings <tt>"true"</tt> and <tt>"false"</tt> included
+	 */
+	public boolean nextBoolean() throws IOException {
+		Token t = peek();
+		if ((t != Token.BOOLEAN && t != Token.STRING)
+				|| !(peekedText.equalsIgnoreCase("true") || peekedText.equalsIgnoreCase("false"))) {
+			throw syntaxError("Expected a boolean but was " + t);
+		}
+		peeked = null;
+		return peekedText.equalsIgnoreCase("true");
+	}
+
+	public void nextNull() throws IOException {
+		expect(Token.NULL);
+	}
+
+	/**
+	 * Skip the next value, including everything nested within it if it is an array or object.
+	 */
+	public void skipValue() throws IOException {
+		int count = 0;
+		do {
+			Token t = peek();
+			switch (t) {
+			case BEGIN_ARRAY:
+				beginArray();
+				count++;
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+				count++;
+				break;
+			case END_ARRAY:
+				endArray();
+				count--;
+				break;
+			case END_OBJECT:
+				endObject();
+				count--;
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of input");
+			default:
+				peeked = null;
+			}
+		} while (count != 0);
+	}
+
+	/**
+	 * @return the line the parser has reached, for error messages
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	private void expect(Token expected) throws IOException {
+		Token t = peek();
+		if (t != expected) {
+			throw syntaxError("Expected " + expected + " but was " + t);
+		}
+		peeked = null;
+	}
+
+	private void push(byte context) {
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth++] = context;
+	}
+
+	private Token value(int c) throws IOException {
+		switch (c) {
+		case '[':
+			return Token.BEGIN_ARRAY;
+		case '{':
+			return Token.BEGIN_OBJECT;
+		case '"':
+		case '\'':
+			peekedText = string((char) c);
+			return Token.STRING;
+		case -1:
+			throw syntaxError("Unexpected end of input");
+		default:
+			if (isDelimiter(c)) {
+				throw syntaxError("Expected a value but was " + describe(c));
+			}
+			String literal = literal((char) c);
+			peekedText = literal;
+			if (literal.equals("null")) {
+				return Token.NULL;
+			}
+			if (literal.equalsIgnoreCase("true") || literal.equalsIgnoreCase("false")) {
+				return Token.BOOLEAN;
+			}
+			char first = literal.charAt(0);
+			return (first >= '0' && first <= '9') || first == '-' ? Token.NUMBER : Token.STRING;
+		}
+	}
+
+	private String string(char quote) throws IOException {
+		sb.setLength(0);
+		while (true) {
+			// Copy runs of plain characters straight out of the buffer
+			int start = pos;
+			while (pos < limit) {
+				char c = buffer[pos];
+				if (c == quote) {
+					if (sb.length() == 0) {
+						return new String(buffer, start, pos++ - start);
+					}
+					sb.append(buffer, start, pos++ - start);
+					return sb.toString();
+				}
+				if (c == '\\') {
+					break;
+				}
+				if (c == '\n') {
+					line++;
+				}
+				pos++;
+			}
+			sb.append(buffer, start, pos - start);
+			int c = read();
+			if (c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+			if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'u':
+					int value = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit == -1) {
+							throw syntaxError("Bad unicode escape");
+						}
+						value = (value << 4) | digit;
+					}
+					sb.append((char) value);
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case -1:
+					throw syntaxError("Unterminated escape sequence");
+				default:
+					sb.append((char) c);
+				}
+			} else {
+				// Buffer was exhausted and has been refilled
+				pos--;
+			}
+		}
+	}
+
+	private String literal(char first) throws IOException {
+		sb.setLength(0);
+		sb.append(first);
+		int c;
+		while ((c = peekChar()) != -1 && !isDelimiter(c) && !Character.isWhitespace(c)) {
+			sb.append((char) c);
+			pos++;
+		}
+		return sb.toString();
+	}
+
+	private static boolean isDelimiter(int c) {
+		switch (c) {
+		case '{':
+		case '}':
+		case '[':
+		case ']':
+		case '/':
+		case '\\':
+		case ':':
+		case ',':
+		case '=':
+		case ';':
+		case '#':
+		case '"':
+		case '\'':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '\n') {
+				line++;
+			} else if (c == '#') {
+				skipToEndOfLine();
+			} else if (c == '/') {
+				int next = peekChar();
+				if (next == '/') {
+					skipToEndOfLine();
+				} else if (next == '*') {
+					pos++;
+					skipComment();
+				} else {
+					return c;
+				}
+			} else if (!Character.isWhitespace(c)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	private void skipToEndOfLine() throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '\n' || c == '\r') {
+				if (c == '\n') {
+					line++;
+				}
+				return;
+			}
+		}
+	}
+
+	private void skipComment() throws IOException {
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '\n') {
+				line++;
+			} else if (c == '*' && peekChar() == '/') {
+				pos++;
+				return;
+			}
+		}
+		throw syntaxError("Unterminated comment");
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos++];
+	}
+
+	private int peekChar() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos];
+	}
+
+	private boolean fill() throws IOException {
+		int n = reader.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private static String describe(int c) {
+		return c == -1 ? "end of input" : "'" + (char) c + "'";
+	}
+
+	private IllegalStateException syntaxError(String message) {
+		return new IllegalStateException(message + " at line " + line);
+	}
+
+}
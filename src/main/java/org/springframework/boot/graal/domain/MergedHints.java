@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationDescriptor;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptor;
+import org.springframework.boot.graal.domain.proxies.ProxyDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.domain.resources.ResourcesDescriptor;
+
+/**
+ * Hints gathered from any number of hint files, merged into one model. Reflection entries are deduplicated by
+ * type with their flags, fields and methods unioned, resource patterns and proxy interface lists are
+ * deduplicated, and every entry remembers which files contributed to it. If one file asks for a class (or
+ * package) to be initialized at build time and another at run time, run time wins as that is always safe.
+ * Entries keep the order in which they were first seen.
+ *
+ * @author Andy Clement
+ */
+public class MergedHints {
+
+	private final ReflectionDescriptor reflection = new ReflectionDescriptor();
+
+	private final Map<String, Set<String>> reflectionSources = new HashMap<>();
+
+	// Keyed by pattern/interfaces/name, the values are the sources
+	private final Map<String, Set<String>> resources = new LinkedHashMap<>();
+
+	private final Map<List<String>, Set<String>> proxies = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> buildtimeClasses = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> buildtimePackages = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> runtimeClasses = new LinkedHashMap<>();
+
+	private final Map<String, Set<String>> runtimePackages = new LinkedHashMap<>();
+
+	private final List<String> sources = new ArrayList<>();
+
+	/**
+	 * Merge in the hints from one source.
+	 * @param source where the hints came from, e.g. <tt>/path/to/lib.jar!/META-INF/native-image/reflect-config.json</tt>
+	 */
+	public synchronized void add(String source, BinaryHints hints) {
+		add(source, hints.getReflection());
+		add(source, hints.getResources());
+		add(source, hints.getProxies());
+		add(source, hints.getInitialization());
+	}
+
+	public synchronized void add(String source, ReflectionDescriptor rd) {
+		addSource(source);
+		for (ClassDescriptor cd : rd.getClassDescriptors()) {
+			// Copied so later merges never modify the descriptors of the source
+			ClassDescriptor copy = ClassDescriptor.of(cd.getName());
+			copy.setCondition(cd.getCondition());
+			copy.merge(cd);
+			reflection.add(copy);
+			record(reflectionSources, cd.getName(), source);
+		}
+	}
+
+	public synchronized void add(String source, ResourcesDescriptor rd) {
+		addSource(source);
+		for (String pattern : rd.getPatterns()) {
+			record(resources, pattern, source);
+		}
+	}
+
+	public synchronized void add(String source, ProxiesDescriptor pd) {
+		addSource(source);
+		for (ProxyDescriptor proxy : pd.getProxyDescriptors()) {
+			record(proxies, proxy.getInterfaces(), source);
+		}
+	}
+
+	public synchronized void add(String source, InitializationDescriptor id) {
+		addSource(source);
+		id.getBuildtimeClasses().forEach(c -> record(buildtimeClasses, c, source));
+		id.getBuildtimePackages().forEach(p -> record(buildtimePackages, p, source));
+		id.getRuntimeClasses().forEach(c -> record(runtimeClasses, c, source));
+		id.getRuntimePackages().forEach(p -> record(runtimePackages, p, source));
+	}
+
+	/**
+	 * @return the sources merged so far, in the order they were added
+	 */
+	public synchronized List<String> getSources() {
+		return new ArrayList<>(sources);
+	}
+
+	public synchronized ReflectionDescriptor getReflection() {
+		return new ReflectionDescriptor(reflection);
+	}
+
+	/**
+	 * @return the files that asked for reflective access to the dotted type name
+	 */
+	public synchronized Set<String> getReflectionSources(String typename) {
+		return reflectionSources.getOrDefault(typename, Collections.emptySet());
+	}
+
+	public synchronized ResourcesDescriptor getResources() {
+		ResourcesDescriptor rd = new ResourcesDescriptor();
+		resources.keySet().forEach(rd::add);
+		return rd;
+	}
+
+	public synchronized Set<String> getResourceSources(String pattern) {
+		return resources.getOrDefault(pattern, Collections.emptySet());
+	}
+
+	public synchronized ProxiesDescriptor getProxies() {
+		ProxiesDescriptor pd = new ProxiesDescriptor();
+		proxies.keySet().forEach(interfaces -> pd.add(ProxyDescriptor.of(interfaces)));
+		return pd;
+	}
+
+	public synchronized Set<String> getProxySources(List<String> interfaces) {
+		return proxies.getOrDefault(interfaces, Collections.emptySet());
+	}
+
+	/**
+	 * @return the merged initialization hints, with any conflicts resolved in favour of run time initialization
+	 */
+	public synchronized InitializationDescriptor getInitialization() {
+		InitializationDescriptor id = new InitializationDescriptor();
+		resolve(buildtimeClasses, runtimeClasses, "class").forEach(id::addBuildtimeClass);
+		resolve(buildtimePackages, runtimePackages, "package").forEach(id::addBuildtimePackage);
+		runtimeClasses.keySet().forEach(id::addRuntimeClass);
+		runtimePackages.keySet().forEach(id::addRuntimePackage);
+		return id;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("MergedHints from #%s sources: #%s types #%s resource patterns #%s proxies", sources.size(),
+				reflection.size(), resources.size(), proxies.size());
+	}
+
+	private List<String> resolve(Map<String, Set<String>> buildtime, Map<String, Set<String>> runtime, String kind) {
+		List<String> result = new ArrayList<>();
+		for (Map.Entry<String, Set<String>> entry : buildtime.entrySet()) {
+			Set<String> conflicting = runtime.get(entry.getKey());
+			if (conflicting != null) {
+				System.out.println("SBG: WARNING: " + kind + " " + entry.getKey() + " is initialized at build time by "
+						+ entry.getValue() + " but at run time by " + conflicting + ", using run time");
+			} else {
+				result.add(entry.getKey());
+			}
+		}
+		return result;
+	}
+
+	private void addSource(String source) {
+		if (sources.isEmpty() || !sources.get(sources.size() - 1).equals(source)) {
+			sources.add(source);
+		}
+	}
+
+	private static <K> void record(Map<K, Set<String>> map, K key, String source) {
+		map.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(source);
+	}
+
+}
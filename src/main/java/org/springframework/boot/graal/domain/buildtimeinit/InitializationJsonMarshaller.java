@@ -19,12 +19,12 @@ package org.springframework.boot.graal.domain.buildtimeinit;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
-import org.springframework.boot.configurationprocessor.json.JSONArray;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.boot.graal.domain.JsonPullParser;
 
 /**
  * Marshaller to write {@link InitializationDescriptor} as JSON.
@@ -33,8 +33,6 @@ import org.springframework.boot.configurationprocessor.json.JSONObject;
  */
 public class InitializationJsonMarshaller {
 
-	private static final int BUFFER_SIZE = 4098;
-
 	public void write(InitializationDescriptor metadata, OutputStream outputStream)
 			throws IOException {
 		try {
@@ -66,35 +64,55 @@ public class InitializationJsonMarshaller {
 	}
 
 	public static InitializationDescriptor read(InputStream inputStream) throws Exception {
-		InitializationDescriptor metadata = toDelayInitDescriptor(new JSONObject(toString(inputStream)));
+		JsonPullParser parser = JsonPullParser.of(inputStream);
+		InitializationDescriptor metadata = toDelayInitDescriptor(parser);
+		parser.endDocument();
 		return metadata;
 	}
 	
-	private static InitializationDescriptor toDelayInitDescriptor(JSONObject object) throws Exception {
+	private static InitializationDescriptor toDelayInitDescriptor(JsonPullParser parser) throws Exception {
 		InitializationDescriptor rd = new InitializationDescriptor();
-		JSONArray array = object.getJSONArray("buildTimeInitialization");
-		for (int i=0;i<array.length();i++) {
-			JSONObject jsonObject = array.getJSONObject(i);
-			if (jsonObject.has("class")) {
-				rd.addBuildtimeClass(jsonObject.getString("class"));
-			} else if (jsonObject.has("package")) {
-				rd.addBuildtimePackage(jsonObject.getString("package"));
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String key = parser.nextName();
+			if (key.equals("buildTimeInitialization")) {
+				readEntries(parser, rd::addBuildtimeClass, rd::addBuildtimePackage);
+			} else if (key.equals("runtimeInitialization")) {
+				readEntries(parser, rd::addRuntimeClass, rd::addRuntimePackage);
 			} else {
-				throw new IllegalStateException("Unrecognized entry in JSON: "+jsonObject.toString());
+				parser.skipValue();
 			}
 		}
-		array = object.getJSONArray("runtimeInitialization");
-		for (int i=0;i<array.length();i++) {
-			JSONObject jsonObject = array.getJSONObject(i);
-			if (jsonObject.has("class")) {
-				rd.addRuntimeClass(jsonObject.getString("class"));
-			} else if (jsonObject.has("package")) {
-				rd.addRuntimePackage(jsonObject.getString("package"));
+		parser.endObject();
+		return rd;
+	}
+
+	private static void readEntries(JsonPullParser parser, Consumer<String> classes, Consumer<String> packages) throws Exception {
+		parser.beginArray();
+		while (parser.hasNext()) {
+			String clazz = null;
+			String pkg = null;
+			parser.beginObject();
+			while (parser.hasNext()) {
+				String key = parser.nextName();
+				if (key.equals("class")) {
+					clazz = parser.nextString();
+				} else if (key.equals("package")) {
+					pkg = parser.nextString();
+				} else {
+					parser.skipValue();
+				}
+			}
+			parser.endObject();
+			if (clazz != null) {
+				classes.accept(clazz);
+			} else if (pkg != null) {
+				packages.accept(pkg);
 			} else {
-				throw new IllegalStateException("Unrecognized entry in JSON: "+jsonObject.toString());
+				throw new IllegalStateException("Unrecognized entry in JSON before line "+parser.getLine());
 			}
 		}
-		return rd;
+		parser.endArray();
 	}
 	
 //	private static FieldDescriptor toFieldDescriptor(JSONObject object) throws Exception {
@@ -116,16 +134,4 @@ public class InitializationJsonMarshaller {
 //		return new MethodDescriptor(name, listOfParameterTypes);
 //	}
 
-	private static String toString(InputStream inputStream) throws IOException {
-		StringBuilder out = new StringBuilder();
-		InputStreamReader reader = new InputStreamReader(inputStream,
-				StandardCharsets.UTF_8);
-		char[] buffer = new char[BUFFER_SIZE];
-		int bytesRead;
-		while ((bytesRead = reader.read(buffer)) != -1) {
-			out.append(buffer, 0, bytesRead);
-		}
-		return out.toString();
-	}
-
 }
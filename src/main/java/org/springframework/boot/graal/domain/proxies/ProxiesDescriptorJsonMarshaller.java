@@ -19,13 +19,13 @@ package org.springframework.boot.graal.domain.proxies;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.boot.configurationprocessor.json.JSONArray;
+import org.springframework.boot.graal.domain.JsonPullParser;
 
 /**
  * Marshaller to write {@link ProxiesDescriptor} as JSON.
@@ -34,8 +34,6 @@ import org.springframework.boot.configurationprocessor.json.JSONArray;
  */
 public class ProxiesDescriptorJsonMarshaller {
 
-	private static final int BUFFER_SIZE = 4098;
-
 	public void write(ProxiesDescriptor metadata, OutputStream outputStream)
 			throws IOException {
 		try {
@@ -67,24 +65,30 @@ public class ProxiesDescriptorJsonMarshaller {
 	}
 
 	public static ProxiesDescriptor read(InputStream inputStream) throws Exception {
-		ProxiesDescriptor metadata = toProxiesDescriptor(new JSONArray(toString(inputStream)));
+		JsonPullParser parser = JsonPullParser.of(inputStream);
+		ProxiesDescriptor metadata = toProxiesDescriptor(parser);
+		parser.endDocument();
 		return metadata;
 	}
 	
-	private static ProxiesDescriptor toProxiesDescriptor(JSONArray array) throws Exception {
+	private static ProxiesDescriptor toProxiesDescriptor(JsonPullParser parser) throws Exception {
 		ProxiesDescriptor pds = new ProxiesDescriptor();
-		for (int i=0;i<array.length();i++) {
-			pds.add(toProxyDescriptor((JSONArray)array.get(i)));
+		parser.beginArray();
+		while (parser.hasNext()) {
+			pds.add(toProxyDescriptor(parser));
 		}
+		parser.endArray();
 		return pds;
 	}
 	
-	private static ProxyDescriptor toProxyDescriptor(JSONArray array) throws Exception {
+	private static ProxyDescriptor toProxyDescriptor(JsonPullParser parser) throws Exception {
 		ProxyDescriptor pd = new ProxyDescriptor();
 		List<String> interfaces = new ArrayList<>();
-		for (int i=0;i<array.length();i++) {
-			interfaces.add(array.getString(i));
+		parser.beginArray();
+		while (parser.hasNext()) {
+			interfaces.add(parser.nextString());
 		}
+		parser.endArray();
 		pd.setInterfaces(interfaces);
 //		cd.setName(object.getString("name"));
 //		for (Flag f: Flag.values()) {
@@ -126,16 +130,4 @@ public class ProxiesDescriptorJsonMarshaller {
 //		return new MethodDescriptor(name, listOfParameterTypes);
 //	}
 
-	private static String toString(InputStream inputStream) throws IOException {
-		StringBuilder out = new StringBuilder();
-		InputStreamReader reader = new InputStreamReader(inputStream,
-				StandardCharsets.UTF_8);
-		char[] buffer = new char[BUFFER_SIZE];
-		int bytesRead;
-		while ((bytesRead = reader.read(buffer)) != -1) {
-			out.append(buffer, 0, bytesRead);
-		}
-		return out.toString();
-	}
-
 }
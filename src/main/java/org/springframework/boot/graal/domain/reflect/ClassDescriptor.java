@@ -37,6 +37,8 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 
 	private Set<Flag> flags; // Inclusion in list indicates they are set
 
+	private ConditionDescriptor condition; // null means always register
+
 	public enum Flag {
 		allPublicFields, //
 		allDeclaredFields, //
@@ -58,6 +60,14 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 		this.flags = flags;
 	}
 
+	public ConditionDescriptor getCondition() {
+		return this.condition;
+	}
+
+	public void setCondition(ConditionDescriptor condition) {
+		this.condition = condition;
+	}
+
 	public String getName() {
 		return this.name;
 	}
@@ -80,6 +90,7 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 		result = result && nullSafeEquals(this.flags, other.flags);
 		result = result && nullSafeEquals(this.fields, other.fields);
 		result = result && nullSafeEquals(this.methods, other.methods);
+		result = result && nullSafeEquals(this.condition, other.condition);
 		return result;
 	}
 
@@ -89,6 +100,7 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 		result = 31 * result + nullSafeHashCode(this.flags);
 		result = 31 * result + nullSafeHashCode(this.fields);
 		result = 31 * result + nullSafeHashCode(this.methods);
+		result = 31 * result + nullSafeHashCode(this.condition);
 		return result;
 	}
 
@@ -112,6 +124,7 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 		buildToStringProperty(string, "setFlags", this.flags);
 		buildToStringProperty(string, "fields", this.fields);
 		buildToStringProperty(string, "methods", this.methods);
+		buildToStringProperty(string, "condition", this.condition);
 		return string.toString();
 	}
 
@@ -185,41 +198,60 @@ public final class ClassDescriptor implements Comparable<ClassDescriptor> {
 
 	/**
 	 * Used when new data is to be added to an already existing class descriptor (additional members, flag settings).
+	 * If the two descriptors are registered under different conditions the result is unconditional, registering
+	 * too much is safe where registering too little is not.
 	 * 
 	 * @param cd the ClassDescriptor to merge into this one
 	 */
 	public void merge(ClassDescriptor cd) {
-		for (Flag flag : cd.getFlags()) {
-			this.setFlag(flag);
+		if (condition != null && !condition.equals(cd.getCondition())) {
+			condition = null;
 		}
-		for (FieldDescriptor fd : cd.getFields()) {
-			FieldDescriptor existingSimilarOne = null;
-			for (FieldDescriptor existingFd: getFields()) {
-				if (existingFd.getName().equals(fd.getName())) {
-					existingSimilarOne = existingFd;
-					break;
-				}
+		if (cd.getFlags() != null) {
+			for (Flag flag : cd.getFlags()) {
+				this.setFlag(flag);
 			}
-			if (existingSimilarOne != null) {
-				if (fd.isAllowWrite()) {
-					existingSimilarOne.setAllowWrite(true);
+		}
+		if (cd.getFields() != null) {
+			for (FieldDescriptor fd : cd.getFields()) {
+				FieldDescriptor existingSimilarOne = getFieldDescriptor(fd.getName());
+				if (existingSimilarOne != null) {
+					if (fd.isAllowWrite()) {
+						existingSimilarOne.setAllowWrite(true);
+					}
+				} else {
+					addFieldDescriptor(FieldDescriptor.of(fd.getName(), fd.isAllowWrite()));
 				}
-			} else {
-				addFieldDescriptor(fd);
 			}
 		}
-		for (MethodDescriptor methodDescriptor : cd.getMethods()) {
-			if (!containsMethodDescriptor(methodDescriptor)) {
-				addMethodDescriptor(methodDescriptor);
+		if (cd.getMethods() != null) {
+			for (MethodDescriptor methodDescriptor : cd.getMethods()) {
+				if (!containsMethodDescriptor(methodDescriptor)) {
+					addMethodDescriptor(methodDescriptor);
+				}
 			}
 		}
 	}
 
-	private boolean containsMethodDescriptor(MethodDescriptor methodDescriptor) {
-		return methods.contains(methodDescriptor);
+	public boolean containsMethodDescriptor(MethodDescriptor methodDescriptor) {
+		return methods != null && methods.contains(methodDescriptor);
+	}
+
+	public FieldDescriptor getFieldDescriptor(String name) {
+		if (fields != null) {
+			for (FieldDescriptor fd: fields) {
+				if (fd.getName().equals(name)) {
+					return fd;
+				}
+			}
+		}
+		return null;
 	}
 
 	public MethodDescriptor getMethodDescriptor(String name,String...parameterTypes) {
+		if (methods == null) {
+			return null;
+		}
 		MethodDescriptor searchmd = MethodDescriptor.of(name, parameterTypes);
 		for (MethodDescriptor md: methods) {
 			if (md.equals(searchmd)) {
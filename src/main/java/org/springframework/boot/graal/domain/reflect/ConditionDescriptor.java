@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.domain.reflect;
+
+/**
+ * A condition on a {@link ClassDescriptor}, the entry is only registered if it holds. Written in the JSON as
+ * <tt>"condition": {"typePresent": "org.hibernate.Session"}</tt> or
+ * <tt>"condition": {"typeReachable": "io.netty.channel.Channel"}</tt>.
+ *
+ * @author Andy Clement
+ * @see ReflectionDescriptor
+ */
+public final class ConditionDescriptor {
+
+	public enum Kind {
+		typePresent, // the type is on the image classpath
+		typeReachable; // the type is instantiated or type checked by the code being compiled into the image
+	}
+
+	private final Kind kind;
+
+	private final String typename; // e.g. org.hibernate.Session
+
+	ConditionDescriptor(Kind kind, String typename) {
+		this.kind = kind;
+		this.typename = typename;
+	}
+
+	public Kind getKind() {
+		return this.kind;
+	}
+
+	public String getTypename() {
+		return this.typename;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		ConditionDescriptor other = (ConditionDescriptor) o;
+		return this.kind == other.kind && this.typename.equals(other.typename);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.kind.hashCode() + this.typename.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return this.kind + "(" + this.typename + ")";
+	}
+
+	public static ConditionDescriptor of(Kind kind, String typename) {
+		return new ConditionDescriptor(kind, typename);
+	}
+
+	public static ConditionDescriptor typePresent(String typename) {
+		return new ConditionDescriptor(Kind.typePresent, typename);
+	}
+
+	public static ConditionDescriptor typeReachable(String typename) {
+		return new ConditionDescriptor(Kind.typeReachable, typename);
+	}
+
+}
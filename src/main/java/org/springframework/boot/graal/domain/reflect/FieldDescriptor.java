@@ -72,5 +72,9 @@ public final class FieldDescriptor extends MemberDescriptor implements Comparabl
 	public void setAllowWrite(boolean b) {
 		this.allowWrite = b;
 	}
+
+	public static FieldDescriptor of(String name, boolean allowWrite) {
+		return new FieldDescriptor(name, allowWrite);
+	}
 	
 }
@@ -80,6 +80,12 @@ class JsonConverter {
 			}
 			jsonObject.put("methods", methodsJsonArray);
 		}
+		ConditionDescriptor condition = cd.getCondition();
+		if (condition != null) {
+			JSONObject conditionJsonObject = new JSONObject();
+			conditionJsonObject.put(condition.getKind().name(), condition.getTypename());
+			jsonObject.put("condition", conditionJsonObject);
+		}
 		return jsonObject;
 	}
 
@@ -19,14 +19,15 @@ package org.springframework.boot.graal.domain.reflect;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.boot.configurationprocessor.json.JSONArray;
-import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.boot.graal.domain.JsonPullParser;
 import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
 
 /**
@@ -36,7 +37,13 @@ import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
  */
 public class JsonMarshaller {
 
-	private static final int BUFFER_SIZE = 4098;
+	private static final Map<String, Flag> FLAGS = new HashMap<>();
+
+	static {
+		for (Flag f: Flag.values()) {
+			FLAGS.put(f.name(), f);
+		}
+	}
 
 	public void write(ReflectionDescriptor metadata, OutputStream outputStream)
 			throws IOException {
@@ -69,74 +76,128 @@ public class JsonMarshaller {
 	}
 
 	public static ReflectionDescriptor read(InputStream inputStream) throws Exception {
-		ReflectionDescriptor metadata = toReflectionDescriptor(new JSONArray(toString(inputStream)));
+		JsonPullParser parser = JsonPullParser.of(inputStream);
+		ReflectionDescriptor metadata = toReflectionDescriptor(parser);
+		parser.endDocument();
 		return metadata;
 	}
 	
-	private static ReflectionDescriptor toReflectionDescriptor(JSONArray array) throws Exception {
+	private static ReflectionDescriptor toReflectionDescriptor(JsonPullParser parser) throws Exception {
 		ReflectionDescriptor rd = new ReflectionDescriptor();
-		for (int i=0;i<array.length();i++) {
-			ClassDescriptor cd = toClassDescriptor((JSONObject)array.get(i));
+		parser.beginArray();
+		while (parser.hasNext()) {
+			ClassDescriptor cd = toClassDescriptor(parser);
 			if (rd.hasClassDescriptor(cd.getName())) {
 				System.out.println("DUPLICATE: "+cd.getName());
 			}
 			rd.add(cd);
 		}
+		parser.endArray();
 		return rd;
 	}
 	
-	private static ClassDescriptor toClassDescriptor(JSONObject object) throws Exception {
+	private static ClassDescriptor toClassDescriptor(JsonPullParser parser) throws Exception {
 		ClassDescriptor cd = new ClassDescriptor();
-		cd.setName(object.getString("name"));
-		for (Flag f: Flag.values()) {
-			if (object.optBoolean(f.name())) {
-				cd.setFlag(f);
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String key = parser.nextName();
+			Flag flag;
+			if (key.equals("name")) {
+				cd.setName(parser.nextString());
+			} else if (key.equals("fields")) {
+				parser.beginArray();
+				while (parser.hasNext()) {
+					cd.addFieldDescriptor(toFieldDescriptor(parser));
+				}
+				parser.endArray();
+			} else if (key.equals("methods")) {
+				parser.beginArray();
+				while (parser.hasNext()) {
+					cd.addMethodDescriptor(toMethodDescriptor(parser));
+				}
+				parser.endArray();
+			} else if (key.equals("condition") && parser.peek() == JsonPullParser.Token.BEGIN_OBJECT) {
+				cd.setCondition(toConditionDescriptor(parser));
+			} else if ((flag = FLAGS.get(key)) != null && parser.peek() != JsonPullParser.Token.NULL) {
+				if (parser.nextBoolean()) {
+					cd.setFlag(flag);
+				}
+			} else {
+				parser.skipValue();
 			}
 		}
-		JSONArray fields = object.optJSONArray("fields");
-		if (fields != null) {
-			for (int i=0;i<fields.length();i++) {
-				cd.addFieldDescriptor(toFieldDescriptor(fields.getJSONObject(i)));
-			}
-		}
-		JSONArray methods = object.optJSONArray("methods");
-		if (methods != null) {
-			for (int i=0;i<methods.length();i++) {
-				cd.addMethodDescriptor(toMethodDescriptor(methods.getJSONObject(i)));
-			}
+		parser.endObject();
+		if (cd.getName() == null) {
+			throw new IllegalStateException("Entry without a name before line "+parser.getLine());
 		}
 		return cd;
 	}
 	
-	private static FieldDescriptor toFieldDescriptor(JSONObject object) throws Exception {
-		String name = object.getString("name");
-		boolean allowWrite = object.optBoolean("allowWrite");
-		return new FieldDescriptor(name,allowWrite);
+	private static ConditionDescriptor toConditionDescriptor(JsonPullParser parser) throws Exception {
+		ConditionDescriptor condition = null;
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String key = parser.nextName();
+			if (key.equals(ConditionDescriptor.Kind.typePresent.name())) {
+				condition = ConditionDescriptor.typePresent(parser.nextString());
+			} else if (key.equals(ConditionDescriptor.Kind.typeReachable.name())) {
+				condition = ConditionDescriptor.typeReachable(parser.nextString());
+			} else {
+				parser.skipValue();
+			}
+		}
+		parser.endObject();
+		if (condition == null) {
+			throw new IllegalStateException("Condition without a typePresent or typeReachable before line "+parser.getLine());
+		}
+		return condition;
 	}
 
-	private static MethodDescriptor toMethodDescriptor(JSONObject object) throws Exception {
-		String name = object.getString("name");
-		JSONArray parameterTypes = object.optJSONArray("parameterTypes");
-		List<String> listOfParameterTypes = null;
-		if (parameterTypes != null) {
-			listOfParameterTypes = new ArrayList<>();
-			for (int i=0;i<parameterTypes.length();i++) {
-				listOfParameterTypes.add(parameterTypes.getString(i));
+	private static FieldDescriptor toFieldDescriptor(JsonPullParser parser) throws Exception {
+		String name = null;
+		boolean allowWrite = false;
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String key = parser.nextName();
+			if (key.equals("name")) {
+				name = parser.nextString();
+			} else if (key.equals("allowWrite") && parser.peek() != JsonPullParser.Token.NULL) {
+				allowWrite = parser.nextBoolean();
+			} else {
+				parser.skipValue();
 			}
 		}
-		return new MethodDescriptor(name, listOfParameterTypes);
+		parser.endObject();
+		if (name == null) {
+			throw new IllegalStateException("Field without a name before line "+parser.getLine());
+		}
+		return new FieldDescriptor(name,allowWrite);
 	}
 
-	private static String toString(InputStream inputStream) throws IOException {
-		StringBuilder out = new StringBuilder();
-		InputStreamReader reader = new InputStreamReader(inputStream,
-				StandardCharsets.UTF_8);
-		char[] buffer = new char[BUFFER_SIZE];
-		int bytesRead;
-		while ((bytesRead = reader.read(buffer)) != -1) {
-			out.append(buffer, 0, bytesRead);
+	private static MethodDescriptor toMethodDescriptor(JsonPullParser parser) throws Exception {
+		String name = null;
+		List<String> listOfParameterTypes = null;
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String key = parser.nextName();
+			if (key.equals("name")) {
+				name = parser.nextString();
+			} else if (key.equals("parameterTypes") && parser.peek() == JsonPullParser.Token.BEGIN_ARRAY) {
+				listOfParameterTypes = new ArrayList<>();
+				parser.beginArray();
+				while (parser.hasNext()) {
+					listOfParameterTypes.add(parser.nextString());
+				}
+				parser.endArray();
+			} else {
+				parser.skipValue();
+			}
 		}
-		return out.toString();
+		parser.endObject();
+		if (name == null) {
+			throw new IllegalStateException("Method without a name before line "+parser.getLine());
+		}
+		return new MethodDescriptor(name, listOfParameterTypes);
 	}
 
 }
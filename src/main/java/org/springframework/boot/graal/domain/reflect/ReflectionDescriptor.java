@@ -17,7 +17,10 @@
 package org.springframework.boot.graal.domain.reflect;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * https://github.com/oracle/graal/blob/master/substratevm/REFLECTION.md
@@ -26,14 +29,19 @@ import java.util.List;
  */
 public class ReflectionDescriptor {
 
+	// Insertion (or sorted) order, as written out
 	private final List<ClassDescriptor> classDescriptors;
 
+	private final Map<String, ClassDescriptor> classDescriptorsByName;
+
 	public ReflectionDescriptor() {
 		this.classDescriptors = new ArrayList<>();
+		this.classDescriptorsByName = new HashMap<>();
 	}
 
 	public ReflectionDescriptor(ReflectionDescriptor metadata) {
 		this.classDescriptors = new ArrayList<>(metadata.classDescriptors);
+		this.classDescriptorsByName = new HashMap<>(metadata.classDescriptorsByName);
 	}
 	
 	public void sort() {
@@ -41,11 +49,28 @@ public class ReflectionDescriptor {
 	}
 
 	public List<ClassDescriptor> getClassDescriptors() {
-		return this.classDescriptors;
+		return Collections.unmodifiableList(this.classDescriptors);
 	}
 
+	/**
+	 * Add a class descriptor, if there is already one for the same class the new one is merged into it.
+	 */
 	public void add(ClassDescriptor classDescriptor) {
-		this.classDescriptors.add(classDescriptor);
+		ClassDescriptor existing = this.classDescriptorsByName.putIfAbsent(classDescriptor.getName(), classDescriptor);
+		if (existing == null) {
+			this.classDescriptors.add(classDescriptor);
+		} else if (existing != classDescriptor) {
+			existing.merge(classDescriptor);
+		}
+	}
+
+	public void clear() {
+		this.classDescriptors.clear();
+		this.classDescriptorsByName.clear();
+	}
+
+	public int size() {
+		return classDescriptors.size();
 	}
 
 	@Override
@@ -71,21 +96,11 @@ public class ReflectionDescriptor {
 	}
 
 	public boolean hasClassDescriptor(String string) {
-		for (ClassDescriptor cd: classDescriptors) {
-			if (cd.getName().equals(string)) {
-				return true;
-			}
-		}
-		return false;
+		return classDescriptorsByName.containsKey(string);
 	}
 
 	public ClassDescriptor getClassDescriptor(String type) {
-		for (ClassDescriptor cd: classDescriptors) {
-			if (cd.getName().equals(type)) {
-				return cd;
-			}
-		}
-		return null;
+		return classDescriptorsByName.get(type);
 	}
 
 }
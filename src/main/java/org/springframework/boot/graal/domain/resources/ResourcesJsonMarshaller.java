@@ -19,12 +19,11 @@ package org.springframework.boot.graal.domain.resources;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
-import org.springframework.boot.configurationprocessor.json.JSONArray;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.boot.graal.domain.JsonPullParser;
 
 /**
  * Marshaller to write {@link ResourcesDescriptor} as JSON.
@@ -33,8 +32,6 @@ import org.springframework.boot.configurationprocessor.json.JSONObject;
  */
 public class ResourcesJsonMarshaller {
 
-	private static final int BUFFER_SIZE = 4098;
-
 	public void write(ResourcesDescriptor metadata, OutputStream outputStream)
 			throws IOException {
 		try {
@@ -66,15 +63,44 @@ public class ResourcesJsonMarshaller {
 	}
 
 	public static ResourcesDescriptor read(InputStream inputStream) throws Exception {
-		ResourcesDescriptor metadata = toResourcesDescriptor(new JSONObject(toString(inputStream)));
+		JsonPullParser parser = JsonPullParser.of(inputStream);
+		ResourcesDescriptor metadata = toResourcesDescriptor(parser);
+		parser.endDocument();
 		return metadata;
 	}
 	
-	private static ResourcesDescriptor toResourcesDescriptor(JSONObject object) throws Exception {
+	private static ResourcesDescriptor toResourcesDescriptor(JsonPullParser parser) throws Exception {
 		ResourcesDescriptor rd = new ResourcesDescriptor();
-		JSONArray array = object.getJSONArray("resources");
-		for (int i=0;i<array.length();i++) {
-			rd.add(array.getJSONObject(i).getString("pattern"));
+		boolean sawResources = false;
+		parser.beginObject();
+		while (parser.hasNext()) {
+			if (parser.nextName().equals("resources")) {
+				sawResources = true;
+				parser.beginArray();
+				while (parser.hasNext()) {
+					String pattern = null;
+					parser.beginObject();
+					while (parser.hasNext()) {
+						if (parser.nextName().equals("pattern")) {
+							pattern = parser.nextString();
+						} else {
+							parser.skipValue();
+						}
+					}
+					parser.endObject();
+					if (pattern == null) {
+						throw new IllegalStateException("Resource without a pattern before line "+parser.getLine());
+					}
+					rd.add(pattern);
+				}
+				parser.endArray();
+			} else {
+				parser.skipValue();
+			}
+		}
+		parser.endObject();
+		if (!sawResources) {
+			throw new IllegalStateException("No resources found");
 		}
 		return rd;
 	}
@@ -98,16 +124,4 @@ public class ResourcesJsonMarshaller {
 //		return new MethodDescriptor(name, listOfParameterTypes);
 //	}
 
-	private static String toString(InputStream inputStream) throws IOException {
-		StringBuilder out = new StringBuilder();
-		InputStreamReader reader = new InputStreamReader(inputStream,
-				StandardCharsets.UTF_8);
-		char[] buffer = new char[BUFFER_SIZE];
-		int bytesRead;
-		while ((bytesRead = reader.read(buffer)) != -1) {
-			out.append(buffer, 0, bytesRead);
-		}
-		return out.toString();
-	}
-
 }
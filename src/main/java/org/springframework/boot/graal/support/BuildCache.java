@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.boot.graal.type.ZipCentralDirectory;
+
+/**
+ * Keeps what the feature registered for a classpath so the next build of the same classpath can replay it
+ * rather than redo the spring.factories/spring.components processing and hint merging. Entries are keyed by
+ * a fingerprint of the classpath content (for an archive the checksum of its central directory, which holds
+ * the CRC of every entry, for a directory the contents of every file in it), the feature's own code, the JDK
+ * and the system properties that change what the feature does.
+ * Enabled by setting <tt>-DbuildCacheDir=/path/to/dir</tt>.
+ *
+ * @author Andy Clement
+ */
+public class BuildCache {
+
+	private final static int CACHE_VERSION = 2;
+
+	// The system properties that affect what the feature registers
+	private final static String[] CONFIGURATION = { "reachabilityDrivenReflection", "removeUnusedAutoconfig",
+			"preciseConfigurationReflection", "buildTimeConditions", "componentScanJars" };
+
+	private static String BUILD_CACHE_DIR;
+
+	static {
+		BUILD_CACHE_DIR = System.getProperty("buildCacheDir");
+		System.out.println("Build cache directory = "+BUILD_CACHE_DIR);
+	}
+
+	private final File file;
+
+	private final boolean hit;
+
+	private final BuildRecording recording;
+
+	private BuildCache(File file, BuildRecording cached) {
+		this.file = file;
+		this.hit = cached != null;
+		this.recording = cached != null ? cached : new BuildRecording();
+	}
+
+	/**
+	 * @return the cache entry for the classpath, or null if the build cache is not enabled
+	 */
+	public static BuildCache open(List<String> classpath) {
+		if (BUILD_CACHE_DIR == null) {
+			return null;
+		}
+		return open(new File(BUILD_CACHE_DIR), classpath);
+	}
+
+	public static BuildCache open(File dir, List<String> classpath) {
+		long stime = System.currentTimeMillis();
+		String fingerprint = fingerprint(classpath);
+		File file = new File(dir, fingerprint + ".bin");
+		BuildRecording cached = null;
+		if (file.isFile()) {
+			try {
+				cached = BuildRecording.read(Files.readAllBytes(file.toPath()));
+			} catch (Exception e) {
+				System.out.println("SBG: WARNING: ignoring unreadable build cache entry " + file + ": " + e.getMessage());
+			}
+		}
+		System.out.println("SBG: build cache " + (cached != null ? "hit" : "miss") + " for " + fingerprint + " in "
+				+ (System.currentTimeMillis() - stime) + "ms");
+		return new BuildCache(file, cached);
+	}
+
+	/**
+	 * @return true if the registrations for this classpath were found and can be replayed
+	 */
+	public boolean isHit() {
+		return hit;
+	}
+
+	/**
+	 * @return the cached registrations on a hit, otherwise the (initially empty) recording to fill in
+	 */
+	public BuildRecording getRecording() {
+		return recording;
+	}
+
+	/**
+	 * Write the recording away, on a miss. Written to a temporary file and moved into place, so concurrent
+	 * builds never see half an entry.
+	 */
+	public void store() {
+		if (hit) {
+			return;
+		}
+		try {
+			file.getParentFile().mkdirs();
+			File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			try (OutputStream os = new FileOutputStream(tmp)) {
+				recording.write(os);
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("SBG: build cache entry written to " + file);
+		} catch (IOException e) {
+			System.out.println("SBG: WARNING: unable to write build cache entry " + file + ": " + e.getMessage());
+		}
+	}
+
+	public static String fingerprint(List<String> classpath) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		update(digest, "v" + CACHE_VERSION);
+		// Resolution of JDK types depends on which JDK is building the image
+		update(digest, System.getProperty("java.home"));
+		update(digest, System.getProperty("java.version"));
+		for (String property : CONFIGURATION) {
+			update(digest, property + "=" + System.getProperty(property));
+		}
+		CodeSource codeSource = BuildCache.class.getProtectionDomain().getCodeSource();
+		URL location = codeSource == null ? null : codeSource.getLocation();
+		if (location != null && location.getProtocol().equals("file")) {
+			update(digest, new File(location.getPath()));
+		}
+		for (String entry : classpath) {
+			update(digest, entry);
+			update(digest, new File(entry));
+		}
+		StringBuilder s = new StringBuilder();
+		for (byte b : digest.digest()) {
+			s.append(String.format("%02x", b));
+		}
+		return s.toString();
+	}
+
+	private static void update(MessageDigest digest, File file) {
+		if (file.isDirectory()) {
+			Path root = file.toPath();
+			try (Stream<Path> paths = Files.walk(root)) {
+				// Sorted so the walk order of the file system doesn't matter
+				for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+					update(digest, root.relativize(path).toString());
+					updateContent(digest, path.toFile());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to fingerprint " + file, e);
+			}
+		} else if (file.isFile()) {
+			// Rebuilt jars often keep their size and (normalized) timestamp, so neither says anything
+			ZipCentralDirectory cd = null;
+			try {
+				cd = ZipCentralDirectory.read(file);
+			} catch (IOException e) {
+				// Hashed in full below
+			}
+			if (cd != null) {
+				update(digest, "crc:" + cd.getChecksum());
+			} else {
+				updateContent(digest, file);
+			}
+		} else {
+			update(digest, "missing");
+		}
+	}
+
+	private static void updateContent(MessageDigest digest, File file) {
+		byte[] buffer = new byte[8192];
+		try (InputStream is = Files.newInputStream(file.toPath())) {
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, n);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to fingerprint " + file, e);
+		}
+		digest.update((byte) 0);
+	}
+
+	private static void update(MessageDigest digest, String s) {
+		digest.update(s.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+}
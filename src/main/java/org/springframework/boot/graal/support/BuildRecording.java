@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.graal.domain.BinaryHints;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+
+/**
+ * What the feature registered with the image build for one classpath: the reflective access, resource
+ * patterns, proxies and initialization (held as {@link BinaryHints}), the reflective access left waiting on
+ * the analysis and the resources whose contents the feature generated (e.g. a filtered
+ * <tt>META-INF/spring.factories</tt>). Written as three hints sections followed by the generated resources.
+ *
+ * @author Andy Clement
+ */
+public class BuildRecording {
+
+	private BinaryHints registered = new BinaryHints();
+
+	// In reachability driven mode, the members registered once their type is reached, as already narrowed
+	// to those that can be registered
+	private ReflectionDescriptor deferred = new ReflectionDescriptor();
+
+	// Entries with a typeReachable condition, registered once their trigger type is reached
+	private ReflectionDescriptor triggered = new ReflectionDescriptor();
+
+	// A name can be registered more than once, e.g. a spring.factories from each jar
+	private final Map<String, List<byte[]>> generatedResources = new LinkedHashMap<>();
+
+	public BinaryHints getRegistered() {
+		return registered;
+	}
+
+	public ReflectionDescriptor getDeferred() {
+		return deferred;
+	}
+
+	public void setDeferred(ReflectionDescriptor deferred) {
+		this.deferred = deferred;
+	}
+
+	public ReflectionDescriptor getTriggered() {
+		return triggered;
+	}
+
+	public void setTriggered(ReflectionDescriptor triggered) {
+		this.triggered = triggered;
+	}
+
+	public Map<String, List<byte[]>> getGeneratedResources() {
+		return generatedResources;
+	}
+
+	public synchronized void addGeneratedResource(String name, byte[] bytes) {
+		generatedResources.computeIfAbsent(name, n -> new ArrayList<>()).add(bytes);
+	}
+
+	public void write(OutputStream outputStream) throws IOException {
+		registered.write(outputStream);
+		for (ReflectionDescriptor rd : new ReflectionDescriptor[] { deferred, triggered }) {
+			BinaryHints hints = new BinaryHints();
+			hints.setReflection(rd);
+			hints.write(outputStream);
+		}
+		DataOutputStream dos = new DataOutputStream(outputStream);
+		dos.writeInt(generatedResources.size());
+		for (Map.Entry<String, List<byte[]>> entry : generatedResources.entrySet()) {
+			dos.writeUTF(entry.getKey());
+			dos.writeInt(entry.getValue().size());
+			for (byte[] bytes : entry.getValue()) {
+				dos.writeInt(bytes.length);
+				dos.write(bytes);
+			}
+		}
+		dos.flush();
+	}
+
+	public static BuildRecording read(byte[] bytes) throws IOException {
+		BuildRecording recording = new BuildRecording();
+		ByteBuffer bb = ByteBuffer.wrap(bytes);
+		recording.registered = BinaryHints.read(bb);
+		recording.deferred = BinaryHints.read(bb).getReflection();
+		recording.triggered = BinaryHints.read(bb).getReflection();
+		try (DataInputStream dis = new DataInputStream(
+				new ByteArrayInputStream(bytes, bb.position(), bytes.length - bb.position()))) {
+			for (int i = 0, max = dis.readInt(); i < max; i++) {
+				String name = dis.readUTF();
+				for (int r = 0, rmax = dis.readInt(); r < rmax; r++) {
+					byte[] resource = new byte[dis.readInt()];
+					dis.readFully(resource);
+					recording.addGeneratedResource(name, resource);
+				}
+			}
+		}
+		return recording;
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.graal.type.Type;
+import org.springframework.boot.graal.type.TypeSystem;
+
+/**
+ * Evaluates <tt>@ConditionalOnProperty</tt>, <tt>@ConditionalOnResource</tt>, <tt>@ConditionalOnWebApplication</tt>
+ * and <tt>@ConditionalOnNotWebApplication</tt> on a type at image build time, for a deployment whose configuration
+ * is fixed. The properties are those in the <tt>application.properties</tt> files packaged on the classpath
+ * (<tt>config/</tt> over the root, then those of the active profiles) and the web application type is
+ * <tt>spring.main.web-application-type</tt> if set, otherwise deduced from the classpath the way Spring Boot does.
+ * Anything that cannot be decided at build time (placeholders, non classpath resources) counts as a match. YAML
+ * is not read, so if an <tt>application.yml</tt> (or <tt>.yaml</tt>) is packaged, property and web application
+ * conditions always count as a match. Resources under <tt>BOOT-INF/</tt> in a Boot jar are seen like any other.
+ *
+ * @author Andy Clement
+ */
+public class BuildTimeConditions {
+
+	public enum WebApplicationType {
+		NONE, SERVLET, REACTIVE;
+	}
+
+	private final static Pattern APPLICATION_PROPERTIES = Pattern.compile("(config/)?application(-[^/]+)?\\.properties");
+
+	private final static Pattern APPLICATION_YAML = Pattern.compile("(config/)?application(-[^/]+)?\\.ya?ml");
+
+	private final static String CLASSPATH_PREFIX = "classpath:";
+
+	private final static String CLASSPATH_ALL_PREFIX = "classpath*:";
+
+	private final TypeSystem ts;
+
+	// Keyed by the canonical form of the property name, see canonical(String)
+	private final Map<String, String> properties;
+
+	private final WebApplicationType webApplicationType;
+
+	// Whether any application*.yml is packaged, the properties read are then not the whole story
+	private final boolean yaml;
+
+	private final Map<String, Boolean> resources = new ConcurrentHashMap<>();
+
+	public BuildTimeConditions(TypeSystem ts) {
+		this.ts = ts;
+		Map<String, byte[]> files = ts.findResources("",
+				name -> APPLICATION_PROPERTIES.matcher(name).matches() || APPLICATION_YAML.matcher(name).matches());
+		this.yaml = files.keySet().stream().anyMatch(location -> APPLICATION_YAML.matcher(resourceName(ts, location)).matches());
+		this.properties = loadProperties(ts, files);
+		this.webApplicationType = webApplicationType();
+		System.out.println("SBG: build time conditions: #" + properties.size() + " properties, web application type "
+				+ webApplicationType + (yaml ? ", YAML configuration present so property and web application conditions are not evaluated" : ""));
+	}
+
+	public WebApplicationType getWebApplicationType() {
+		return webApplicationType;
+	}
+
+	public String getProperty(String name) {
+		return properties.get(canonical(name));
+	}
+
+	/**
+	 * @return null if the conditions on the type hold (or cannot be decided), otherwise why they do not
+	 */
+	public String evaluate(Type type) {
+		String failure = evaluateOnProperty(type);
+		if (failure == null) {
+			failure = evaluateOnResource(type);
+		}
+		if (failure == null) {
+			failure = evaluateOnWebApplication(type);
+		}
+		return failure;
+	}
+
+	private String evaluateOnProperty(Type type) {
+		Map<String, Object> values = type.getAnnotationValues(Type.AtConditionalOnProperty);
+		if (values == null || yaml) {
+			// YAML can set (or a profile specific file override) any of them
+			return null;
+		}
+		String prefix = ((String) values.getOrDefault("prefix", "")).trim();
+		if (!prefix.isEmpty() && !prefix.endsWith(".")) {
+			prefix = prefix + ".";
+		}
+		List<String> names = strings(values.containsKey("name") ? values.get("name") : values.get("value"));
+		String havingValue = (String) values.getOrDefault("havingValue", "");
+		boolean matchIfMissing = (Boolean) values.getOrDefault("matchIfMissing", false);
+		for (String name : names) {
+			String key = prefix + name;
+			String value = getProperty(key);
+			if (value == null) {
+				if (!matchIfMissing) {
+					return "@ConditionalOnProperty " + key + " is not set";
+				}
+			} else if (value.contains("${")) {
+				// Only known at run time
+				continue;
+			} else if (havingValue.isEmpty() ? value.equalsIgnoreCase("false") : !value.equalsIgnoreCase(havingValue)) {
+				return "@ConditionalOnProperty " + key + " is " + value;
+			}
+		}
+		return null;
+	}
+
+	private String evaluateOnResource(Type type) {
+		Map<String, Object> values = type.getAnnotationValues(Type.AtConditionalOnResource);
+		if (values == null) {
+			return null;
+		}
+		for (String location : strings(values.get("resources"))) {
+			String name = location;
+			if (name.startsWith(CLASSPATH_ALL_PREFIX)) {
+				name = name.substring(CLASSPATH_ALL_PREFIX.length());
+			} else if (name.startsWith(CLASSPATH_PREFIX)) {
+				name = name.substring(CLASSPATH_PREFIX.length());
+			} else if (name.contains(":")) {
+				// file:, http: and so on are not about the image
+				continue;
+			}
+			if (name.contains("${")) {
+				continue;
+			}
+			String resource = name.startsWith("/") ? name.substring(1) : name;
+			if (!resources.computeIfAbsent(resource, this::isResourcePresent)) {
+				return "@ConditionalOnResource " + location + " not found";
+			}
+		}
+		return null;
+	}
+
+	private String evaluateOnWebApplication(Type type) {
+		if (yaml) {
+			// spring.main.web-application-type may be set there
+			return null;
+		}
+		Map<String, Object> values = type.getAnnotationValues(Type.AtConditionalOnWebApplication);
+		if (values != null) {
+			Object kind = values.get("type");
+			// Enum values are held as a descriptor and constant name pair, ANY if not specified
+			String required = kind instanceof String[] ? ((String[]) kind)[1] : "ANY";
+			boolean matches = required.equals("ANY") ? webApplicationType != WebApplicationType.NONE
+					: required.equals(webApplicationType.name());
+			if (!matches) {
+				return "@ConditionalOnWebApplication(" + required + ") but the application type is " + webApplicationType;
+			}
+		}
+		if (type.getAnnotationValues(Type.AtConditionalOnNotWebApplication) != null
+				&& webApplicationType != WebApplicationType.NONE) {
+			return "@ConditionalOnNotWebApplication but the application type is " + webApplicationType;
+		}
+		return null;
+	}
+
+	private boolean isResourcePresent(String resource) {
+		int index = resource.lastIndexOf('/');
+		String prefix = index == -1 ? "" : resource.substring(0, index + 1);
+		return !ts.findResources(prefix, name -> name.equals(resource)).isEmpty();
+	}
+
+	private WebApplicationType webApplicationType() {
+		String configured = getProperty("spring.main.web-application-type");
+		if (configured != null) {
+			try {
+				return WebApplicationType.valueOf(configured.trim().toUpperCase(Locale.ENGLISH));
+			} catch (IllegalArgumentException iae) {
+				System.out.println("SBG: WARNING: ignoring unrecognized spring.main.web-application-type " + configured);
+			}
+		}
+		// As WebApplicationType.deduceFromClasspath()
+		if (isPresent("org/springframework/web/reactive/DispatcherHandler")
+				&& !isPresent("org/springframework/web/servlet/DispatcherServlet")
+				&& !isPresent("org/glassfish/jersey/servlet/ServletContainer")) {
+			return WebApplicationType.REACTIVE;
+		}
+		if (!isPresent("javax/servlet/Servlet")
+				|| !isPresent("org/springframework/web/context/ConfigurableWebApplicationContext")) {
+			return WebApplicationType.NONE;
+		}
+		return WebApplicationType.SERVLET;
+	}
+
+	private boolean isPresent(String slashedTypeName) {
+		return ts.resolveSlashed(slashedTypeName, true) != null;
+	}
+
+	private static Map<String, String> loadProperties(TypeSystem ts, Map<String, byte[]> found) {
+		// The first file of each name on the classpath is the one Spring would load
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		for (Map.Entry<String, byte[]> entry : found.entrySet()) {
+			files.putIfAbsent(resourceName(ts, entry.getKey()), entry.getValue());
+		}
+		Map<String, String> properties = new LinkedHashMap<>();
+		load(files, "application.properties", properties);
+		load(files, "config/application.properties", properties);
+		String active = properties.get(canonical("spring.profiles.active"));
+		if (active != null) {
+			for (String profile : active.split(",")) {
+				load(files, "application-" + profile.trim() + ".properties", properties);
+				load(files, "config/application-" + profile.trim() + ".properties", properties);
+			}
+		}
+		return properties;
+	}
+
+	private static void load(Map<String, byte[]> files, String name, Map<String, String> properties) {
+		byte[] bytes = files.get(name);
+		if (bytes == null) {
+			return;
+		}
+		Properties p = new Properties();
+		try {
+			p.load(new ByteArrayInputStream(bytes));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to load " + name, e);
+		}
+		System.out.println("SBG: build time conditions: loaded #" + p.size() + " properties from " + name);
+		for (String key : p.stringPropertyNames()) {
+			properties.put(canonical(key), p.getProperty(key));
+		}
+	}
+
+	/**
+	 * @return the name of the resource relative to its classpath entry, from where findResources says it is
+	 */
+	private static String resourceName(TypeSystem ts, String location) {
+		// The last one, for a Boot jar it is BOOT-INF/classes!/ or the nested jar
+		int index = location.lastIndexOf("!/");
+		if (index != -1) {
+			return location.substring(index + 2);
+		}
+		for (String entry : ts.getClasspath()) {
+			String dir = new File(entry).getPath() + File.separator;
+			if (location.startsWith(dir)) {
+				return location.substring(dir.length()).replace(File.separatorChar, '/');
+			}
+		}
+		return location;
+	}
+
+	/**
+	 * Relaxed names, <tt>spring.jpa.open-in-view</tt>, <tt>spring.jpa.openInView</tt> and
+	 * <tt>spring.jpa.open_in_view</tt> are the same property.
+	 */
+	static String canonical(String name) {
+		StringBuilder s = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char ch = name.charAt(i);
+			if (ch != '-' && ch != '_') {
+				s.append(Character.toLowerCase(ch));
+			}
+		}
+		return s.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> strings(Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (value instanceof List) {
+			return new ArrayList<>((List<String>) value);
+		}
+		return Arrays.asList((String) value);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.io.InputStream;
+import java.net.URL;
+
+import org.springframework.boot.graal.domain.BinaryHints;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationJsonMarshaller;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptorJsonMarshaller;
+import org.springframework.boot.graal.domain.reflect.JsonMarshaller;
+import org.springframework.boot.graal.domain.resources.ResourcesJsonMarshaller;
+
+/**
+ * The hints shipped with the feature. Taken from the binary form if one is packaged alongside the JSON
+ * files, otherwise read from the JSON files. Loaded once.
+ *
+ * @author Andy Clement
+ */
+class ConstantHints {
+
+	private final static String RESOURCE_FILE = "/hints.bin";
+
+	private static BinaryHints hints;
+
+	static synchronized BinaryHints get() {
+		if (hints == null) {
+			URL url = ConstantHints.class.getResource(RESOURCE_FILE);
+			if (url != null) {
+				try {
+					long stime = System.currentTimeMillis();
+					hints = BinaryHints.load(url);
+					System.out.println("SBG: loaded binary hints from " + url + " in "
+							+ (System.currentTimeMillis() - stime) + "ms");
+				} catch (Exception e) {
+					System.out.println("SBG: WARNING: unable to read " + url + ", using the JSON files: " + e.getMessage());
+				}
+			}
+			if (hints == null) {
+				hints = loadJson();
+			}
+		}
+		return hints;
+	}
+
+	private static BinaryHints loadJson() {
+		BinaryHints hints = new BinaryHints();
+		try {
+			try (InputStream s = ConstantHints.class.getResourceAsStream("/reflect.json")) {
+				hints.setReflection(JsonMarshaller.read(s));
+			}
+			try (InputStream s = ConstantHints.class.getResourceAsStream("/resources.json")) {
+				hints.setResources(ResourcesJsonMarshaller.read(s));
+			}
+			try (InputStream s = ConstantHints.class.getResourceAsStream("/proxies.json")) {
+				hints.setProxies(ProxiesDescriptorJsonMarshaller.read(s));
+			}
+			try (InputStream s = ConstantHints.class.getResourceAsStream("/initialization.json")) {
+				hints.setInitialization(InitializationJsonMarshaller.read(s));
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Unexpectedly can't load the hints shipped with the feature", e);
+		}
+		return hints;
+	}
+
+}
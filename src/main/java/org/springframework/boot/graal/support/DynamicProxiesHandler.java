@@ -15,14 +15,13 @@
  */
 package org.springframework.boot.graal.support;
 
-import java.io.InputStream;
 import java.util.List;
 import java.util.function.Consumer;
 
 import org.graalvm.nativeimage.ImageSingletons;
 import org.graalvm.nativeimage.hosted.Feature.DuringSetupAccess;
 import org.springframework.boot.graal.domain.proxies.ProxiesDescriptor;
-import org.springframework.boot.graal.domain.proxies.ProxiesDescriptorJsonMarshaller;
+import org.springframework.boot.graal.domain.MergedHints;
 
 import com.oracle.svm.core.jdk.proxy.DynamicProxyRegistry;
 import com.oracle.svm.hosted.ImageClassLoader;
@@ -30,18 +29,18 @@ import com.oracle.svm.hosted.FeatureImpl.DuringSetupAccessImpl;
 
 public class DynamicProxiesHandler {
 
+	/**
+	 * @return the proxies the feature itself asks for
+	 */
 	public ProxiesDescriptor compute() {
-		try {
-			InputStream s = this.getClass().getResourceAsStream("/proxies.json");
-			ProxiesDescriptor pd = ProxiesDescriptorJsonMarshaller.read(s);
-			return pd;
-		} catch (Exception e) {
-			return null;
-		}
+		return ConstantHints.get().getProxies();
 	}
 
-	public void register(DuringSetupAccess a) {
-    	ProxiesDescriptor pd = compute();
+	public void register(DuringSetupAccess a, MergedHints hints) {
+		register(a, hints.getProxies());
+	}
+
+	public void register(DuringSetupAccess a, ProxiesDescriptor pd) {
     	System.out.println("SBG: Proxy registration: #"+pd.getProxyDescriptors().size()+" proxies");
     	DuringSetupAccessImpl access = (DuringSetupAccessImpl) a;
     	ImageClassLoader imageClassLoader = access.getImageClassLoader();
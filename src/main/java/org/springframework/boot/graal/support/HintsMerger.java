@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.springframework.boot.graal.domain.BinaryHints;
+import org.springframework.boot.graal.domain.MergedHints;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationJsonMarshaller;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptorJsonMarshaller;
+import org.springframework.boot.graal.domain.reflect.JsonMarshaller;
+import org.springframework.boot.graal.domain.resources.ResourcesJsonMarshaller;
+import org.springframework.boot.graal.type.TypeSystem;
+
+/**
+ * Gathers the hints shipped with the feature and every hint file found under <tt>META-INF/native-image/</tt>
+ * on the image classpath into a single {@link MergedHints}. Both the native-image names
+ * (<tt>reflect-config.json</tt>, <tt>resource-config.json</tt>, <tt>proxy-config.json</tt>) and the ones
+ * this feature uses (<tt>reflect.json</tt>, <tt>resources.json</tt>, <tt>proxies.json</tt>,
+ * <tt>initialization.json</tt>, <tt>hints.bin</tt>) are recognized. Files are merged in classpath order
+ * after the feature's own hints, so the result does not depend on which archive was searched first.
+ *
+ * @author Andy Clement
+ */
+public class HintsMerger {
+
+	private final static String PREFIX = "META-INF/native-image/";
+
+	private final static String FEATURE_SOURCE = "spring-boot-graal-feature";
+
+	public static MergedHints merge(TypeSystem ts) {
+		long stime = System.currentTimeMillis();
+		MergedHints hints = new MergedHints();
+		hints.add(FEATURE_SOURCE, ConstantHints.get());
+		Map<String, byte[]> files = ts.findResources(PREFIX, name -> getKind(name) != null);
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			String source = file.getKey();
+			byte[] bytes = file.getValue();
+			try {
+				switch (getKind(source)) {
+				case "reflect":
+					hints.add(source, JsonMarshaller.read(bytes));
+					break;
+				case "resources":
+					hints.add(source, ResourcesJsonMarshaller.read(bytes));
+					break;
+				case "proxies":
+					hints.add(source, ProxiesDescriptorJsonMarshaller.read(bytes));
+					break;
+				case "initialization":
+					hints.add(source, InitializationJsonMarshaller.read(bytes));
+					break;
+				case "binary":
+					hints.add(source, BinaryHints.read(ByteBuffer.wrap(bytes)));
+					break;
+				}
+				System.out.println("SBG: merged hints from " + source);
+			} catch (Exception e) {
+				System.out.println("SBG: WARNING: ignoring hint file " + source + ": " + e.getMessage());
+			}
+		}
+		System.out.println("SBG: " + hints + " in " + (System.currentTimeMillis() - stime) + "ms");
+		return hints;
+	}
+
+	/**
+	 * @return the kind of hints held by a file with that name, or null if it is not a hint file
+	 */
+	static String getKind(String name) {
+		String filename = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(File.separatorChar)) + 1);
+		switch (filename) {
+		case "reflect-config.json":
+		case "reflect.json":
+			return "reflect";
+		case "resource-config.json":
+		case "resources.json":
+			return "resources";
+		case "proxy-config.json":
+		case "proxies.json":
+			return "proxies";
+		case "initialization.json":
+			return "initialization";
+		case "hints.bin":
+			return "binary";
+		default:
+			return null;
+		}
+	}
+
+}
@@ -15,14 +15,13 @@
  */
 package org.springframework.boot.graal.support;
 
-import java.io.InputStream;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.graalvm.nativeimage.hosted.Feature.BeforeAnalysisAccess;
+import org.springframework.boot.graal.domain.MergedHints;
 import org.springframework.boot.graal.domain.buildtimeinit.InitializationDescriptor;
-import org.springframework.boot.graal.domain.buildtimeinit.InitializationJsonMarshaller;
 import org.graalvm.nativeimage.hosted.RuntimeClassInitialization;
 
 /**
@@ -31,17 +30,18 @@ import org.graalvm.nativeimage.hosted.RuntimeClassInitialization;
  */
 public class InitializationHandler {
 
+	/**
+	 * @return the initialization the feature itself asks for
+	 */
 	public InitializationDescriptor compute() {
-		try {
-			InputStream s = this.getClass().getResourceAsStream("/initialization.json");
-			return InitializationJsonMarshaller.read(s);
-		} catch (Exception e) {
-			return null;
-		}
+		return ConstantHints.get().getInitialization();
 	}
 
-	public void register(BeforeAnalysisAccess access) {
-		InitializationDescriptor id = compute();
+	public void register(BeforeAnalysisAccess access, MergedHints hints) {
+		register(access, hints.getInitialization());
+	}
+
+	public void register(BeforeAnalysisAccess access, InitializationDescriptor id) {
 		System.out.println("SBG: forcing explicit class initialization at build or runtime:");
 		System.out.println(id.toString());
 		List<Class> collect = id.getBuildtimeClasses().stream()
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.graalvm.nativeimage.impl.ReflectionRegistry;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+
+import com.oracle.svm.hosted.ImageClassLoader;
+import com.oracle.svm.hosted.config.ReflectionRegistryAdapter;
+
+/**
+ * A {@link ReflectionRegistryAdapter} that also writes down each successful registration, as a type with the
+ * flags, methods and fields that were registered on it, so that the registrations can later be replayed
+ * without redoing the work that decided on them. Nothing is written down until {@link #startRecording()}.
+ *
+ * @author Andy Clement
+ */
+class RecordingRegistryAdapter extends ReflectionRegistryAdapter {
+
+	private ReflectionDescriptor recorded;
+
+	RecordingRegistryAdapter(ReflectionRegistry registry, ImageClassLoader classLoader) {
+		super(registry, classLoader);
+	}
+
+	public void startRecording() {
+		recorded = new ReflectionDescriptor();
+	}
+
+	/**
+	 * @return what was registered since recording started, recording stops
+	 */
+	public ReflectionDescriptor stopRecording() {
+		ReflectionDescriptor result = recorded;
+		recorded = null;
+		return result;
+	}
+
+	@Override
+	public void registerType(Class<?> type) {
+		super.registerType(type);
+		record(type);
+	}
+
+	@Override
+	public void registerPublicClasses(Class<?> type) {
+		super.registerPublicClasses(type);
+		record(type, Flag.allPublicClasses);
+	}
+
+	@Override
+	public void registerDeclaredClasses(Class<?> type) {
+		super.registerDeclaredClasses(type);
+		record(type, Flag.allDeclaredClasses);
+	}
+
+	@Override
+	public void registerPublicFields(Class<?> type) {
+		super.registerPublicFields(type);
+		record(type, Flag.allPublicFields);
+	}
+
+	@Override
+	public void registerDeclaredFields(Class<?> type) {
+		super.registerDeclaredFields(type);
+		record(type, Flag.allDeclaredFields);
+	}
+
+	@Override
+	public void registerPublicMethods(Class<?> type) {
+		super.registerPublicMethods(type);
+		record(type, Flag.allPublicMethods);
+	}
+
+	@Override
+	public void registerDeclaredMethods(Class<?> type) {
+		super.registerDeclaredMethods(type);
+		record(type, Flag.allDeclaredMethods);
+	}
+
+	@Override
+	public void registerPublicConstructors(Class<?> type) {
+		super.registerPublicConstructors(type);
+		record(type, Flag.allPublicConstructors);
+	}
+
+	@Override
+	public void registerDeclaredConstructors(Class<?> type) {
+		super.registerDeclaredConstructors(type);
+		record(type, Flag.allDeclaredConstructors);
+	}
+
+	@Override
+	public void registerField(Class<?> type, String fieldName, boolean allowWrite) throws NoSuchFieldException {
+		super.registerField(type, fieldName, allowWrite);
+		if (recorded != null) {
+			ClassDescriptor cd = ClassDescriptor.of(type.getTypeName());
+			cd.addFieldDescriptor(FieldDescriptor.of(fieldName, allowWrite));
+			recorded.add(cd);
+		}
+	}
+
+	@Override
+	public boolean registerAllMethodsWithName(Class<?> type, String name) {
+		boolean found = super.registerAllMethodsWithName(type, name);
+		if (found) {
+			// No parameter types, meaning all methods of that name
+			record(type, MethodDescriptor.of(name), null);
+		}
+		return found;
+	}
+
+	@Override
+	public boolean registerAllConstructors(Class<?> type) {
+		boolean found = super.registerAllConstructors(type);
+		if (found) {
+			record(type, MethodDescriptor.of(MethodDescriptor.CONSTRUCTOR_NAME), null);
+		}
+		return found;
+	}
+
+	@Override
+	public void registerMethod(Class<?> type, String name, List<Class<?>> parameterTypes) throws NoSuchMethodException {
+		super.registerMethod(type, name, parameterTypes);
+		record(type, MethodDescriptor.of(name), parameterTypes);
+	}
+
+	@Override
+	public void registerConstructor(Class<?> type, List<Class<?>> parameterTypes) throws NoSuchMethodException {
+		super.registerConstructor(type, parameterTypes);
+		record(type, MethodDescriptor.of(MethodDescriptor.CONSTRUCTOR_NAME), parameterTypes);
+	}
+
+	private void record(Class<?> type) {
+		if (recorded != null) {
+			// getTypeName() gives arrays in the foo.Bar[] form the hint files use
+			recorded.add(ClassDescriptor.of(type.getTypeName()));
+		}
+	}
+
+	private void record(Class<?> type, Flag flag) {
+		if (recorded != null) {
+			ClassDescriptor cd = ClassDescriptor.of(type.getTypeName());
+			cd.setFlag(flag);
+			recorded.add(cd);
+		}
+	}
+
+	private void record(Class<?> type, MethodDescriptor md, List<Class<?>> parameterTypes) {
+		if (recorded != null) {
+			ClassDescriptor cd = ClassDescriptor.of(type.getTypeName());
+			md.setParameterTypes(parameterTypes == null ? null
+					: parameterTypes.stream().map(Class::getName).collect(Collectors.toList()));
+			cd.addMethodDescriptor(md);
+			recorded.add(cd);
+		}
+	}
+
+}
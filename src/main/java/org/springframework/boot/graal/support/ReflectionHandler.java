@@ -15,32 +15,42 @@
  */
 package org.springframework.boot.graal.support;
 
-import java.io.InputStream;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Array;
 import java.lang.reflect.Executable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.hosted.Feature.DuringAnalysisAccess;
 import org.graalvm.nativeimage.hosted.Feature.DuringSetupAccess;
 import org.graalvm.nativeimage.impl.RuntimeReflectionSupport;
 import org.graalvm.util.GuardedAnnotationAccess;
+import org.springframework.boot.graal.domain.MergedHints;
 import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
 import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.ConditionDescriptor;
 import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
-import org.springframework.boot.graal.domain.reflect.JsonMarshaller;
 import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
 import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.type.TypeSystem;
+import org.springframework.boot.graal.type.VerifiedMembers;
 
+import com.oracle.graal.pointsto.meta.AnalysisType;
+import com.oracle.svm.hosted.FeatureImpl.DuringAnalysisAccessImpl;
 import com.oracle.svm.hosted.FeatureImpl.DuringSetupAccessImpl;
 import com.oracle.svm.hosted.ImageClassLoader;
-import com.oracle.svm.hosted.config.ReflectionRegistryAdapter;
 
 /**
  * Loads up the constant data defined in resource file and registers reflective access being
@@ -52,134 +62,273 @@ import com.oracle.svm.hosted.config.ReflectionRegistryAdapter;
  */
 public class ReflectionHandler {
 	
-	private final static String RESOURCE_FILE = "/reflect.json";
-	
-	private ReflectionRegistryAdapter rra;
+	private RecordingRegistryAdapter rra;
 
 	private ReflectionDescriptor constantReflectionDescriptor;
 
 	private ImageClassLoader cl;
 
+	private TypeSystem ts;
+
+	private MergedHints hints;
+
+	private static boolean REACHABILITY_DRIVEN;
+
+	static {
+		REACHABILITY_DRIVEN = Boolean.valueOf(System.getProperty("reachabilityDrivenReflection","false"));
+		System.out.println("Reachability driven reflection = "+REACHABILITY_DRIVEN);
+	}
+
+	// In reachability driven mode, the member registrations waiting for their type to be seen by the analysis,
+	// already narrowed to the members that can be registered (see decideMembers)
+	private final Map<Class<?>, ClassDescriptor> pending = new LinkedHashMap<>();
+
+	// Entries with a typeReachable condition, keyed by the trigger type they are waiting for the analysis to reach
+	private final Map<Class<?>, List<ClassDescriptor>> awaitingTrigger = new LinkedHashMap<>();
+
+	// What has been asked for through addAccess so far
+	private final RegistrationLedger ledger = new RegistrationLedger();
+
+	/**
+	 * @return the type system over the image classpath, available once {@link #register(DuringSetupAccess)} has run
+	 */
+	public TypeSystem getTypeSystem() {
+		return ts;
+	}
+
+	/**
+	 * Release anything held open during processing (e.g. archives the type system is reading).
+	 */
+	public void cleanup() {
+		ledger.reset();
+		pending.clear();
+		awaitingTrigger.clear();
+		if (ts != null) {
+			ts.close();
+		}
+	}
+
+	/**
+	 * @return the reflective access the feature itself asks for
+	 */
 	public ReflectionDescriptor getConstantData() {
 		if (constantReflectionDescriptor == null) {
-			try {
-				InputStream s = this.getClass().getResourceAsStream(RESOURCE_FILE);
-				constantReflectionDescriptor = JsonMarshaller.read(s);
-			} catch (Exception e) {
-				throw new IllegalStateException("Unexpectedly can't load "+RESOURCE_FILE, e);
-			}
+			constantReflectionDescriptor = ConstantHints.get().getReflection();
 		}
 		return constantReflectionDescriptor;
 	}
+
+	/**
+	 * @return the hints from the feature and from the hint files on the image classpath, available once
+	 * {@link #register(DuringSetupAccess)} has run
+	 */
+	public MergedHints getHints() {
+		return hints;
+	}
 	
 	public void register(DuringSetupAccess a) {
+		register(a, false);
+	}
+
+	/**
+	 * @param record whether to write down what gets registered, for {@link #finishRecording(BuildRecording)}
+	 */
+	public void register(DuringSetupAccess a, boolean record) {
 		DuringSetupAccessImpl access = (DuringSetupAccessImpl) a;
 		RuntimeReflectionSupport rrs = ImageSingletons.lookup(RuntimeReflectionSupport.class);
 		cl = access.getImageClassLoader();
-		rra = new ReflectionRegistryAdapter(rrs, cl);
-		ReflectionDescriptor reflectionDescriptor = getConstantData();
+		rra = new RecordingRegistryAdapter(rrs, cl);
+		if (record) {
+			rra.startRecording();
+		}
+		ts = TypeSystem.get(cl.getClasspath());
+		ledger.reset();
+		hints = HintsMerger.merge(ts);
+		ReflectionDescriptor reflectionDescriptor = hints.getReflection();
+		awaitingTrigger.clear();
 
 		System.out.println("SBG: reflection registering #"+reflectionDescriptor.getClassDescriptors().size()+" entries");
+		// Conditional entries are grouped so each condition is evaluated once however many entries share it
+		Map<ConditionDescriptor, List<ClassDescriptor>> conditional = new LinkedHashMap<>();
 		for (ClassDescriptor classDescriptor : reflectionDescriptor.getClassDescriptors()) {
-			Class<?> type = null;
-			String n2 = classDescriptor.getName();
-			if (n2.endsWith("[]")) {
-				System.out.println("ARRAY: "+n2.substring(0,n2.length()-2));
-				type = rra.resolveType(n2.substring(0,n2.length()-2));
-				System.out.println("Array base type resolved as "+type.getName());
-				Object o = Array.newInstance(type, 1);
-				type = o.getClass();
-				System.out.println("Class of array is "+type.getName());
+			if (classDescriptor.getCondition() == null) {
+				registerClassDescriptor(classDescriptor);
 			} else {
-				type = rra.resolveType(classDescriptor.getName());
+				conditional.computeIfAbsent(classDescriptor.getCondition(), c -> new ArrayList<>()).add(classDescriptor);
 			}
-			if (type == null) {
-				System.out.println("SBG: WARNING: "+RESOURCE_FILE+" included "+classDescriptor.getName()+" but it doesn't exist on the classpath, skipping...");
+		}
+		int skipped = 0;
+		for (Map.Entry<ConditionDescriptor, List<ClassDescriptor>> entry : conditional.entrySet()) {
+			ConditionDescriptor condition = entry.getKey();
+			Class<?> trigger = isTypePresent(condition.getTypename()) ? rra.resolveType(condition.getTypename()) : null;
+			if (trigger == null) {
+				skipped += entry.getValue().size();
 				continue;
 			}
-	        rra.registerType(type);
-			Set<Flag> flags = classDescriptor.getFlags();
-			if (flags != null) {
-				for (Flag flag: flags) {
-					try {
-						switch (flag) {
-						case allDeclaredClasses:
-							rra.registerDeclaredClasses(type);
-							break;
-						case allDeclaredFields:
-							rra.registerDeclaredFields(type);
-							break;
-						case allPublicFields:
-							rra.registerPublicFields(type);
-							break;
-						case allDeclaredConstructors:
-							rra.registerDeclaredConstructors(type);
-							break;
-						case allPublicConstructors:
-							rra.registerPublicConstructors(type);
-							break;
-						case allDeclaredMethods:
-							rra.registerDeclaredMethods(type);
-							break;
-						case allPublicMethods:
-							rra.registerPublicMethods(type);
-							break;
-						case allPublicClasses:
-							rra.registerPublicClasses(type);
-							break;						
-						}
-					} catch (NoClassDefFoundError ncdfe) {
-						System.out.println("SBG: ERROR: problem handling flag: "+flag+" for "+type.getName()+" because of missing "+ncdfe.getMessage());
+			if (condition.getKind() == ConditionDescriptor.Kind.typePresent) {
+				entry.getValue().forEach(this::registerClassDescriptor);
+			} else {
+				awaitingTrigger.computeIfAbsent(trigger, t -> new ArrayList<>()).addAll(entry.getValue());
+			}
+		}
+		System.out.println("SBG: reflection #"+conditional.size()+" conditions evaluated, #"+skipped+
+				" entries skipped as their trigger type is missing, #"+
+				awaitingTrigger.values().stream().mapToInt(List::size).sum()+" entries waiting for their trigger type to be reached");
+		registerLogback();
+	}
+
+	/**
+	 * Register what an earlier build of the same classpath recorded, instead of working it out again. No
+	 * type system is created.
+	 */
+	public void replay(DuringSetupAccess a, BuildRecording recording) {
+		DuringSetupAccessImpl access = (DuringSetupAccessImpl) a;
+		RuntimeReflectionSupport rrs = ImageSingletons.lookup(RuntimeReflectionSupport.class);
+		cl = access.getImageClassLoader();
+		rra = new RecordingRegistryAdapter(rrs, cl);
+		ts = null;
+		ledger.reset();
+		awaitingTrigger.clear();
+		hints = new MergedHints();
+		ReflectionDescriptor registered = recording.getRegistered().getReflection();
+		System.out.println("SBG: reflection replaying #"+registered.size()+" entries from the build cache");
+		registered.getClassDescriptors().forEach(this::registerClassDescriptor);
+		for (ClassDescriptor classDescriptor : recording.getTriggered().getClassDescriptors()) {
+			Class<?> trigger = rra.resolveType(classDescriptor.getCondition().getTypename());
+			if (trigger != null) {
+				awaitingTrigger.computeIfAbsent(trigger, t -> new ArrayList<>()).add(classDescriptor);
+			}
+		}
+		for (ClassDescriptor classDescriptor : recording.getDeferred().getClassDescriptors()) {
+			Class<?> type = rra.resolveType(classDescriptor.getName());
+			if (type != null) {
+				addPending(type, classDescriptor);
+			}
+		}
+	}
+
+	/**
+	 * Complete a recording started by {@link #register(DuringSetupAccess, boolean)}, with what was registered
+	 * and what is waiting on the analysis. Should be called once everything has been registered ahead of the
+	 * analysis, registrations made during it are not recorded.
+	 */
+	public void finishRecording(BuildRecording recording) {
+		ReflectionDescriptor registered = rra.stopRecording();
+		if (registered == null) {
+			throw new IllegalStateException("Not recording");
+		}
+		recording.getRegistered().setReflection(registered);
+		// Pending entries hold the member level decisions, so a replay registers exactly what this build will
+		ReflectionDescriptor deferred = new ReflectionDescriptor();
+		pending.values().forEach(deferred::add);
+		recording.setDeferred(deferred);
+		ReflectionDescriptor triggered = new ReflectionDescriptor();
+		awaitingTrigger.values().forEach(cds -> cds.forEach(triggered::add));
+		recording.setTriggered(triggered);
+	}
+
+	private void registerClassDescriptor(ClassDescriptor classDescriptor) {
+		Class<?> type = null;
+		String n2 = classDescriptor.getName();
+		if (n2.endsWith("[]")) {
+			System.out.println("ARRAY: "+n2.substring(0,n2.length()-2));
+			type = rra.resolveType(n2.substring(0,n2.length()-2));
+			System.out.println("Array base type resolved as "+type.getName());
+			Object o = Array.newInstance(type, 1);
+			type = o.getClass();
+			System.out.println("Class of array is "+type.getName());
+		} else {
+			type = rra.resolveType(classDescriptor.getName());
+		}
+		if (type == null) {
+			System.out.println("SBG: WARNING: "+hints.getReflectionSources(classDescriptor.getName())+" included "+classDescriptor.getName()+" but it doesn't exist on the classpath, skipping...");
+			return;
+		}
+        rra.registerType(type);
+		Set<Flag> flags = classDescriptor.getFlags();
+		if (flags != null) {
+			for (Flag flag: flags) {
+				try {
+					switch (flag) {
+					case allDeclaredClasses:
+						rra.registerDeclaredClasses(type);
+						break;
+					case allDeclaredFields:
+						rra.registerDeclaredFields(type);
+						break;
+					case allPublicFields:
+						rra.registerPublicFields(type);
+						break;
+					case allDeclaredConstructors:
+						rra.registerDeclaredConstructors(type);
+						break;
+					case allPublicConstructors:
+						rra.registerPublicConstructors(type);
+						break;
+					case allDeclaredMethods:
+						rra.registerDeclaredMethods(type);
+						break;
+					case allPublicMethods:
+						rra.registerPublicMethods(type);
+						break;
+					case allPublicClasses:
+						rra.registerPublicClasses(type);
+						break;						
 					}
+				} catch (NoClassDefFoundError ncdfe) {
+					System.out.println("SBG: ERROR: problem handling flag: "+flag+" for "+type.getName()+" because of missing "+ncdfe.getMessage());
 				}
 			}
-			
-			// Process all specific methods defined in the input class descriptor (including constructors)
-			List<MethodDescriptor> methods = classDescriptor.getMethods();
-			if (methods != null) {
-				for (MethodDescriptor methodDescriptor : methods) {
-					String n = methodDescriptor.getName();
-					List<String> parameterTypes = methodDescriptor.getParameterTypes();
-					if (parameterTypes == null) {
+		}
+		
+		// Process all specific methods defined in the input class descriptor (including constructors)
+		List<MethodDescriptor> methods = classDescriptor.getMethods();
+		if (methods != null) {
+			for (MethodDescriptor methodDescriptor : methods) {
+				String n = methodDescriptor.getName();
+				List<String> parameterTypes = methodDescriptor.getParameterTypes();
+				if (parameterTypes == null) {
+					if (n.equals("<init>")) {
+						rra.registerAllConstructors(type);
+					} else {
+						rra.registerAllMethodsWithName(type, n);
+					}
+				} else {
+					List<Class<?>> collect = parameterTypes.stream().map(pname -> rra.resolveType(pname))
+							.collect(Collectors.toList());
+					try {
 						if (n.equals("<init>")) {
-							rra.registerAllConstructors(type);
+							rra.registerConstructor(type, collect);
 						} else {
-							rra.registerAllMethodsWithName(type, n);
-						}
-					} else {
-						List<Class<?>> collect = parameterTypes.stream().map(pname -> rra.resolveType(pname))
-								.collect(Collectors.toList());
-						try {
-							if (n.equals("<init>")) {
-								rra.registerConstructor(type, collect);
-							} else {
-								rra.registerMethod(type, n, collect);
-							}
-						} catch (NoSuchMethodException nsme) {
-							throw new IllegalStateException("Couldn't find: " + methodDescriptor.toString(), nsme);
+							rra.registerMethod(type, n, collect);
 						}
+					} catch (NoSuchMethodException nsme) {
+						throw new IllegalStateException("Couldn't find: " + methodDescriptor.toString(), nsme);
 					}
 				}
 			}
-			
-			// Process all specific fields defined in the input class descriptor
-			List<FieldDescriptor> fields = classDescriptor.getFields();
-			if (fields != null) {
-				for (FieldDescriptor fieldDescriptor : fields) {
-					try {
-						rra.registerField(type, fieldDescriptor.getName(), fieldDescriptor.isAllowWrite());
-					} catch (NoSuchFieldException nsfe) {
-						throw new IllegalStateException("Couldn't find field: " + type.getName()+"."+fieldDescriptor.getName(), nsfe);
+		}
+		
+		// Process all specific fields defined in the input class descriptor
+		List<FieldDescriptor> fields = classDescriptor.getFields();
+		if (fields != null) {
+			for (FieldDescriptor fieldDescriptor : fields) {
+				try {
+					rra.registerField(type, fieldDescriptor.getName(), fieldDescriptor.isAllowWrite());
+				} catch (NoSuchFieldException nsfe) {
+					throw new IllegalStateException("Couldn't find field: " + type.getName()+"."+fieldDescriptor.getName(), nsfe);
 //						System.out.println("SBG: WARNING: skipping reflection registration of field "+type.getName()+"."+fieldDescriptor.getName()+": field not found");
-					}
 				}
 			}
 		}
-		registerLogback();
 	}
 
-	// TODO review - not strictly correct as they may ask with different flags (but right now they don't)
-	public static final Set<String> added = new HashSet<>();
+	private boolean isTypePresent(String typename) {
+		if (typename.endsWith("[]")) {
+			return isTypePresent(typename.substring(0, typename.length() - 2));
+		}
+		return ts.resolveSlashed(typename.replace(".", "/"), true) != null;
+	}
 
 	/**
 	 * Record that reflective access to a type (and a selection of its members based on the flags) should
@@ -192,79 +341,380 @@ public class ReflectionHandler {
 	 * 
 	 * @param typename the dotted type name for which to add reflective access
 	 * @param flags any members that should be accessible via reflection
-	 * @return the class, if the type was successfully registered for reflective access, otherwise null
+	 * @return the class, if the type was successfully registered for reflective access, otherwise null. Also
+	 * null if an earlier call already asked for everything this one does.
 	 */
 	public Class<?> addAccess(String typename, Flag...flags) {
-		if (!added.add(typename)) {
+		return addAccess(typename, Collections.emptyList(), Collections.emptyList(), flags);
+	}
+
+	/**
+	 * Record that reflective access to a type and to specific members of it should be possible at runtime,
+	 * rather than to all of its methods. Members that cannot be found, or whose parameter types cannot be
+	 * resolved, are skipped. Repeated requests for the same type are merged by the {@link RegistrationLedger},
+	 * only what was not asked for before is registered.
+	 * 
+	 * @param typename the dotted type name for which to add reflective access
+	 * @param methods the methods (or constructors) to make accessible, parameter types as {@link Class#getName()}
+	 * @param fields the fields to make accessible
+	 * @param flags any members that should be accessible via reflection in their entirety
+	 * @return the class, if the type was successfully registered for reflective access, otherwise null. Also
+	 * null if an earlier call already asked for everything this one does.
+	 */
+	public Class<?> addAccess(String typename, List<MethodDescriptor> methods, List<FieldDescriptor> fields, Flag...flags) {
+		ClassDescriptor request = ClassDescriptor.of(typename);
+		for (Flag flag: flags) {
+			request.setFlag(flag);
+		}
+		methods.forEach(request::addMethodDescriptor);
+		fields.forEach(request::addFieldDescriptor);
+		boolean known = ledger.isRecorded(typename);
+		ClassDescriptor delta = ledger.record(request);
+		if (delta == null) {
 			return null;
 		}
-		System.out.println("SBG: INFO: Registering reflective access to "+typename);
 		// This can return null if, for example, the supertype of the specified type is not
 		// on the classpath. In a simple app there may be a number of types coming in from
 		// spring-boot-autoconfigure but they extend types not on the classpath.
 		Class<?> type = rra.resolveType(typename);
 		if (type == null) {
-			System.out.println("SBG: ERROR: CANNOT RESOLVE "+typename+" ???");
+			if (!known) {
+				System.out.println("SBG: ERROR: CANNOT RESOLVE "+typename+" ???");
+			}
 			return null;
 		}
-		if (constantReflectionDescriptor.hasClassDescriptor(typename)) {
-			System.out.println("SBG: WARNING: type "+typename+" being added dynamically whilst "+RESOURCE_FILE+
-					" already contains it - does it need to be in the file? ");
+		if (!known) {
+			System.out.println("SBG: INFO: Registering reflective access to "+typename);
+			Set<String> sources = hints.getReflectionSources(typename);
+			if (!sources.isEmpty()) {
+				System.out.println("SBG: WARNING: type "+typename+" being added dynamically whilst "+sources+
+						" already contains it - does it need to be in the file? ");
+			}
+			rra.registerType(type);
+		} else {
+			System.out.println("SBG: INFO: Extending reflective access to "+typename+" with "+delta);
+		}
+		Flag[] newFlags = delta.getFlags() == null ? new Flag[0] : delta.getFlags().toArray(new Flag[0]);
+		if (REACHABILITY_DRIVEN) {
+			// Constructors are registered straight away, reflective instantiation is how Spring makes
+			// most of these types reachable in the first place. The rest wait until the analysis sees the type.
+			Set<Flag> deferred = EnumSet.noneOf(Flag.class);
+			List<Flag> now = new ArrayList<>();
+			for (Flag flag: newFlags) {
+				if (flag == Flag.allDeclaredConstructors || flag == Flag.allPublicConstructors) {
+					now.add(flag);
+				} else {
+					deferred.add(flag);
+				}
+			}
+			registerMembers(type, now.toArray(new Flag[0]));
+			if (!deferred.isEmpty()) {
+				addPending(type, decideMembers(ts, type, deferred));
+			}
+		} else {
+			registerMembers(type, newFlags);
+		}
+		if (delta.getMethods() != null) {
+			registerMethods(type, delta.getMethods());
 		}
-		rra.registerType(type);
+		if (delta.getFields() != null) {
+			registerFields(type, delta.getFields());
+		}
+		return type;
+	}
+
+	private void registerMethods(Class<?> type, List<MethodDescriptor> methods) {
+		nextMethod:
+		for (MethodDescriptor methodDescriptor: methods) {
+			List<Class<?>> parameterTypes = new ArrayList<>();
+			for (String parameterTypeName: methodDescriptor.getParameterTypes()) {
+				Class<?> parameterType = rra.resolveType(parameterTypeName);
+				if (parameterType == null) {
+					System.out.println("SBG: WARNING: skipping reflective access to "+type.getName()+"."+methodDescriptor.getName()+
+							" because parameter type "+parameterTypeName+" cannot be resolved");
+					continue nextMethod;
+				}
+				parameterTypes.add(parameterType);
+			}
+			try {
+				if (methodDescriptor.getName().equals(MethodDescriptor.CONSTRUCTOR_NAME)) {
+					rra.registerConstructor(type, parameterTypes);
+				} else {
+					rra.registerMethod(type, methodDescriptor.getName(), parameterTypes);
+				}
+			} catch (NoSuchMethodException | NoClassDefFoundError e) {
+				System.out.println("SBG: WARNING: skipping reflective access to "+type.getName()+"."+methodDescriptor.getName()+": "+e.getMessage());
+			}
+		}
+	}
+
+	private void registerFields(Class<?> type, List<FieldDescriptor> fields) {
+		for (FieldDescriptor fieldDescriptor: fields) {
+			try {
+				rra.registerField(type, fieldDescriptor.getName(), fieldDescriptor.isAllowWrite());
+			} catch (NoSuchFieldException | NoClassDefFoundError e) {
+				System.out.println("SBG: WARNING: skipping reflective access to field "+type.getName()+"."+fieldDescriptor.getName()+": "+e.getMessage());
+			}
+		}
+	}
+
+	private void registerMembers(Class<?> type, Flag...flags) {
+		if (flags.length == 0) {
+			return;
+		}
+		registerDecided(type, decideMembers(ts, type, EnumSet.copyOf(Arrays.asList(flags))));
+	}
+
+	private void addPending(Class<?> type, ClassDescriptor decided) {
+		ClassDescriptor existing = pending.get(type);
+		if (existing == null) {
+			pending.put(type, decided);
+		} else {
+			existing.merge(decided);
+		}
+	}
+
+	/**
+	 * Work out what registering the flags for a type should actually register. A flag is kept if all the
+	 * members it covers can be registered, otherwise the members that can be are listed individually. Decided
+	 * from the bytecode where possible, only types the type system cannot see are checked by loading their
+	 * members (and then it is all or nothing per flag).
+	 * @param ts the type system over the image classpath, or null to check everything by loading members
+	 * @return a descriptor for the type holding the flags, methods and fields to register
+	 */
+	public static ClassDescriptor decideMembers(TypeSystem ts, Class<?> type, Set<Flag> flags) {
+		ClassDescriptor decided = ClassDescriptor.of(type.getName());
+		VerifiedMembers members = ts == null ? null : ts.getVerifiedMembers(type.getName().replace(".", "/"));
 		for (Flag flag: flags) {
 			try {
+				boolean verified = false;
 				switch (flag) {
 				case allDeclaredClasses:
-					if (verify(type.getDeclaredClasses())) {
-						rra.registerDeclaredClasses(type);
-					}
+					verified = members == null ? verify(type.getDeclaredClasses()) : members.areDeclaredClassesVerified();
 					break;
 				case allDeclaredFields:
-					if (verify(type.getDeclaredFields())) {
-						rra.registerDeclaredFields(type);
+					verified = members == null ? verify(type.getDeclaredFields()) : VerifiedMembers.allVerified(members.getFields());
+					if (!verified && members != null) {
+						addVerifiedFields(decided, members.getFields(), false);
 					}
 					break;
 				case allPublicFields:
-					if (verify(type.getFields())) {
-						rra.registerPublicFields(type);
+					verified = members == null ? verify(type.getFields()) : members.arePublicFieldsVerified();
+					if (!verified && members != null) {
+						addVerifiedFields(decided, members.getFields(), true);
 					}
 					break;
 				case allDeclaredConstructors:
-					if (verify(type.getDeclaredConstructors())) {
-						rra.registerDeclaredConstructors(type);	
+					verified = members == null ? verify(type.getDeclaredConstructors()) : VerifiedMembers.allVerified(members.getConstructors());
+					if (!verified && members != null) {
+						addVerifiedMethods(decided, members.getConstructors(), false);
 					}
 					break;
 				case allPublicConstructors:
-					if (verify(type.getConstructors())) {
-						rra.registerPublicConstructors(type);
+					verified = members == null ? verify(type.getConstructors()) : VerifiedMembers.allVerified(members.getConstructors());
+					if (!verified && members != null) {
+						addVerifiedMethods(decided, members.getConstructors(), true);
 					}
 					break;
 				case allDeclaredMethods:
-					if (verify(type.getDeclaredMethods())) {
-						rra.registerDeclaredMethods(type);
+					verified = members == null ? verify(type.getDeclaredMethods()) : VerifiedMembers.allVerified(members.getMethods());
+					if (!verified && members != null) {
+						addVerifiedMethods(decided, members.getMethods(), false);
 					}
 					break;
 				case allPublicMethods:
-					if (verify(type.getMethods())) {
-						rra.registerPublicMethods(type);
+					verified = members == null ? verify(type.getMethods()) : members.arePublicMethodsVerified();
+					if (!verified && members != null) {
+						// Only those declared here, inherited ones are registered on their own types
+						addVerifiedMethods(decided, members.getMethods(), true);
 					}
 					break;
 				case allPublicClasses:
-					if (verify(type.getClasses())) {
-						rra.registerPublicClasses(type);
-					}
+					verified = members == null ? verify(type.getClasses()) : members.arePublicClassesVerified();
 					break;
 				}
+				if (verified) {
+					decided.setFlag(flag);
+				}
 			} catch (NoClassDefFoundError ncdfe) {
 				System.out.println("SBG: ERROR: problem handling flag: "+flag+" for "+type.getName()+" because of missing "+ncdfe.getMessage());
 			}
 		}
-		return type;
+		return decided;
+	}
+
+	/**
+	 * List the verified methods (or constructors) individually, for a type where some cannot be registered.
+	 */
+	private static void addVerifiedMethods(ClassDescriptor decided, List<VerifiedMembers.Member> methods, boolean publicOnly) {
+		for (VerifiedMembers.Member method: methods) {
+			if (!method.isVerified()) {
+				System.out.println("SBG: INFO: not registering reflective access to "+decided.getName()+"."+method+", it refers to missing types");
+				continue;
+			}
+			if (publicOnly && !method.isPublic()) {
+				continue;
+			}
+			MethodDescriptor methodDescriptor = MethodDescriptor.of(method.getName(),
+					method.getParameterTypeNames().toArray(new String[0]));
+			if (!decided.containsMethodDescriptor(methodDescriptor)) {
+				decided.addMethodDescriptor(methodDescriptor);
+			}
+		}
+	}
+
+	private static void addVerifiedFields(ClassDescriptor decided, List<VerifiedMembers.Member> fields, boolean publicOnly) {
+		for (VerifiedMembers.Member field: fields) {
+			if (!field.isVerified()) {
+				System.out.println("SBG: INFO: not registering reflective access to "+decided.getName()+"."+field+", it refers to missing types");
+				continue;
+			}
+			if (publicOnly && !field.isPublic()) {
+				continue;
+			}
+			if (decided.getFieldDescriptor(field.getName()) == null) {
+				decided.addFieldDescriptor(FieldDescriptor.of(field.getName(), false));
+			}
+		}
+	}
+
+	/**
+	 * Register what {@link #decideMembers(TypeSystem, Class, Set)} decided for a type, nothing is checked again.
+	 */
+	private void registerDecided(Class<?> type, ClassDescriptor decided) {
+		if (decided.getFlags() != null) {
+			for (Flag flag: decided.getFlags()) {
+				try {
+					switch (flag) {
+					case allDeclaredClasses:
+						rra.registerDeclaredClasses(type);
+						break;
+					case allDeclaredFields:
+						rra.registerDeclaredFields(type);
+						break;
+					case allPublicFields:
+						rra.registerPublicFields(type);
+						break;
+					case allDeclaredConstructors:
+						rra.registerDeclaredConstructors(type);
+						break;
+					case allPublicConstructors:
+						rra.registerPublicConstructors(type);
+						break;
+					case allDeclaredMethods:
+						rra.registerDeclaredMethods(type);
+						break;
+					case allPublicMethods:
+						rra.registerPublicMethods(type);
+						break;
+					case allPublicClasses:
+						rra.registerPublicClasses(type);
+						break;
+					}
+				} catch (NoClassDefFoundError ncdfe) {
+					System.out.println("SBG: ERROR: problem handling flag: "+flag+" for "+type.getName()+" because of missing "+ncdfe.getMessage());
+				}
+			}
+		}
+		if (decided.getMethods() != null) {
+			registerMethods(type, decided.getMethods());
+		}
+		if (decided.getFields() != null) {
+			registerFields(type, decided.getFields());
+		}
+	}
+
+	/**
+	 * Register the hint entries whose <tt>typeReachable</tt> trigger the analysis has now seen. In reachability
+	 * driven mode also register the deferred members of any type the analysis has now seen (instantiated or used
+	 * in a type check), along with those of its supertypes since inherited members are reachable through it.
+	 * Another analysis iteration is requested if anything was registered.
+	 */
+	public void duringAnalysis(DuringAnalysisAccess a) {
+		DuringAnalysisAccessImpl access = (DuringAnalysisAccessImpl) a;
+		registerTriggeredEntries(access);
+		if (!REACHABILITY_DRIVEN) {
+			return;
+		}
+		List<Class<?>> reached = new ArrayList<>();
+		for (Class<?> type: pending.keySet()) {
+			if (isReachable(access, type)) {
+				reached.add(type);
+			}
+		}
+		Map<Class<?>, ClassDescriptor> ready = new LinkedHashMap<>();
+		for (Class<?> type: reached) {
+			collectReady(type, ready);
+		}
+		for (Map.Entry<Class<?>, ClassDescriptor> entry: ready.entrySet()) {
+			registerDecided(entry.getKey(), entry.getValue());
+		}
+		if (!ready.isEmpty()) {
+			System.out.println("SBG: reachability: registered members of #"+ready.size()+" types, #"+pending.size()+" still pending");
+			access.requireAnalysisIteration();
+		}
+	}
+
+	private void registerTriggeredEntries(DuringAnalysisAccessImpl access) {
+		int registered = 0;
+		for (Iterator<Map.Entry<Class<?>, List<ClassDescriptor>>> it = awaitingTrigger.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Class<?>, List<ClassDescriptor>> entry = it.next();
+			if (isReachable(access, entry.getKey())) {
+				it.remove();
+				entry.getValue().forEach(this::registerClassDescriptor);
+				registered += entry.getValue().size();
+			}
+		}
+		if (registered != 0) {
+			System.out.println("SBG: reflection: registered #"+registered+" entries whose trigger type was reached, #"+
+					awaitingTrigger.size()+" trigger types still unreached");
+			access.requireAnalysisIteration();
+		}
+	}
+
+	/**
+	 * Report the types whose members were never needed, should be called once analysis has finished.
+	 */
+	public void afterAnalysis() {
+		if (!awaitingTrigger.isEmpty()) {
+			System.out.println("SBG: reflection: trigger types "+awaitingTrigger.keySet().stream().map(Class::getName)
+					.collect(Collectors.toList())+" never reached, their entries were not registered");
+			awaitingTrigger.clear();
+		}
+		if (REACHABILITY_DRIVEN) {
+			System.out.println("SBG: reachability: #"+pending.size()+" types never reached, their members were not registered");
+			pending.clear();
+		}
+	}
+
+	private boolean isReachable(DuringAnalysisAccessImpl access, Class<?> type) {
+		try {
+			AnalysisType analysisType = access.getMetaAccess().lookupJavaType(type);
+			return analysisType.isInstantiated() || analysisType.isInTypeCheck();
+		} catch (LinkageError le) {
+			// Incomplete hierarchy, register it as before rather than guessing
+			return true;
+		}
+	}
+
+	private void collectReady(Class<?> type, Map<Class<?>, ClassDescriptor> ready) {
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			collectReadyInterfaces(c, ready);
+		}
+	}
+
+	private void collectReadyInterfaces(Class<?> type, Map<Class<?>, ClassDescriptor> ready) {
+		ClassDescriptor decided = pending.remove(type);
+		if (decided != null) {
+			ready.put(type, decided);
+		}
+		for (Class<?> i: type.getInterfaces()) {
+			collectReadyInterfaces(i, ready);
+		}
 	}
 
 
-	private boolean verify(Object[] things) {
+	private static boolean verify(Object[] things) {
 			for (Object o: things) {
 				try {
 			        if (o instanceof Method) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.support;
+
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+
+/**
+ * Keeps track of the reflective access that has been requested for each type, merging the flags, methods
+ * and fields of repeated requests for the same type. Recording a request answers with only the part of it
+ * that is new, so each piece of access is passed on to the image build once no matter how many times
+ * (or in what combinations) it is asked for.
+ *
+ * @author Andy Clement
+ */
+public class RegistrationLedger {
+
+	private final ReflectionDescriptor recorded = new ReflectionDescriptor();
+
+	/**
+	 * @return true if any access to the dotted type name has been recorded
+	 */
+	public synchronized boolean isRecorded(String typename) {
+		return recorded.hasClassDescriptor(typename);
+	}
+
+	/**
+	 * Merge a request into the ledger.
+	 * @param request the type and the access wanted to it, not modified
+	 * @return the flags, methods and fields of the request not previously recorded for the type (for a type
+	 * not seen before that is a copy of the whole request), or null if there is nothing new
+	 */
+	public synchronized ClassDescriptor record(ClassDescriptor request) {
+		ClassDescriptor existing = recorded.getClassDescriptor(request.getName());
+		ClassDescriptor delta = ClassDescriptor.of(request.getName());
+		if (existing == null) {
+			delta.merge(request);
+			ClassDescriptor entry = ClassDescriptor.of(request.getName());
+			entry.merge(request);
+			recorded.add(entry);
+			return delta;
+		}
+		boolean changed = false;
+		if (request.getFlags() != null) {
+			for (Flag flag : request.getFlags()) {
+				if (existing.getFlags() == null || !existing.getFlags().contains(flag)) {
+					delta.setFlag(flag);
+					changed = true;
+				}
+			}
+		}
+		if (request.getMethods() != null) {
+			for (MethodDescriptor md : request.getMethods()) {
+				if (!existing.containsMethodDescriptor(md) && !delta.containsMethodDescriptor(md)) {
+					delta.addMethodDescriptor(md);
+					changed = true;
+				}
+			}
+		}
+		if (request.getFields() != null) {
+			for (FieldDescriptor fd : request.getFields()) {
+				FieldDescriptor existingField = existing.getFieldDescriptor(fd.getName());
+				// Read access is implied by write access already given
+				if (existingField == null || (fd.isAllowWrite() && !existingField.isAllowWrite())) {
+					delta.merge(fieldOnly(request.getName(), fd));
+					changed = true;
+				}
+			}
+		}
+		if (!changed) {
+			return null;
+		}
+		existing.merge(delta);
+		return delta;
+	}
+
+	/**
+	 * @return everything recorded so far, one descriptor per type in the order they were first requested
+	 */
+	public synchronized ReflectionDescriptor getRecorded() {
+		return new ReflectionDescriptor(recorded);
+	}
+
+	public synchronized int size() {
+		return recorded.size();
+	}
+
+	/**
+	 * Forget everything recorded, for when another image is built in the same JVM.
+	 */
+	public synchronized void reset() {
+		recorded.clear();
+	}
+
+	private static ClassDescriptor fieldOnly(String typename, FieldDescriptor fd) {
+		ClassDescriptor cd = ClassDescriptor.of(typename);
+		cd.addFieldDescriptor(FieldDescriptor.of(fd.getName(), fd.isAllowWrite()));
+		return cd;
+	}
+
+}
@@ -17,7 +17,6 @@ package org.springframework.boot.graal.support;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -25,25 +24,33 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.graalvm.nativeimage.ImageSingletons;
 import org.graalvm.nativeimage.hosted.Feature.BeforeAnalysisAccess;
+import org.springframework.boot.graal.domain.MergedHints;
 import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
 import org.springframework.boot.graal.domain.resources.ResourcesDescriptor;
-import org.springframework.boot.graal.domain.resources.ResourcesJsonMarshaller;
+import org.springframework.boot.graal.type.Field;
 import org.springframework.boot.graal.type.HintDescriptor;
+import org.springframework.boot.graal.type.Method;
 import org.springframework.boot.graal.type.MissingTypeException;
 import org.springframework.boot.graal.type.Type;
 import org.springframework.boot.graal.type.TypeSystem;
+import org.springframework.internal.svm.SpringFactoriesIndex;
 
 import com.oracle.svm.core.jdk.Resources;
 import com.oracle.svm.hosted.FeatureImpl.BeforeAnalysisAccessImpl;
@@ -57,34 +64,110 @@ public class ResourcesHandler {
 	private ImageClassLoader cl;
 	
 	private ReflectionHandler reflectionHandler;
+
+	private ResourcesRegistry resourcesRegistry;
+
+	// When filling in a build cache entry, where the registrations are written down
+	private BuildRecording recording;
+
+	// Only set when @ConditionalOnProperty and friends are evaluated at build time
+	private BuildTimeConditions conditions;
+
+	// The spring.factories files as registered, in classpath order, for the SpringFactoriesIndex
+	private final List<Properties> indexedFactories = new ArrayList<>();
+
+	private final Set<String> recordedPatterns = new HashSet<>();
+
+	// Types evaluated in this spring.factories pass, shared by all the auto-configurations
+	private final Map<String, TypeVerdict> verdicts = new ConcurrentHashMap<>();
+
+	private final AtomicLong verdictLookups = new AtomicLong();
+
+	private final AtomicLong verdictHits = new AtomicLong();
+
+	// Types whose hierarchy has been registered, only used as the buffers are applied
+	private final Set<String> registeredHierarchy = new HashSet<>();
+
+	// Types whose hierarchy has been registered in precise mode, see registerPreciseHierarchy
+	private final Set<String> registeredPreciseHierarchy = new HashSet<>();
+
+	private long hierarchyHits;
 	
 	private static boolean REMOVE_UNNECESSARY_CONFIGURATIONS;
+
+	private static boolean PRECISE_CONFIGURATION_REFLECTION;
+
+	private static boolean PARALLEL_AUTOCONFIG_EVALUATION;
+
+	private static boolean BUILD_TIME_CONDITIONS;
+
+	private static boolean SPRING_FACTORIES_INDEX;
+
+	// Jars (by file name) whose classes are also scanned when generating spring.components, null for none
+	private static Pattern COMPONENT_SCAN_JARS;
+
+	// Injection points on a configuration, whether on methods or fields
+	private final static String[] CONFIGURATION_MEMBER_ANNOTATIONS = { Type.AtAutowired, Type.AtValue, Type.AtInject,
+			Type.AtResource };
 	
 	static {
 		REMOVE_UNNECESSARY_CONFIGURATIONS = Boolean.valueOf(System.getProperty("removeUnusedAutoconfig","false"));
 		System.out.println("Remove unused config = "+REMOVE_UNNECESSARY_CONFIGURATIONS);
+		PRECISE_CONFIGURATION_REFLECTION = Boolean.valueOf(System.getProperty("preciseConfigurationReflection","false"));
+		System.out.println("Precise configuration reflection = "+PRECISE_CONFIGURATION_REFLECTION);
+		PARALLEL_AUTOCONFIG_EVALUATION = Boolean.valueOf(System.getProperty("parallelAutoconfigEvaluation","false"));
+		System.out.println("Parallel auto-configuration evaluation = "+PARALLEL_AUTOCONFIG_EVALUATION);
+		BUILD_TIME_CONDITIONS = Boolean.valueOf(System.getProperty("buildTimeConditions","false"));
+		System.out.println("Build time conditions = "+BUILD_TIME_CONDITIONS);
+		SPRING_FACTORIES_INDEX = Boolean.valueOf(System.getProperty("springFactoriesIndex","false"));
+		System.out.println("Spring factories index = "+SPRING_FACTORIES_INDEX);
+		String componentScanJars = System.getProperty("componentScanJars");
+		COMPONENT_SCAN_JARS = componentScanJars == null || componentScanJars.isEmpty() ? null : Pattern.compile(componentScanJars);
+		System.out.println("Component scan jars = "+COMPONENT_SCAN_JARS);
 	}
 
 	public ResourcesHandler(ReflectionHandler reflectionHandler) {
 		this.reflectionHandler = reflectionHandler;
 	}
 
+	/**
+	 * For driving registrations outside of an image build, e.g. through {@link #registerConfiguration(Type, int, boolean)}.
+	 */
+	public ResourcesHandler(ReflectionHandler reflectionHandler, TypeSystem ts, ResourcesRegistry resourcesRegistry) {
+		this.reflectionHandler = reflectionHandler;
+		this.ts = ts;
+		this.resourcesRegistry = resourcesRegistry;
+	}
+
+	/**
+	 * @return the resources the feature itself asks for
+	 */
 	public ResourcesDescriptor compute() {
-		try {
-			InputStream s = this.getClass().getResourceAsStream("/resources.json");
-			ResourcesDescriptor read = ResourcesJsonMarshaller.read(s);
-			return read;
-		} catch (Exception e) {
-			e.printStackTrace();
-			return null;
-		}
+		return ConstantHints.get().getResources();
 	}
 
-	public void register(BeforeAnalysisAccess access) {
+	public void register(BeforeAnalysisAccess access, MergedHints hints) {
+		register(access, hints, null);
+	}
+
+	/**
+	 * @param recording if not null, where to write down the resources registered
+	 */
+	public void register(BeforeAnalysisAccess access, MergedHints hints, BuildRecording recording) {
 		cl = ((BeforeAnalysisAccessImpl) access).getImageClassLoader();
-		ts = TypeSystem.get(cl.getClasspath());
-		ResourcesDescriptor rd = compute();
-		ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
+		ts = reflectionHandler.getTypeSystem();
+		resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
+		this.recording = recording;
+		recordedPatterns.clear();
+		verdicts.clear();
+		verdictLookups.set(0);
+		verdictHits.set(0);
+		registeredHierarchy.clear();
+		registeredPreciseHierarchy.clear();
+		hierarchyHits = 0;
+		conditions = BUILD_TIME_CONDITIONS ? new BuildTimeConditions(ts) : null;
+		indexedFactories.clear();
+		ResourcesDescriptor rd = hints.getResources();
 		// Patterns can be added to the registry, resources can be directly registered
 		// against Resources
 		// resourcesRegistry.addResources("*");
@@ -99,10 +182,70 @@ public class ResourcesHandler {
 //				URL resource = cl.getClassLoader().getResource(pattern);
 //				System.out.println("Can I find "+pattern+"?  "+resource);
 //			}
-			resourcesRegistry.addResources(pattern);
+			addResources(pattern);
 		}
 		processSpringFactories();
 		processSpringComponents();
+		this.recording = null;
+	}
+
+	/**
+	 * Register the resources an earlier build of the same classpath recorded, without processing any
+	 * spring.factories or spring.components files.
+	 */
+	public void replay(BeforeAnalysisAccess access, BuildRecording recording) {
+		resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
+		List<String> patterns = recording.getRegistered().getResources().getPatterns();
+		System.out.println("SBG: replaying #"+patterns.size()+" resource patterns and #"+
+				recording.getGeneratedResources().size()+" generated resources from the build cache");
+		patterns.forEach(resourcesRegistry::addResources);
+		indexedFactories.clear();
+		for (Map.Entry<String, List<byte[]>> entry: recording.getGeneratedResources().entrySet()) {
+			for (byte[] bytes: entry.getValue()) {
+				Resources.registerResource(entry.getKey(), new ByteArrayInputStream(bytes));
+				if (entry.getKey().equals("META-INF/spring.factories")) {
+					indexSpringFactories(bytes);
+				}
+			}
+		}
+		setSpringFactoriesIndex();
+	}
+
+	private void addResources(String pattern) {
+		resourcesRegistry.addResources(pattern);
+		if (recording != null && recordedPatterns.add(pattern)) {
+			recording.getRegistered().getResources().add(pattern);
+		}
+	}
+
+	private void registerResource(String name, byte[] bytes) {
+		Resources.registerResource(name, new ByteArrayInputStream(bytes));
+		if (recording != null) {
+			recording.addGeneratedResource(name, bytes);
+		}
+	}
+
+	private void indexSpringFactories(byte[] bytes) {
+		if (SPRING_FACTORIES_INDEX) {
+			Properties p = new Properties();
+			try {
+				p.load(new ByteArrayInputStream(bytes));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			indexedFactories.add(p);
+		}
+	}
+
+	/**
+	 * Bake the registered spring.factories files into the image heap for the SpringFactoriesLoader substitution.
+	 */
+	private void setSpringFactoriesIndex() {
+		if (SPRING_FACTORIES_INDEX) {
+			SpringFactoriesIndex.set(indexedFactories);
+			System.out.println("SBG: spring.factories index: #"+SpringFactoriesIndex.get().size()+" factory types from #"+
+					indexedFactories.size()+" files");
+		}
 	}
 	
 	public void processSpringComponents() {
@@ -124,8 +267,7 @@ public class ResourcesHandler {
 				System.out.println("- "+k);
 				p.put(k, filteredComponent.getValue());
 				reflectionHandler.addAccess(k,Flag.allDeclaredConstructors, Flag.allDeclaredMethods, Flag.allDeclaredClasses);
-				ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
-				resourcesRegistry.addResources(k.replace(".", "/")+".class");
+				addResources(k.replace(".", "/")+".class");
 				processComponent(k, new HashSet<>());
             }
             System.out.println("Computed spring.components is ");
@@ -138,8 +280,7 @@ public class ResourcesHandler {
 				p.store(baos,"");
 				baos.close();
 				byte[] bs = baos.toByteArray();
-				ByteArrayInputStream bais = new ByteArrayInputStream(bs);
-				Resources.registerResource("META-INF/spring.components", bais);
+				registerResource("META-INF/spring.components", bs);
 				System.out.println("BAOS: "+new String(bs));
 			} catch (IOException e) {
 				throw new IllegalStateException(e);
@@ -151,7 +292,6 @@ public class ResourcesHandler {
 		if (!visited.add(typename)) {
 			return;
 		}
-		ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
 		Type componentType = ts.resolveDotted(typename);
 		System.out.println("> Component processing: "+typename);
 		List<String> conditionalTypes = componentType.findConditionalOnClassValue();
@@ -164,7 +304,7 @@ public class ResourcesHandler {
 				} else {
 					try {
 						reflectionHandler.addAccess(lDescriptor.substring(1,lDescriptor.length()-1).replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-						resourcesRegistry.addResources(lDescriptor.substring(1,lDescriptor.length()-1)+".class");
+						addResources(lDescriptor.substring(1,lDescriptor.length()-1)+".class");
 					} catch (NoClassDefFoundError e) {
 						System.out.println("Conditional type "+fromLtoDotted(lDescriptor)+" not found for component "+componentType.getName());
 					}
@@ -176,7 +316,7 @@ public class ResourcesHandler {
 			// String configNameDotted = configType.getName().replace("/",".");
 			System.out.println("Including auto-configuration "+typename);
 			reflectionHandler.addAccess(typename,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-			resourcesRegistry.addResources(typename.replace(".", "/")+".class");
+			addResources(typename.replace(".", "/")+".class");
 		} catch (NoClassDefFoundError e) {
 			// Example:
 			// PROBLEM? Can't register Type:org/springframework/boot/autoconfigure/web/servlet/HttpEncodingAutoConfiguration because cannot find javax/servlet/Filter
@@ -212,7 +352,7 @@ public class ResourcesHandler {
 				System.out.println("ECP "+ecPropertyName);
 				try {
 					reflectionHandler.addAccess(ecPropertyName,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-					resourcesRegistry.addResources(ecPropertyName.replace(".", "/")+".class");
+					addResources(ecPropertyName.replace(".", "/")+".class");
 				} catch (NoClassDefFoundError e) {
 					System.out.println("Not found for registration: "+ecPropertyName);
 				}
@@ -247,40 +387,72 @@ public class ResourcesHandler {
 		// com.example.demo.Foobar=org.springframework.stereotype.Component
 		// com.example.demo.DemoApplication=org.springframework.stereotype.Component
 		Enumeration<Object> keys = p.keys();
-		ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
 		while (keys.hasMoreElements()) {
 			String k = (String)keys.nextElement();
 			System.out.println("Registering Spring Component: "+k);
 			reflectionHandler.addAccess(k,Flag.allDeclaredConstructors, Flag.allDeclaredMethods, Flag.allDeclaredClasses);
-			resourcesRegistry.addResources(k.replace(".", "/")+".class");
+			addResources(k.replace(".", "/")+".class");
 			// Register nested types of the component
 			Type baseType = ts.resolveDotted(k);
 			for (Type t: baseType.getNestedTypes()) {
 				String n = t.getName().replace("/", ".");
 				reflectionHandler.addAccess(n,Flag.allDeclaredConstructors, Flag.allDeclaredMethods, Flag.allDeclaredClasses);
-				resourcesRegistry.addResources(t.getName()+".class");
+				addResources(t.getName()+".class");
 			}
-			registerHierarchy(baseType, new HashSet<>(), resourcesRegistry);
+			registerHierarchy(baseType);
 		}
 	}
 	
-	public void registerHierarchy(Type t, Set<Type> visited, ResourcesRegistry resourcesRegistry) {
-		if (t == null || t.getName().equals("java/lang/Object") || !visited.add(t)) {
+	/**
+	 * Register a type and its supertypes, each type is walked at most once per {@link #register} however many
+	 * components or configurations share it.
+	 */
+	public void registerHierarchy(Type t) {
+		if (t == null || t.getName().equals("java/lang/Object")) {
+			return;
+		}
+		if (!registeredHierarchy.add(t.getName())) {
+			hierarchyHits++;
 			return;
 		}
 		String desc = t.getName();
 		System.out.println("Hierarchy registration of "+t.getName());
 		reflectionHandler.addAccess(desc.replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods, Flag.allDeclaredClasses);
-		resourcesRegistry.addResources(desc.replace("$", ".")+".class");			
-		Type s = t.getSuperclass();
-		registerHierarchy(s, visited, resourcesRegistry);
+		addResources(desc.replace("$", ".")+".class");			
+		// Object is never registered, so there is no need to resolve it
+		if (!"java/lang/Object".equals(t.getSuperclassString())) {
+			registerHierarchy(t.getSuperclass());
+		}
 		Type[] is = t.getInterfaces();
 		for (Type i: is) { 
-			registerHierarchy(i, visited, resourcesRegistry);
+			registerHierarchy(i);
 		}
 		// TODO inners of those supertypes/interfaces?
 	}
 
+	/**
+	 * Precise counterpart of {@link #registerHierarchy(Type)} for a configuration: the configuration and its
+	 * supertypes (which can hold <tt>@Bean</tt> methods and injection points too) only get what Spring reflects
+	 * on. Supertypes already registered in their entirety are left alone.
+	 */
+	private void registerPreciseHierarchy(Type t) {
+		if (t == null || t.getName().equals("java/lang/Object")) {
+			return;
+		}
+		if (registeredHierarchy.contains(t.getName()) || !registeredPreciseHierarchy.add(t.getName())) {
+			hierarchyHits++;
+			return;
+		}
+		addConfigurationAccess(t);
+		addResources(t.getName().replace("$", ".")+".class");
+		if (!"java/lang/Object".equals(t.getSuperclassString())) {
+			registerPreciseHierarchy(t.getSuperclass());
+		}
+		for (Type i: t.getInterfaces()) {
+			registerPreciseHierarchy(i);
+		}
+	}
+
 	/**
 	 * Find all META-INF/spring.factories - for any configurations listed in each, check if those configurations use ConditionalOnClass.
 	 * If the classes listed in ConditionalOnClass can't be found, discard the configuration from spring.factories. Register either
@@ -293,28 +465,54 @@ public class ResourcesHandler {
 			URL springFactory = springFactories.nextElement();
 			processSpringFactory(ts, springFactory);
 		}
+		setSpringFactoriesIndex();
+		long lookups = verdictLookups.get();
+		long hits = verdictHits.get();
+		long failing = verdicts.values().stream().filter(v -> !v.missing.isEmpty()).count();
+		long accessible = verdicts.values().stream().flatMap(v -> v.accessible.stream()).distinct().count();
+		System.out.println("SBG: verdict cache: #"+verdicts.size()+" types evaluated (#"+failing+" with missing types, #"+
+				accessible+" types made accessible), "+
+				hits+"/"+lookups+" lookups hit ("+(lookups == 0 ? 0 : hits * 100 / lookups)+"%), #"+
+				hierarchyHits+" hierarchy walks skipped");
 	}
 	
 	
+	/**
+	 * Drop nested types of other components. Sorted by name a type is immediately followed by its nested types
+	 * (no legal name character sorts before '$'), so one sweep remembering the last kept type finds them all.
+	 */
 	private List<Entry<String, String>> filterComponents(List<Entry<String, String>> as) {
+		List<Entry<String,String>> sorted = new ArrayList<>(as);
+		sorted.sort(Entry.comparingByKey());
 		List<Entry<String,String>> filtered = new ArrayList<>();
-		List<Entry<String,String>> subtypesToRemove = new ArrayList<>();
-		for (Entry<String,String> a: as) {
-			String type = a.getKey();
-			subtypesToRemove.addAll(as.stream().filter(e -> e.getKey().startsWith(type+"$")).collect(Collectors.toList()));
+		String enclosingPrefix = null;
+		for (Entry<String,String> a: sorted) {
+			if (enclosingPrefix == null || !a.getKey().startsWith(enclosingPrefix)) {
+				filtered.add(a);
+				enclosingPrefix = a.getKey()+"$";
+			}
 		}
-		filtered.addAll(as);
-		filtered.removeAll(subtypesToRemove);
 		return filtered;
 	}
 
 	private List<Entry<String,String>> scanClasspathForIndexedStereotypes() {
-		return findDirectories(ts.getClasspath())
-			.flatMap(this::findClasses)
-			.map(this::typenameOfClass)
+		// Application classes from classpath directories or from BOOT-INF/classes in a Boot jar, plus
+		// those in any jars that are part of the application
+		Set<String> candidates = new LinkedHashSet<>(ts.getApplicationTypes());
+		if (COMPONENT_SCAN_JARS != null) {
+			List<String> jarTypes = ts.getTypesInJars(COMPONENT_SCAN_JARS);
+			System.out.println("SBG: also scanning #"+jarTypes.size()+" types from jars matching "+COMPONENT_SCAN_JARS);
+			candidates.addAll(jarTypes);
+		}
+		long t = System.currentTimeMillis();
+		// The type system is thread safe and the meta-annotation searches are shared, the result keeps the order
+		List<Entry<String,String>> components = candidates.parallelStream()
 			.map(this::isIndexedOrEntity)
 			.filter(Objects::nonNull)
 			.collect(Collectors.toList());
+		System.out.println("SBG: found #"+components.size()+" stereotypes in #"+candidates.size()+" types in "+
+				(System.currentTimeMillis()-t)+"ms");
+		return components;
 	}
 
 	
@@ -323,45 +521,20 @@ public class ResourcesHandler {
 // app.main.model.FooRepository=org.springframework.data.repository.Repository
 // app.main.SampleApplication=org.springframework.stereotype.Component
 	private Entry<String,String> isIndexedOrEntity(String slashedClassname) {
-		Entry<String,String> entry = ts.resolveSlashed(slashedClassname).isIndexedOrEntity();
+		Entry<String,String> entry;
+		try {
+			entry = ts.resolveSlashed(slashedClassname).isIndexedOrEntity();
+		} catch (MissingTypeException mte) {
+			// Library classes may refer to optional dependencies that are not around
+			System.out.println("SBG: WARNING: skipping "+slashedClassname+" for spring.components: "+mte.getMessage());
+			return null;
+		}
 //		if (entry != null) {
 //			System.out.println("isIndexed for "+slashedClassname+" returned "+entry);
 //		}
 		return entry;
 	}
 	
-	private String typenameOfClass(File f) {
-		return Utils.scanClass(f).getClassname();
-	}
-
-	private Stream<File> findClasses(File dir) {
-		ArrayList<File> classfiles = new ArrayList<>();
-		walk(dir,classfiles);
-		return classfiles.stream();
-	}
-
-	private void walk(File dir, ArrayList<File> classfiles) {
-		File[] fs = dir.listFiles();
-		for (File f: fs) {
-			if (f.isDirectory()) {
-				walk(f,classfiles);
-			} else if (f.getName().endsWith(".class")) {
-				classfiles.add(f);
-			}
-		}
-	}
-
-	private Stream<File> findDirectories(List<String> classpath) {
-		List<File> directories = new ArrayList<>();
-		for (String classpathEntry: classpath) {
-			File f = new File(classpathEntry);
-			if (f.isDirectory()) {
-				directories.add(f);
-			}
-		}
-		return directories.stream();
-	}
-	
 	private void processSpringFactory(TypeSystem ts, URL springFactory) {
 		List<String> forRemoval = new ArrayList<>();
 		Properties p = new Properties();
@@ -390,13 +563,15 @@ public class ResourcesHandler {
 			for (String s: configsString.split(",")) {
 				configs.add(s);
 			}
-			// TODO what about ConditionalOnResource?
 			System.out.println(
 					"Spring.factories processing: looking at #" + configs.size() + " configuration references");
-			for (Iterator<String> iterator = configs.iterator(); iterator.hasNext();) {
-				String config = iterator.next();
+			List<RegistrationBuffer> evaluations = evaluateConfigurations(configs);
+			for (int i = 0; i < configs.size(); i++) {
+				String config = configs.get(i);
+				RegistrationBuffer evaluation = evaluations.get(i);
+				evaluation.apply();
 				boolean needToAddThem = true;
-				if (!verifyType(config)) {
+				if (!evaluation.passes) {
 					System.out.println("Excluding auto-configuration " + config);
 					System.out.println("= COC failed so just adding class forname access (no methods/ctors)");
 					if (REMOVE_UNNECESSARY_CONFIGURATIONS) {
@@ -407,8 +582,7 @@ public class ResourcesHandler {
 				if (needToAddThem) {
 					System.out.println("Resource Adding: "+config);	
 					reflectionHandler.addAccess(config); // no flags as it isn't going to trigger
-					ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
-					resourcesRegistry.addResources(config.replace(".", "/").replace("$", ".")+".class");
+					addResources(config.replace(".", "/").replace("$", ".")+".class");
 				}
 			}
 			configs.removeAll(forRemoval);
@@ -416,21 +590,78 @@ public class ResourcesHandler {
 		}
 		try {
 			if (forRemoval.size() == 0) {
-				Resources.registerResource("META-INF/spring.factories", springFactory.openStream());
+				byte[] bs = TypeSystem.loadFromStream(springFactory.openStream());
+				registerResource("META-INF/spring.factories", bs);
+				indexSpringFactories(bs);
 			} else {
 				System.out.println("  removed " + forRemoval.size() + " configurations");
 				ByteArrayOutputStream baos = new ByteArrayOutputStream();
 				p.store(baos,"");
 				baos.close();
 				byte[] bs = baos.toByteArray();
-				ByteArrayInputStream bais = new ByteArrayInputStream(bs);
-				Resources.registerResource("META-INF/spring.factories", bais);
+				registerResource("META-INF/spring.factories", bs);
+				indexSpringFactories(bs);
 			}
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
 	}
 
+	/**
+	 * Register a configuration that passed its checks, and its hierarchy.
+	 * @param precise whether to only register what Spring reflects on rather than all constructors and methods
+	 */
+	public void registerConfiguration(Type configType, int depth, boolean precise) {
+		try {
+			String configNameDotted = configType.getName().replace("/",".");
+			System.out.println(spaces(depth)+"including reflective/resource access to "+configNameDotted);
+			if (precise) {
+				registerPreciseHierarchy(configType);
+			} else {
+				reflectionHandler.addAccess(configNameDotted,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
+				System.out.println("res: "+configType.getName().replace("$", ".")+".class");
+				addResources(configType.getName().replace("$", ".")+".class");
+				// In some cases the superclass of the config needs to be accessible
+				// TODO need this guard? if (isConfiguration(configType)) {
+				registerHierarchy(configType);
+			}
+		} catch (NoClassDefFoundError e) {
+			// Example:
+			// PROBLEM? Can't register Type:org/springframework/boot/autoconfigure/web/servlet/HttpEncodingAutoConfiguration because cannot find javax/servlet/Filter
+			// java.lang.NoClassDefFoundError: javax/servlet/Filter
+			// ... at com.oracle.svm.hosted.config.ReflectionRegistryAdapter.registerDeclaredConstructors(ReflectionRegistryAdapter.java:97)
+			System.out.println("PROBLEM? Can't register "+configType.getName()+" because cannot find "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Register a configuration class for the reflection Spring actually performs on it: the constructors, the
+	 * <tt>@Bean</tt> factory methods, the injection points (<tt>@Autowired</tt>, <tt>@Value</tt>, <tt>@Inject</tt>,
+	 * <tt>@Resource</tt>), the lifecycle callbacks (<tt>@PostConstruct</tt>, <tt>@PreDestroy</tt>) and the
+	 * <tt>@EventListener</tt> methods. Other methods stay out of the reflection metadata.
+	 */
+	private void addConfigurationAccess(Type configType) {
+		Set<MethodDescriptor> methods = new LinkedHashSet<>();
+		List<Method> candidates = new ArrayList<>(configType.getMethodsWithAtBean());
+		for (String annotation: CONFIGURATION_MEMBER_ANNOTATIONS) {
+			candidates.addAll(configType.getMethodsWithAnnotation(annotation));
+		}
+		candidates.addAll(configType.getMethodsWithAnnotation(Type.AtPostConstruct));
+		candidates.addAll(configType.getMethodsWithAnnotation(Type.AtPreDestroy));
+		candidates.addAll(configType.getMethodsWithMetaAnnotation(Type.AtEventListener));
+		for (Method m: candidates) {
+			methods.add(MethodDescriptor.of(m.getName(), m.getParameterTypeNames().toArray(new String[0])));
+		}
+		Set<FieldDescriptor> fields = new LinkedHashSet<>();
+		for (String annotation: CONFIGURATION_MEMBER_ANNOTATIONS) {
+			for (Field f: configType.getFieldsWithAnnotation(annotation)) {
+				fields.add(FieldDescriptor.of(f.getName(), true));
+			}
+		}
+		reflectionHandler.addAccess(configType.getName().replace("/", "."), new ArrayList<>(methods), new ArrayList<>(fields),
+				Flag.allDeclaredConstructors);
+	}
+
 	private void loadSpringFactoryFile(URL springFactory, Properties p) {
 		try (InputStream is = springFactory.openStream()) {
 			p.load(is);
@@ -439,21 +670,61 @@ public class ResourcesHandler {
 		}
 	}
 	
+	/**
+	 * Evaluate the auto-configurations, each into its own {@link RegistrationBuffer}. In parallel mode they
+	 * are evaluated concurrently against the (thread safe) type system, the buffers are returned in the order
+	 * of the configurations so applying them gives the same registrations and output as a sequential run.
+	 */
+	private List<RegistrationBuffer> evaluateConfigurations(List<String> configs) {
+		if (PARALLEL_AUTOCONFIG_EVALUATION) {
+			long stime = System.currentTimeMillis();
+			List<RegistrationBuffer> buffers = configs.parallelStream().map(this::verifyType).collect(Collectors.toList());
+			System.out.println("SBG: evaluated #" + configs.size() + " auto-configurations in parallel in "
+					+ (System.currentTimeMillis() - stime) + "ms");
+			return buffers;
+		}
+		return configs.stream().map(this::verifyType).collect(Collectors.toList());
+	}
+
 	/**
 	 * For the specified type (dotted name) determine which types must be reflectable at runtime. This means
-	 * looking at annotations and following any type references within those.
+	 * looking at annotations and following any type references within those. Nothing is registered, what
+	 * should be is collected in the returned buffer along with whether the type passes its tests.
 	 */
-	private boolean verifyType(String name) {
-		return processType(name, new HashSet<>());
+	private RegistrationBuffer verifyType(String name) {
+		RegistrationBuffer buffer = new RegistrationBuffer();
+		buffer.passes = processType(ts.resolveDotted(name), 0, buffer).await();
+		return buffer;
 	}
 
-	private boolean processType(String config, Set<String> visited) {
-		return processType(ts.resolveDotted(config), visited, 0);
+	/**
+	 * Evaluate a type once for the whole spring.factories pass. The first request evaluates it into its own
+	 * verdict, later ones (a shared superclass, a nested configuration reached again) reuse that. Either way the
+	 * requesting buffer includes the verdict, whose registrations are applied the first time it is reached when
+	 * the buffers are applied in order.
+	 */
+	private TypeVerdict processType(Type configType, int depth, RegistrationBuffer into) {
+		verdictLookups.incrementAndGet();
+		TypeVerdict verdict = new TypeVerdict();
+		TypeVerdict existing = verdicts.putIfAbsent(configType.getName(), verdict);
+		if (existing != null) {
+			verdictHits.incrementAndGet();
+			into.log(spaces(depth)+"Already processed type "+configType.getName());
+			into.include(existing);
+			return existing;
+		}
+		try {
+			verdict.passes = evaluate(configType, depth, verdict);
+		} finally {
+			verdict.done.countDown();
+		}
+		into.include(verdict);
+		return verdict;
 	}
 
-	private boolean processType(Type configType, Set<String> visited, int depth) {	
-		System.out.println(spaces(depth)+"Processing type "+configType.getName());
-		ResourcesRegistry resourcesRegistry = ImageSingletons.lookup(ResourcesRegistry.class);
+	private boolean evaluate(Type configType, int depth, TypeVerdict verdict) {
+		RegistrationBuffer buffer = verdict.buffer;
+		buffer.log(spaces(depth)+"Processing type "+configType.getName());
 
 		// This would fetch 'things we care about from a graal point of view'
 		// a list
@@ -466,7 +737,8 @@ public class ResourcesHandler {
 		if (!missing.isEmpty()) {
 			// No point continuing with this type, it cannot be resolved against current classpath
 			// The assumption is it will never need to be accessed anyway
-			System.out.println(spaces(depth)+"for "+configType.getName()+" missing types are "+missing);
+			buffer.log(spaces(depth)+"for "+configType.getName()+" missing types are "+missing);
+			verdict.missing = missing;
 			return false;
 		}
 		
@@ -474,7 +746,7 @@ public class ResourcesHandler {
 		if (!missingAnnotationTypes.isEmpty()) {
 			// If only the annotations are missing, it is ok to reflect on the existence of the type, it is
 			// just not safe to reflect on the annotations on that type.
-			System.out.println(spaces(depth)+"for "+configType.getName()+" missing annotation types are "+missingAnnotationTypes);
+			buffer.log(spaces(depth)+"for "+configType.getName()+" missing annotation types are "+missingAnnotationTypes);
 		}
 		boolean passesTests = true;
 		Set<String> toMakeAccessible = new HashSet<>();
@@ -484,15 +756,17 @@ public class ResourcesHandler {
 			for (Map.Entry<HintDescriptor, List<String>> hint: hints.entrySet()) {
 				HintDescriptor hintDescriptor = hint.getKey();
 				List<String> typeReferences = hint.getValue();
-				System.out.println(spaces(depth)+"checking @CompilationHint "+h+"/"+hints.size()+" "+hintDescriptor.getAnnotationChain());
+				buffer.log(spaces(depth)+"checking @CompilationHint "+h+"/"+hints.size()+" "+hintDescriptor.getAnnotationChain());
 				
 				String[] name = hintDescriptor.getName();
 				if (name != null) {
 					// The CollectionHint included a list of types to worry about in the annotation
 					// itself (e.g. as used on import selector to specify.					
 					for (String n: name) {
-						resourcesRegistry.addResources(n.replace(".", "/")+".class");
-						reflectionHandler.addAccess(n,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
+						buffer.register(() -> {
+							addResources(n.replace(".", "/")+".class");
+							reflectionHandler.addAccess(n,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
+						});
 					}
 				}
 
@@ -501,15 +775,16 @@ public class ResourcesHandler {
 					// ReactiveWebServerFactoryConfiguration$EmbeddedTomcat with ConditionalOnClass
 					// TODO is this too much repetition for certain types?
 					for (Type annotatedType : hintDescriptor.getAnnotationChain()) {
-						try {
-							System.out.println("Handling annotated thingy: "+annotatedType.getName());
-							String t = annotatedType.getDescriptor();
-							reflectionHandler.addAccess(t.substring(1,t.length()-1).replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-							resourcesRegistry.addResources(t.substring(1,t.length()-1).replace("$", ".")+".class");
-						} catch (NoClassDefFoundError e) {
-							System.out.println(spaces(depth)+annotatedType.getName()+" not found for configuration "+configType.getName());
-						}
-						
+						buffer.register(() -> {
+							try {
+								System.out.println("Handling annotated thingy: "+annotatedType.getName());
+								String t = annotatedType.getDescriptor();
+								reflectionHandler.addAccess(t.substring(1,t.length()-1).replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
+								addResources(t.substring(1,t.length()-1).replace("$", ".")+".class");
+							} catch (NoClassDefFoundError e) {
+								System.out.println(spaces(depth)+annotatedType.getName()+" not found for configuration "+configType.getName());
+							}
+						});
 					}
 				}
 				
@@ -517,12 +792,12 @@ public class ResourcesHandler {
 					for (String typeReference: typeReferences) { // La/b/C;
 						Type t = ts.Lresolve(typeReference, true);
 						boolean exists = (t != null);
-						System.out.println(spaces(depth)+" does "+fromLtoDotted(typeReference)+" exist? "+exists);
+						buffer.log(spaces(depth)+" does "+fromLtoDotted(typeReference)+" exist? "+exists);
 						if (exists) {
 							// TODO should this specify what aspects of reflection are required (methods/fields/ctors/annotations)
 							toMakeAccessible.add(typeReference);
 							if (hintDescriptor.isFollow()) {
-								processType(t, visited, depth+1);
+								processType(t, depth+1, buffer);
 							}
 						} else if (hintDescriptor.isSkipIfTypesMissing()) {
 							passesTests = false;
@@ -532,43 +807,38 @@ public class ResourcesHandler {
 				h++;
 			}
 		}
+		if (passesTests && conditions != null) {
+			// Properties, resources and the kind of application are fixed for this image
+			String failure = conditions.evaluate(configType);
+			if (failure != null) {
+				buffer.log(spaces(depth)+"for "+configType.getName()+" "+failure);
+				passesTests = false;
+			}
+		}
 		
+		verdict.accessible = toMakeAccessible;
 		if (passesTests || !REMOVE_UNNECESSARY_CONFIGURATIONS) {
 			for (String t: toMakeAccessible) {
-				try {
-					reflectionHandler.addAccess(t.substring(1,t.length()-1).replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-					resourcesRegistry.addResources(t.substring(1,t.length()-1).replace("$", ".")+".class");
-				} catch (NoClassDefFoundError e) {
-					System.out.println(spaces(depth)+"Conditional type "+fromLtoDotted(t)+" not 	found for configuration "+configType.getName());
-				}
+				buffer.register(() -> {
+					try {
+						reflectionHandler.addAccess(t.substring(1,t.length()-1).replace("/", "."),Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
+						addResources(t.substring(1,t.length()-1).replace("$", ".")+".class");
+					} catch (NoClassDefFoundError e) {
+						System.out.println(spaces(depth)+"Conditional type "+fromLtoDotted(t)+" not 	found for configuration "+configType.getName());
+					}
+				});
 			}
 		}
 		
 		if (passesTests) {
-			try {
-				String configNameDotted = configType.getName().replace("/",".");
-				System.out.println(spaces(depth)+"including reflective/resource access to "+configNameDotted);
-				visited.add(configType.getName());
-				reflectionHandler.addAccess(configNameDotted,Flag.allDeclaredConstructors, Flag.allDeclaredMethods);
-				System.out.println("res: "+configType.getName().replace("$", ".")+".class");
-				resourcesRegistry.addResources(configType.getName().replace("$", ".")+".class");
-				// In some cases the superclass of the config needs to be accessible
-				// TODO need this guard? if (isConfiguration(configType)) {
-				registerHierarchy(configType, new HashSet<>(), resourcesRegistry);
-			} catch (NoClassDefFoundError e) {
-				// Example:
-				// PROBLEM? Can't register Type:org/springframework/boot/autoconfigure/web/servlet/HttpEncodingAutoConfiguration because cannot find javax/servlet/Filter
-				// java.lang.NoClassDefFoundError: javax/servlet/Filter
-				// ... at com.oracle.svm.hosted.config.ReflectionRegistryAdapter.registerDeclaredConstructors(ReflectionRegistryAdapter.java:97)
-				System.out.println("PROBLEM? Can't register "+configType.getName()+" because cannot find "+e.getMessage());
-			}
+			buffer.register(() -> registerConfiguration(configType, depth, PRECISE_CONFIGURATION_REFLECTION));
 		}
 		
 		// HibernateJpaConfiguration has a supertype also covered with @Configuration - so more than just registering
 		// the hierarchy as accessible, it may contain more config to chase down
 		Type s = configType.getSuperclass();
 		while (s!= null) {
-			processType(s, visited, depth+1);
+			processType(s, depth+1, buffer);
 			s = s.getSuperclass();
 		}
 
@@ -576,12 +846,10 @@ public class ResourcesHandler {
 		if (passesTests) {
 			List<Type> nestedTypes = configType.getNestedTypes();
 			for (Type t: nestedTypes) {
-				if (visited.add(t.getName())) {
-					processType(t, visited, depth+1);
-				}
+				processType(t, depth+1, buffer);
 			}
 		} else {
-			System.out.println("INFO: tests failed on "+configType.getName()+" so not going into nested types");
+			buffer.log("INFO: tests failed on "+configType.getName()+" so not going into nested types");
 		}
 		return passesTests;
 	}
@@ -607,4 +875,71 @@ public class ResourcesHandler {
 		return "                                                  ".substring(0,depth*2);
 	}
 	
+	/**
+	 * The outcome of evaluating one type: whether it passes its tests, the types it makes accessible, the types
+	 * it is missing and the registrations (including those of the types it led to) to apply if it is needed.
+	 */
+	private static class TypeVerdict {
+
+		private final RegistrationBuffer buffer = new RegistrationBuffer();
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile boolean passes;
+
+		private volatile Set<String> accessible = Collections.emptySet();
+
+		private volatile Set<String> missing = Collections.emptySet();
+
+		private boolean applied;
+
+		/**
+		 * @return whether the type passes, waiting for another thread still evaluating it
+		 */
+		boolean await() {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+			return passes;
+		}
+
+		void apply() {
+			// Set first, a type can lead back to itself
+			if (!applied) {
+				applied = true;
+				buffer.apply();
+			}
+		}
+	}
+
+	/**
+	 * What the evaluation of one auto-configuration decided to register, and what it logged, in the order it
+	 * happened. Filled in without touching the registries so that evaluations can run concurrently, then applied.
+	 */
+	private static class RegistrationBuffer {
+
+		private final List<Runnable> actions = new ArrayList<>();
+
+		boolean passes;
+
+		void log(String message) {
+			actions.add(() -> System.out.println(message));
+		}
+
+		void register(Runnable registration) {
+			actions.add(registration);
+		}
+
+		void include(TypeVerdict verdict) {
+			actions.add(verdict::apply);
+		}
+
+		void apply() {
+			actions.forEach(Runnable::run);
+		}
+	}
+
 }
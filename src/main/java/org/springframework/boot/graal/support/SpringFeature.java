@@ -20,8 +20,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.graalvm.nativeimage.hosted.Feature;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationDescriptor;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptor;
 
 import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.hosted.FeatureImpl.DuringSetupAccessImpl;
 import com.oracle.svm.hosted.ResourcesFeature;
 import com.oracle.svm.reflect.hosted.ReflectionFeature;
 import com.oracle.svm.reflect.proxy.hosted.DynamicProxyFeature;
@@ -37,6 +40,9 @@ public class SpringFeature implements Feature {
     
     private InitializationHandler buildTimeInitializationHandler;
 
+    // Null unless the build cache is enabled
+    private BuildCache buildCache;
+
 	public SpringFeature() {
 		System.out.println(
 				"███████╗██████╗ ██████╗ ██╗███╗   ██╗ ██████╗     ██████╗  ██████╗  ██████╗ ████████╗     ██████╗ ██████╗  █████╗  █████╗ ██╗     \n" + 
@@ -65,13 +71,37 @@ public class SpringFeature implements Feature {
     }
     
     public void duringSetup(DuringSetupAccess access) {
-    	reflectionHandler.register(access);
-    	dynamicProxiesHandler.register(access);
+    	buildCache = BuildCache.open(((DuringSetupAccessImpl) access).getImageClassLoader().getClasspath());
+    	if (buildCache != null && buildCache.isHit()) {
+    		BuildRecording recording = buildCache.getRecording();
+    		reflectionHandler.replay(access, recording);
+    		dynamicProxiesHandler.register(access, recording.getRegistered().getProxies());
+    	} else {
+    		reflectionHandler.register(access, buildCache != null);
+    		ProxiesDescriptor pd = reflectionHandler.getHints().getProxies();
+    		dynamicProxiesHandler.register(access, pd);
+    		if (buildCache != null) {
+    			buildCache.getRecording().getRegistered().setProxies(pd);
+    		}
+    	}
     }
     
     public void beforeAnalysis(BeforeAnalysisAccess access) {
-    	resourcesHandler.register(access);
-    	buildTimeInitializationHandler.register(access);
+    	if (buildCache != null && buildCache.isHit()) {
+    		BuildRecording recording = buildCache.getRecording();
+    		resourcesHandler.replay(access, recording);
+    		buildTimeInitializationHandler.register(access, recording.getRegistered().getInitialization());
+    	} else {
+    		BuildRecording recording = buildCache == null ? null : buildCache.getRecording();
+    		resourcesHandler.register(access, reflectionHandler.getHints(), recording);
+    		InitializationDescriptor id = reflectionHandler.getHints().getInitialization();
+    		buildTimeInitializationHandler.register(access, id);
+    		if (recording != null) {
+    			recording.getRegistered().setInitialization(id);
+    			reflectionHandler.finishRecording(recording);
+    			buildCache.store();
+    		}
+    	}
     	// TODO who requires this, is it a netty thing?
     	try {
 			access.registerAsUnsafeAccessed(Buffer.class.getDeclaredField("address"));
@@ -82,4 +112,16 @@ public class SpringFeature implements Feature {
 		}
     }
 
+    public void duringAnalysis(DuringAnalysisAccess access) {
+    	reflectionHandler.duringAnalysis(access);
+    }
+
+    public void afterAnalysis(AfterAnalysisAccess access) {
+    	reflectionHandler.afterAnalysis();
+    }
+
+    public void cleanup() {
+    	reflectionHandler.cleanup();
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+/**
+ * Bloom filter over strings. Answers whether a string might have been added (with a small chance of a false
+ * positive) or definitely was not. Sized up front for the expected number of entries at roughly a 1% false
+ * positive rate. Adding is not thread safe, checking is once the filter has been populated and published.
+ *
+ * @author Andy Clement
+ */
+public class BloomFilter {
+
+	// Bits per entry and number of hashes for ~1% false positives
+	private final static int BITS_PER_ENTRY = 10;
+
+	private final static int HASHES = 7;
+
+	private final long[] bits;
+
+	private final int size;
+
+	public BloomFilter(int expectedEntries) {
+		long bitCount = Math.max(64, (long) expectedEntries * BITS_PER_ENTRY);
+		this.bits = new long[(int) Math.min(Integer.MAX_VALUE / 64, (bitCount + 63) / 64)];
+		this.size = bits.length * 64;
+	}
+
+	public void add(String s) {
+		int h1 = s.hashCode();
+		int h2 = mix(h1);
+		for (int i = 0; i < HASHES; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	public boolean mightContain(String s) {
+		int h1 = s.hashCode();
+		int h2 = mix(h1);
+		for (int i = 0; i < HASHES; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Second hash derived from the first (murmur3 finalizer), forced odd so the probes never collapse
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h | 1;
+	}
+
+}
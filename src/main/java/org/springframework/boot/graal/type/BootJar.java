@@ -0,0 +1,279 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A Spring Boot executable (fat) jar read in place. The application classes under <tt>BOOT-INF/classes</tt>
+ * and the jars under <tt>BOOT-INF/lib</tt> are each exposed as an {@link Archive}. Nested jars are normally
+ * stored rather than compressed, in which case they are used directly as slices of the memory mapped outer
+ * jar, nothing is extracted. A compressed nested jar is inflated into memory.
+ *
+ * @author Andy Clement
+ */
+public class BootJar {
+
+	private final static String BOOT_INF = "BOOT-INF/";
+
+	private final static String CLASSES = "BOOT-INF/classes/";
+
+	private final static String LIB = "BOOT-INF/lib/";
+
+	private final static int DEFLATED = 8;
+
+	private final File file;
+
+	// Application classes first, then the libraries in the order they appear in the jar
+	private final List<Archive> archives = new ArrayList<>();
+
+	private BootJar(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Only the <tt>BOOT-INF/</tt> layout makes a Boot executable jar, the loader classes alone do not (they are
+	 * also on a normal classpath in the <tt>spring-boot-loader</tt> jar).
+	 * @param entryName the name of any entry in a jar
+	 * @return true if a jar containing it is a Boot executable jar
+	 */
+	public static boolean isBootJarEntry(String entryName) {
+		return entryName.startsWith(BOOT_INF);
+	}
+
+	public static BootJar open(File file) throws IOException {
+		ByteBuffer zip;
+		try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			zip = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+		}
+		ZipCentralDirectory cd = ZipCentralDirectory.read(zip);
+		if (cd == null) {
+			throw new IOException("Unable to read " + file + " in place (zip64?)");
+		}
+		BootJar bootJar = new BootJar(file);
+		bootJar.archives.add(new Archive(file + "!/" + CLASSES, zip, cd, CLASSES, true));
+		for (int i = 0; i < cd.size(); i++) {
+			String name = cd.getName(i);
+			if (name.startsWith(LIB) && name.endsWith(".jar")) {
+				ByteBuffer nested = entryData(zip, cd, i);
+				ZipCentralDirectory nestedCd = ZipCentralDirectory.read(nested);
+				if (nestedCd == null) {
+					System.out.println("SBG: WARNING: unable to read nested jar " + name + " in " + file + ", skipping");
+					continue;
+				}
+				bootJar.archives.add(new Archive(file + "!/" + name, nested, nestedCd, "", false));
+			}
+		}
+		return bootJar;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public List<Archive> getArchives() {
+		return archives;
+	}
+
+	public int getClassCount() {
+		int count = 0;
+		for (Archive archive : archives) {
+			count += archive.getClassNames().size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the (uncompressed) data for the entry, a slice of the zip if it is stored
+	 */
+	private static ByteBuffer entryData(ByteBuffer zip, ZipCentralDirectory cd, int i) throws IOException {
+		int offset = ZipCentralDirectory.dataOffset(zip, cd.getLocalHeaderOffset(i));
+		int method = cd.getMethod(i);
+		if (method == ZipCentralDirectory.STORED) {
+			return slice(zip, offset, cd.getSize(i));
+		} else if (method == DEFLATED) {
+			byte[] compressed = new byte[cd.getCompressedSize(i)];
+			ByteBuffer bb = zip.duplicate();
+			bb.position(offset);
+			bb.get(compressed);
+			return ByteBuffer.wrap(inflate(compressed, cd.getSize(i)));
+		}
+		throw new IOException("Unsupported compression method " + method + " for " + cd.getName(i));
+	}
+
+	private static ByteBuffer slice(ByteBuffer zip, int offset, int length) {
+		ByteBuffer bb = zip.duplicate();
+		bb.position(offset);
+		bb.limit(offset + length);
+		return bb.slice();
+	}
+
+	private static byte[] inflate(byte[] compressed, int size) throws IOException {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			byte[] data = new byte[size];
+			int read = 0;
+			while (read < size && !inflater.finished()) {
+				int n = inflater.inflate(data, read, size - read);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				read += n;
+			}
+			if (read != size) {
+				throw new IOException("Expected " + size + " bytes but inflated " + read);
+			}
+			return data;
+		} catch (DataFormatException dfe) {
+			throw new IOException(dfe);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * The classes in one part of a Boot jar, either the application classes or a nested library jar. Safe for
+	 * concurrent reads.
+	 */
+	public static class Archive {
+
+		private final String name;
+
+		private final ByteBuffer zip;
+
+		private final ZipCentralDirectory cd;
+
+		private final String prefix;
+
+		private final boolean application;
+
+		// Slashed type name to index in the central directory
+		private final Map<String, Integer> classes = new HashMap<>();
+
+		private final List<String> classNames = new ArrayList<>();
+
+		Archive(String name, ByteBuffer zip, ZipCentralDirectory cd, String prefix, boolean application) {
+			this.name = name;
+			this.zip = zip;
+			this.cd = cd;
+			this.prefix = prefix;
+			this.application = application;
+			for (int i = 0; i < cd.size(); i++) {
+				String entryName = cd.getName(i);
+				if (entryName.startsWith(prefix) && entryName.endsWith(".class")) {
+					String className = entryName.substring(prefix.length(), entryName.length() - ".class".length());
+					classes.put(className, i);
+					classNames.add(className);
+				}
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return true if these are the application classes (<tt>BOOT-INF/classes</tt>)
+		 */
+		public boolean isApplication() {
+			return application;
+		}
+
+		/**
+		 * @return the slashed names of the classes, e.g. <tt>a/b/C</tt>
+		 */
+		public List<String> getClassNames() {
+			return Collections.unmodifiableList(classNames);
+		}
+
+		/**
+		 * @return the bytes of the class or null if this archive does not contain it
+		 */
+		public byte[] read(String slashedTypeName) {
+			ByteBuffer data = readBuffer(slashedTypeName);
+			if (data == null) {
+				return null;
+			}
+			if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.remaining()) {
+				return data.array();
+			}
+			byte[] bytes = new byte[data.remaining()];
+			data.get(bytes);
+			return bytes;
+		}
+
+		/**
+		 * @return the class data, a slice of the mapped jar if the entry is stored, or null if this archive does
+		 * not contain it
+		 */
+		public ByteBuffer readBuffer(String slashedTypeName) {
+			Integer i = classes.get(slashedTypeName);
+			if (i == null) {
+				return null;
+			}
+			try {
+				return entryData(zip, cd, i);
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Problem reading " + slashedTypeName + " from " + name, ioe);
+			}
+		}
+
+		/**
+		 * Add the resources under a directory to a map, keyed by where they were found in the form a Boot jar
+		 * URL uses, e.g. <tt>app.jar!/BOOT-INF/classes!/application.properties</tt>.
+		 * @param directory the directory to look in, relative to the root of this archive
+		 * @param filter applied to the resource name relative to the root of this archive
+		 */
+		public void findResources(String directory, Predicate<String> filter, Map<String, byte[]> found) {
+			String location = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+			for (int i = 0; i < cd.size(); i++) {
+				String entryName = cd.getName(i);
+				if (entryName.startsWith(prefix + directory) && !entryName.endsWith("/")) {
+					String resourceName = entryName.substring(prefix.length());
+					if (filter.test(resourceName)) {
+						try {
+							ByteBuffer data = entryData(zip, cd, i);
+							byte[] bytes = new byte[data.remaining()];
+							data.get(bytes);
+							found.put(location + "!/" + resourceName, bytes);
+						} catch (IOException ioe) {
+							System.out.println("SBG: WARNING: unable to read " + entryName + " from " + name + ": " + ioe.getMessage());
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+}
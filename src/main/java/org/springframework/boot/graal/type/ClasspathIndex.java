@@ -0,0 +1,326 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * On disk index of the archives on a classpath, allowing a {@link TypeSystem} to skip walking jars that
+ * have not changed since a previous build. For each archive the index records the size, last modified
+ * time and a checksum of the central directory, plus the name of every class entry and whether it is a Boot
+ * executable jar. The file is memory mapped when loaded and an archive's entry is only decoded from it when
+ * {@link #get(File)} asks for that archive. Archives are only re-indexed if their size changes or if their
+ * timestamp changes and the checksum no longer matches. Only the archives asked for since loading are saved,
+ * so the file follows the classpath it is used for rather than growing.
+ *
+ * @author Andy Clement
+ */
+public class ClasspathIndex {
+
+	private final static int MAGIC = 0x5342_4749; // SBGI
+
+	private final static int VERSION = 3;
+
+	// The archives asked for since loading, keyed by absolute path, insertion ordered so the file is stable
+	private Map<String, Entry> entries = new LinkedHashMap<>();
+
+	// Where each archive's (not yet decoded) entry starts in the mapped file
+	private Map<String, Integer> positions = new HashMap<>();
+
+	private ByteBuffer mapped;
+
+	private boolean modified = false;
+
+	public static ClasspathIndex load(File indexFile) {
+		ClasspathIndex index = new ClasspathIndex();
+		if (indexFile == null || !indexFile.exists()) {
+			return index;
+		}
+		try (FileChannel fc = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			if (bb.getInt() != MAGIC || bb.getInt() != VERSION) {
+				System.out.println("SBG: WARNING: ignoring classpath index with unexpected format: " + indexFile);
+				return index;
+			}
+			int count = bb.getInt();
+			for (int i = 0; i < count; i++) {
+				String path = Entry.readString(bb);
+				int length = bb.getInt();
+				index.positions.put(path, bb.position());
+				bb.position(bb.position() + length);
+			}
+			index.mapped = bb;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("SBG: WARNING: unable to read classpath index " + indexFile + ": " + e.getMessage());
+			index.positions.clear();
+		}
+		return index;
+	}
+
+	public synchronized void save(File indexFile) {
+		// Also rewritten if archives in the file were not asked for, to drop them
+		if (indexFile == null || (!modified && entries.keySet().equals(positions.keySet()))) {
+			return;
+		}
+		File parent = indexFile.getAbsoluteFile().getParentFile();
+		try {
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			// Write alongside and then move so concurrent builds never see a partial index
+			File tmp = File.createTempFile(indexFile.getName(), ".tmp", parent);
+			try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				dos.writeInt(MAGIC);
+				dos.writeInt(VERSION);
+				dos.writeInt(entries.size());
+				for (Entry entry : entries.values()) {
+					Entry.writeString(dos, entry.path);
+					ByteArrayOutputStream baos = new ByteArrayOutputStream();
+					try (DataOutputStream body = new DataOutputStream(baos)) {
+						entry.write(body);
+					}
+					dos.writeInt(baos.size());
+					baos.writeTo(dos);
+				}
+			}
+			Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			modified = false;
+		} catch (IOException ioe) {
+			System.out.println("SBG: WARNING: unable to write classpath index " + indexFile + ": " + ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Return the index entry for the specified archive, computing it if the archive is new or has changed.
+	 * Safe to call from multiple threads, the archives themselves are read outside of any lock.
+	 */
+	public Entry get(File archive) {
+		String path = archive.getAbsolutePath();
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(path);
+			if (entry == null) {
+				entry = decode(path);
+			}
+		}
+		long size = archive.length();
+		long lastModified = archive.lastModified();
+		if (entry != null && entry.size == size) {
+			if (entry.lastModified == lastModified) {
+				return entry;
+			}
+			// Touched but possibly identical (e.g. downloaded again), the checksum decides
+			try {
+				ZipCentralDirectory cd = ZipCentralDirectory.read(archive);
+				if (cd != null && cd.getChecksum() == entry.checksum) {
+					synchronized (this) {
+						entry.lastModified = lastModified;
+						modified = true;
+					}
+					return entry;
+				}
+			} catch (IOException ioe) {
+				// fall through and rebuild
+			}
+		}
+		entry = Entry.build(archive);
+		synchronized (this) {
+			entries.put(path, entry);
+			modified = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the entry for the archive from the mapped file (remembered as asked for), null if it is not in there
+	 */
+	private Entry decode(String path) {
+		Integer position = positions.get(path);
+		if (position == null) {
+			return null;
+		}
+		ByteBuffer bb = mapped.duplicate();
+		bb.position(position);
+		Entry entry = Entry.read(path, bb);
+		entries.put(path, entry);
+		return entry;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Index information for a single archive.
+	 */
+	public static class Entry {
+
+		String path;
+
+		long size;
+
+		long lastModified;
+
+		long checksum;
+
+		String[] classNames;
+
+		boolean bootJar;
+
+		private Entry() {
+		}
+
+		static Entry build(File archive) {
+			Entry entry = new Entry();
+			entry.path = archive.getAbsolutePath();
+			entry.size = archive.length();
+			entry.lastModified = archive.lastModified();
+			List<String> names = new ArrayList<>();
+			try {
+				ZipCentralDirectory cd = ZipCentralDirectory.read(archive);
+				if (cd != null) {
+					entry.checksum = cd.getChecksum();
+					for (int i = 0; i < cd.size(); i++) {
+						String name = cd.getName(i);
+						if (name.endsWith(".class")) {
+							names.add(name);
+						}
+						entry.bootJar |= BootJar.isBootJarEntry(name);
+					}
+				} else {
+					// Not something we can read directly (zip64?)
+					try (ZipFile zf = new ZipFile(archive)) {
+						Enumeration<? extends ZipEntry> zipEntries = zf.entries();
+						while (zipEntries.hasMoreElements()) {
+							ZipEntry zipEntry = zipEntries.nextElement();
+							if (zipEntry.getName().endsWith(".class")) {
+								names.add(zipEntry.getName());
+							}
+							entry.bootJar |= BootJar.isBootJarEntry(zipEntry.getName());
+						}
+					}
+				}
+			} catch (IOException ioe) {
+				throw new RuntimeException("Problem during scan of " + archive, ioe);
+			}
+			entry.classNames = names.toArray(new String[0]);
+			return entry;
+		}
+
+		static Entry read(String path, ByteBuffer bb) {
+			Entry entry = new Entry();
+			entry.path = path;
+			entry.size = bb.getLong();
+			entry.lastModified = bb.getLong();
+			entry.checksum = bb.getLong();
+			entry.bootJar = bb.get() != 0;
+			int count = bb.getInt();
+			entry.classNames = new String[count];
+			for (int i = 0; i < count; i++) {
+				entry.classNames[i] = readString(bb);
+			}
+			return entry;
+		}
+
+		void write(DataOutputStream dos) throws IOException {
+			dos.writeLong(size);
+			dos.writeLong(lastModified);
+			dos.writeLong(checksum);
+			dos.writeBoolean(bootJar);
+			dos.writeInt(classNames.length);
+			for (int i = 0; i < classNames.length; i++) {
+				writeString(dos, classNames[i]);
+			}
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public long getChecksum() {
+			return checksum;
+		}
+
+		/**
+		 * @return the names of the class entries in the archive, e.g. <tt>a/b/C.class</tt>
+		 */
+		public String[] getClassNames() {
+			return classNames;
+		}
+
+		/**
+		 * @return true if the archive is a Boot executable jar, see {@link BootJar#isBootJarEntry(String)}
+		 */
+		public boolean isBootJar() {
+			return bootJar;
+		}
+
+		/**
+		 * @return the (slashed) packages containing classes in this archive
+		 */
+		public Set<String> getPackages() {
+			Set<String> packages = new LinkedHashSet<>();
+			for (String name : classNames) {
+				int lastSlash = name.lastIndexOf("/");
+				if (lastSlash != -1) {
+					packages.add(name.substring(0, lastSlash));
+				}
+			}
+			return packages;
+		}
+
+		private static String readString(ByteBuffer bb) {
+			int len = bb.getShort() & 0xffff;
+			byte[] bytes = new byte[len];
+			bb.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private static void writeString(DataOutputStream dos, String s) throws IOException {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			dos.writeShort(bytes.length);
+			dos.write(bytes);
+		}
+	}
+
+}
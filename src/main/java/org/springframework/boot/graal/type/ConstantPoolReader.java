@@ -0,0 +1,321 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Reusable variant of {@link ConstantPoolScanner} for bulk scans. Reads the constant pool straight out of a
+ * {@link ByteBuffer} (a heap buffer, a memory mapped file or a slice of a mapped zip) and keeps its working
+ * arrays between classes, growing them only when a larger constant pool comes along. Questions about names
+ * (is this class referenced, does anything in this package get used) are answered by comparing the UTF8
+ * entries in place, no strings are created unless a name is actually asked for.
+ * <p>
+ * Not thread safe, use one reader per thread. The buffer must not be modified while a class is being looked at.
+ *
+ * @author Andy Clement
+ */
+public class ConstantPoolReader {
+
+	private final static byte CONSTANT_Utf8 = 1;
+
+	private final static byte CONSTANT_Integer = 3;
+
+	private final static byte CONSTANT_Float = 4;
+
+	private final static byte CONSTANT_Long = 5;
+
+	private final static byte CONSTANT_Double = 6;
+
+	private final static byte CONSTANT_Class = 7;
+
+	private final static byte CONSTANT_String = 8;
+
+	private final static byte CONSTANT_Fieldref = 9;
+
+	private final static byte CONSTANT_Methodref = 10;
+
+	private final static byte CONSTANT_InterfaceMethodref = 11;
+
+	private final static byte CONSTANT_NameAndType = 12;
+
+	private final static byte CONSTANT_MethodHandle = 15;
+
+	private final static byte CONSTANT_MethodType = 16;
+
+	private final static byte CONSTANT_Dynamic = 17;
+
+	private final static byte CONSTANT_InvokeDynamic = 18;
+
+	private final static byte CONSTANT_Module = 19;
+
+	private final static byte CONSTANT_Package = 20;
+
+	private ByteBuffer buffer;
+
+	// Tag of each constant pool entry and the absolute offset in the buffer of its data (just after the tag)
+	private byte[] tags = new byte[256];
+
+	private int[] offsets = new int[256];
+
+	private int cpsize;
+
+	private int thisClass;
+
+	// Used to decode names when they are asked for
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Read the constant pool of the class starting at the buffer position. The position of the buffer is not
+	 * changed. Any state from the previous class is discarded.
+	 * @return this reader
+	 */
+	public ConstantPoolReader read(ByteBuffer classBytes) {
+		ByteBuffer bb = classBytes.order() == ByteOrder.BIG_ENDIAN ? classBytes
+				: classBytes.duplicate().order(ByteOrder.BIG_ENDIAN);
+		this.buffer = bb;
+		int ptr = bb.position();
+		int magic = bb.getInt(ptr);
+		if (magic != 0xCAFEBABE) {
+			throw new IllegalStateException("not bytecode, magic was 0x" + Integer.toString(magic, 16));
+		}
+		ptr += 8; // magic, minor and major versions
+		cpsize = u2(ptr);
+		ptr += 2;
+		if (tags.length < cpsize) {
+			int size = Math.max(cpsize, tags.length * 2);
+			tags = new byte[size];
+			offsets = new int[size];
+		}
+		for (int i = 1; i < cpsize; i++) {
+			byte tag = bb.get(ptr++);
+			tags[i] = tag;
+			offsets[i] = ptr;
+			switch (tag) {
+				case CONSTANT_Integer:
+				case CONSTANT_Float:
+				case CONSTANT_Fieldref:
+				case CONSTANT_Methodref:
+				case CONSTANT_InterfaceMethodref:
+				case CONSTANT_NameAndType:
+				case CONSTANT_Dynamic:
+				case CONSTANT_InvokeDynamic:
+					ptr += 4;
+					break;
+				case CONSTANT_Utf8:
+					ptr += 2 + u2(ptr);
+					break;
+				case CONSTANT_Long:
+				case CONSTANT_Double:
+					ptr += 8;
+					tags[++i] = 0;
+					break;
+				case CONSTANT_MethodHandle:
+					ptr += 3;
+					break;
+				case CONSTANT_Class:
+				case CONSTANT_String:
+				case CONSTANT_MethodType:
+				case CONSTANT_Module:
+				case CONSTANT_Package:
+					ptr += 2;
+					break;
+				default:
+					throw new IllegalStateException("Entry: " + i + " " + Byte.toString(tag));
+			}
+		}
+		ptr += 2; // access flags
+		thisClass = u2(ptr);
+		return this;
+	}
+
+	/**
+	 * @return the number of constant pool slots in the current class (one more than the number of entries)
+	 */
+	public int getConstantPoolSize() {
+		return cpsize;
+	}
+
+	/**
+	 * @return slashed name of the current class, decoded on each call
+	 */
+	public String getClassName() {
+		return utf8(u2(offsets[thisClass]));
+	}
+
+	/**
+	 * @return true if the current class has the specified slashed name
+	 */
+	public boolean isClassName(String slashedName) {
+		return utf8Equals(u2(offsets[thisClass]), slashedName);
+	}
+
+	/**
+	 * @return true if the constant pool has a class entry for the specified slashed name. Note that a type only
+	 * used in signatures or descriptors does not need a class entry, see {@link #addReferencedClasses(Collection)}.
+	 */
+	public boolean referencesClass(String slashedName) {
+		for (int i = 1; i < cpsize; i++) {
+			if (tags[i] == CONSTANT_Class && utf8Equals(u2(offsets[i]), slashedName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param slashedPrefix a package or type prefix, e.g. <tt>org/hibernate/</tt>
+	 * @return true if the constant pool has a class entry whose name starts with the prefix
+	 */
+	public boolean referencesClassStartingWith(String slashedPrefix) {
+		for (int i = 1; i < cpsize; i++) {
+			if (tags[i] == CONSTANT_Class && utf8StartsWith(u2(offsets[i]), slashedPrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the constant pool contains the UTF8 entry. Useful as a cheap pre-check, for example a class
+	 * directly annotated with <tt>Lorg/springframework/stereotype/Indexed;</tt> must contain that descriptor.
+	 */
+	public boolean containsUtf8(String s) {
+		for (int i = 1; i < cpsize; i++) {
+			if (tags[i] == CONSTANT_Utf8 && utf8Equals(i, s)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add the slashed names of all the classes referenced by the current class, the same set as
+	 * {@link ConstantPoolScanner.References#getReferencedClasses()} computes: class entries (arrays
+	 * reduced to their element type) and the types in field, method and method type descriptors.
+	 */
+	public void addReferencedClasses(Collection<String> names) {
+		for (int i = 1; i < cpsize; i++) {
+			int offset = offsets[i];
+			switch (tags[i]) {
+				case CONSTANT_Class:
+					int utf8 = u2(offset);
+					if (buffer.get(offsets[utf8] + 2) == '[') {
+						addDescriptorTypes(utf8, names);
+					} else {
+						names.add(utf8(utf8));
+					}
+					break;
+				case CONSTANT_NameAndType:
+					addDescriptorTypes(u2(offset + 2), names);
+					break;
+				case CONSTANT_MethodType:
+					addDescriptorTypes(u2(offset), names);
+					break;
+			}
+		}
+	}
+
+	private void addDescriptorTypes(int cpIndex, Collection<String> names) {
+		int start = offsets[cpIndex] + 2;
+		int end = start + u2(offsets[cpIndex]);
+		int i = start;
+		while (i < end) {
+			if (buffer.get(i) == 'L') {
+				int semicolon = i + 1;
+				while (buffer.get(semicolon) != ';') {
+					semicolon++;
+				}
+				names.add(decode(i + 1, semicolon - i - 1));
+				i = semicolon + 1;
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private String utf8(int cpIndex) {
+		int offset = offsets[cpIndex];
+		return decode(offset + 2, u2(offset));
+	}
+
+	private String decode(int from, int length) {
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		boolean ascii = true;
+		for (int i = 0; i < length; i++) {
+			byte b = buffer.get(from + i);
+			scratch[i] = b;
+			ascii &= b > 0;
+		}
+		return new String(scratch, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	private boolean utf8Equals(int cpIndex, String s) {
+		int offset = offsets[cpIndex];
+		int length = u2(offset);
+		if (length != s.length()) {
+			// For anything outside ASCII the encoded length differs from the char count, check properly
+			return length > s.length() && nonAscii(offset + 2, length) && utf8(cpIndex).equals(s);
+		}
+		return compare(offset + 2, length, s) == 1;
+	}
+
+	private boolean utf8StartsWith(int cpIndex, String prefix) {
+		int offset = offsets[cpIndex];
+		int length = u2(offset);
+		if (length < prefix.length()) {
+			return false;
+		}
+		int result = compare(offset + 2, prefix.length(), prefix);
+		return result == 1 || (result == -1 && utf8(cpIndex).startsWith(prefix));
+	}
+
+	/**
+	 * Compare encoded bytes with the start of a string, char by char while the bytes are ASCII.
+	 * @return 1 if they match, 0 if they do not and -1 if a non ASCII byte was hit before a difference
+	 */
+	private int compare(int from, int length, String s) {
+		for (int i = 0; i < length; i++) {
+			byte b = buffer.get(from + i);
+			if (b <= 0) {
+				return -1;
+			}
+			if (b != s.charAt(i)) {
+				return 0;
+			}
+		}
+		return 1;
+	}
+
+	private boolean nonAscii(int from, int length) {
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(from + i) <= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int u2(int offset) {
+		return buffer.getShort(offset) & 0xffff;
+	}
+
+}
@@ -17,14 +17,19 @@ package org.springframework.boot.graal.type;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Enables us to check things quickly in the constant pool. Just parses the class up to the end of the constant pool.
+ * Everything the class refers to (classes, fields, methods, interface methods and the types used in member and
+ * method type descriptors) is recorded as constant pool indexes, strings are only decoded when asked for.
  *
  * Useful reference: https://java.sun.com/docs/books/jvms/second_edition/html/ClassFile.doc.html
  *
@@ -60,41 +65,35 @@ public class ConstantPoolScanner {
 
 	private final static byte CONSTANT_MethodType = 16;
 
+	private final static byte CONSTANT_Dynamic = 17;
+
 	private final static byte CONSTANT_InvokeDynamic = 18;
 
+	private final static byte CONSTANT_Module = 19;
+
+	private final static byte CONSTANT_Package = 20;
+
 	private byte[] classbytes;
 
 	// Used during the parse step
 	private int ptr;
 
-	// Filled with strings and int[]
-	private Object[] cpdata;
-
 	private int cpsize;
 
-	private int[] type;
-
-	// Does not need to be a set as there are no dups in the ConstantPool (for a class from a decent compiler...)
-	private List<String> referencedClasses = new ArrayList<String>();
+	// Tag of each constant pool entry and the offset of its data (just after the tag)
+	private byte[] tags;
 
-	private List<String> referencedMethods = new ArrayList<String>();
+	private int[] offsets;
 
 	private String slashedclassname;
 
-
 	public static References getReferences(byte[] classbytes) {
 		ConstantPoolScanner cpScanner = new ConstantPoolScanner(classbytes);
-		return new References(cpScanner.slashedclassname, cpScanner.referencedClasses, cpScanner.referencedMethods);
+		return cpScanner.computeReferences();
 	}
 	
 	public static References getReferences(File f) {
-		try {
-			byte[] bytes = Files.readAllBytes(Paths.get(f.toURI()));
-			ConstantPoolScanner cpScanner = new ConstantPoolScanner(bytes);
-			return new References(cpScanner.slashedclassname, cpScanner.referencedClasses, cpScanner.referencedMethods);
-		} catch (IOException e) {
-			throw new IllegalStateException(e);
-		}
+		return getReferences(readBytes(f));
 	}
 	
 	public ConstantPoolScanner(File f) {
@@ -112,7 +111,6 @@ public class ConstantPoolScanner {
 
 	private ConstantPoolScanner(byte[] bytes) {
 		parseClass(bytes);
-//		computeReferences();
 	}
 
 	// Format of a classfile:
@@ -147,8 +145,8 @@ public class ConstantPoolScanner {
 			if (DEBUG) {
 				System.out.println("Constant Pool Size =" + cpsize);
 			}
-			cpdata = new Object[cpsize];
-			type = new int[cpsize];
+			tags = new byte[cpsize];
+			offsets = new int[cpsize];
 			for (int cpentry = 1; cpentry < cpsize; cpentry++) {
 				boolean wasDoubleSlotItem = processConstantPoolEntry(cpentry);
 				if (wasDoubleSlotItem) {
@@ -157,8 +155,7 @@ public class ConstantPoolScanner {
 			}
 			ptr += 2; // access flags
 			int thisclassname = readUnsignedShort();
-			int classindex = ((Integer) cpdata[thisclassname]);
-			slashedclassname = accessUtf8(classindex);
+			slashedclassname = utf8(u2(offsets[thisclassname]));
 		}
 		catch (Exception e) {
 			throw new IllegalStateException("Unexpected problem processing bytes for class", e);
@@ -169,31 +166,9 @@ public class ConstantPoolScanner {
 		return slashedclassname;
 	}
 
-	/**
-	 * Return the UTF8 at the specified index in the constant pool. The data found at the constant pool for that index
-	 * may not have been unpacked yet if this is the first access of the string. If not unpacked the constant pool entry
-	 * is a pair of ints in an array representing the offset and length within the classbytes where the UTF8 string is
-	 * encoded. Once decoded the constant pool entry is flipped from an int array to a String for future fast access.
-	 *
-	 * @param cpIndex constant pool index
-	 * @return UTF8 string at that constant pool index
-	 */
-	private String accessUtf8(int cpIndex) {
-		Object object = cpdata[cpIndex];
-		if (object instanceof String) {
-			return (String) object;
-		}
-		int[] ptrAndLen = (int[]) object;
-		String value;
-		try {
-			value = new String(classbytes, ptrAndLen[0], ptrAndLen[1], "UTF8");
-		}
-		catch (UnsupportedEncodingException e) {
-			throw new IllegalStateException("Bad data found at constant pool position " + cpIndex + " offset="
-					+ ptrAndLen[0] + " length=" + ptrAndLen[1], e);
-		}
-		cpdata[cpIndex] = value;
-		return value;
+	private String utf8(int cpIndex) {
+		int offset = offsets[cpIndex];
+		return new String(classbytes, offset + 2, u2(offset), StandardCharsets.UTF_8);
 	}
 
 	/**
@@ -212,49 +187,48 @@ public class ConstantPoolScanner {
 		return ((classbytes[ptr++] & 0xff) << 8) + (classbytes[ptr++] & 0xff);
 	}
 
+	/**
+	 * @return the unsigned short at the specified offset
+	 */
+	private final int u2(int offset) {
+		return ((classbytes[offset] & 0xff) << 8) + (classbytes[offset + 1] & 0xff);
+	}
+
 	private boolean processConstantPoolEntry(int index) throws IOException {
 		byte b = classbytes[ptr++];
+		tags[index] = b;
+		offsets[index] = ptr;
 		switch (b) {
 			case CONSTANT_Integer: // CONSTANT_Integer_info { u1 tag; u4 bytes; }
 			case CONSTANT_Float: // CONSTANT_Float_info { u1 tag; u4 bytes; }
 			case CONSTANT_Fieldref: // CONSTANT_Fieldref_info { u1 tag; u2 class_index; u2 name_and_type_index; }
+			case CONSTANT_Methodref: // CONSTANT_Methodref_info { u1 tag; u2 class_index; u2 name_and_type_index; }
 			case CONSTANT_InterfaceMethodref: // CONSTANT_InterfaceMethodref_info { u1 tag; u2 class_index; u2 name_and_type_index; }
+			case CONSTANT_NameAndType: // CONSTANT_NameAndType_info { u1 tag; u2 name_index; u2 descriptor_index; }
+			case CONSTANT_Dynamic: // CONSTANT_Dynamic_info { u1 tag; u2 bootstrap_method_attr_index; u2 name_and_type_index; }
 			case CONSTANT_InvokeDynamic: // CONSTANT_InvokeDynamic_info { u1 tag; u2 bootstrap_method_attr_index; u2 name_and_type_index; }
 				ptr += 4;
 				break;
 			case CONSTANT_Utf8:
 				// CONSTANT_Utf8_info { u1 tag; u2 length; u1 bytes[length]; }
-				// Cache just the index and length - do not unpack it now
+				// Just remember where it is - do not unpack it now
 				int len = readUnsignedShort();
-				cpdata[index] = new int[] { ptr, len };
 				ptr += len;
 				break;
 			case CONSTANT_Long: // CONSTANT_Long_info { u1 tag; u4 high_bytes; u4 low_bytes; }
 			case CONSTANT_Double: // CONSTANT_Double_info { u1 tag; u4 high_bytes; u4 low_bytes; }
 				ptr += 8;
 				return true;
-			case CONSTANT_Class: // CONSTANT_Class_info { u1 tag; u2 name_index; }
-				type[index] = b;
-				cpdata[index] = readUnsignedShort();
-				break;
-			case CONSTANT_Methodref:
-				// CONSTANT_Methodref_info { u1 tag; u2 class_index; u2 name_and_type_index; }
-				type[index] = b;
-				cpdata[index] = new int[] { readUnsignedShort(), readUnsignedShort() };
-				break;
-			case CONSTANT_NameAndType:
-				// The CONSTANT_NameAndType_info structure is used to represent a field or method, without indicating which class or interface type it belongs to:
-				// CONSTANT_NameAndType_info { u1 tag; u2 name_index; u2 descriptor_index; }
-				//			type[index] = b;
-				cpdata[index] = readUnsignedShort();
-				ptr += 2; // skip the descriptor for now
-				break;
 			case CONSTANT_MethodHandle:
 				// CONSTANT_MethodHandle_info { u1 tag; u1 reference_kind; u2 reference_index; }
+				// The reference is to a field/method ref entry that is recorded in its own right
 				ptr += 3;
 				break;
+			case CONSTANT_Class: // CONSTANT_Class_info { u1 tag; u2 name_index; }
 			case CONSTANT_String: // CONSTANT_String_info { u1 tag; u2 string_index; }
 			case CONSTANT_MethodType: // CONSTANT_MethodType_info { u1 tag; u2 descriptor_index; }
+			case CONSTANT_Module: // CONSTANT_Module_info { u1 tag; u2 name_index; }
+			case CONSTANT_Package: // CONSTANT_Package_info { u1 tag; u2 name_index; }
 				ptr += 2;
 				break;
 			default:
@@ -263,74 +237,229 @@ public class ConstantPoolScanner {
 		return false;
 	}
 
-	private void computeReferences() {
-		for (int i = 0; i < cpsize; i++) {
-			switch (type[i]) {
+	/**
+	 * Collect the references as constant pool indexes of the relevant UTF8 entries. Member references are
+	 * stored as triples (owner class name, member name, descriptor).
+	 */
+	private References computeReferences() {
+		int classCount = 0, fieldCount = 0, methodCount = 0, interfaceMethodCount = 0, descriptorCount = 0;
+		for (int i = 1; i < cpsize; i++) {
+			switch (tags[i]) {
+				case CONSTANT_Class: classCount++; break;
+				case CONSTANT_Fieldref: fieldCount++; break;
+				case CONSTANT_Methodref: methodCount++; break;
+				case CONSTANT_InterfaceMethodref: interfaceMethodCount++; break;
+				case CONSTANT_NameAndType: 
+				case CONSTANT_MethodType: descriptorCount++; break;
+			}
+		}
+		int[] classes = new int[classCount];
+		int[] fields = new int[fieldCount * 3];
+		int[] methods = new int[methodCount * 3];
+		int[] interfaceMethods = new int[interfaceMethodCount * 3];
+		int[] descriptors = new int[descriptorCount];
+		int c = 0, f = 0, m = 0, im = 0, d = 0;
+		for (int i = 1; i < cpsize; i++) {
+			int offset = offsets[i];
+			switch (tags[i]) {
 				case CONSTANT_Class:
-					int classindex = ((Integer) cpdata[i]);
-					String classname = accessUtf8(classindex);
-					if (classname == null) {
-						throw new IllegalStateException();
-					}
-					referencedClasses.add(classname);
+					classes[c++] = u2(offset);
+					break;
+				case CONSTANT_Fieldref:
+					f = memberRef(offset, fields, f);
 					break;
 				case CONSTANT_Methodref:
-					int[] indexes = (int[]) cpdata[i];
-					int classindex2 = indexes[0];
-					int nameAndTypeIndex = indexes[1];
-					StringBuilder s = new StringBuilder();
-					String theClassName = accessUtf8((Integer) cpdata[classindex2]);
-					if (theClassName.charAt(0) == 'j') {
-						s.append(theClassName);
-						s.append(".");
-						s.append(accessUtf8((Integer) cpdata[nameAndTypeIndex]));
-						referencedMethods.add(s.toString());
-					}
+					m = memberRef(offset, methods, m);
+					break;
+				case CONSTANT_InterfaceMethodref:
+					im = memberRef(offset, interfaceMethods, im);
+					break;
+				case CONSTANT_NameAndType:
+					// Covers the descriptors of member references and of invokedynamic call sites
+					descriptors[d++] = u2(offset + 2);
+					break;
+				case CONSTANT_MethodType:
+					descriptors[d++] = u2(offset);
 					break;
-				//			private final static byte CONSTANT_Utf8 = 1;
-				//			private final static byte CONSTANT_Integer = 3;
-				//			private final static byte CONSTANT_Float = 4;
-				//			private final static byte CONSTANT_Long = 5;
-				//			private final static byte CONSTANT_Double = 6;
-				//			private final static byte CONSTANT_String = 8;
-				//			private final static byte CONSTANT_Fieldref = 9;
-				//			private final static byte CONSTANT_InterfaceMethodref = 11;
-				//			private final static byte CONSTANT_NameAndType = 12;
 			}
 		}
+		return new References(this, classes, fields, methods, interfaceMethods, descriptors);
 	}
 
+	private int memberRef(int offset, int[] refs, int pos) {
+		int classIndex = u2(offset);
+		int nameAndTypeOffset = offsets[u2(offset + 2)];
+		refs[pos++] = u2(offsets[classIndex]);
+		refs[pos++] = u2(nameAndTypeOffset);
+		refs[pos++] = u2(nameAndTypeOffset + 2);
+		return pos;
+	}
 
+	/**
+	 * Everything a class refers to through its constant pool. Held as arrays of constant pool indexes of UTF8 entries,
+	 * the strings are decoded on request.
+	 */
 	public static class References {
 
 		public final String slashedClassName;
 
-		private final List<String> referencedClasses;
+		private final ConstantPoolScanner cp;
+
+		private final int[] classes;
+
+		private final int[] fields;
+
+		private final int[] methods;
 
-		private final List<String> referencedMethods;
+		private final int[] interfaceMethods;
 
-		References(String slashedClassName, List<String> rc, List<String> rm) {
-			this.slashedClassName = slashedClassName;
-			this.referencedClasses = rc;
-			this.referencedMethods = rm;
+		private final int[] descriptors;
+
+		private List<String> referencedClasses;
+
+		References(ConstantPoolScanner cp, int[] classes, int[] fields, int[] methods, int[] interfaceMethods,
+				int[] descriptors) {
+			this.slashedClassName = cp.slashedclassname;
+			this.cp = cp;
+			this.classes = classes;
+			this.fields = fields;
+			this.methods = methods;
+			this.interfaceMethods = interfaceMethods;
+			this.descriptors = descriptors;
 		}
 
 		@Override
 		public String toString() {
 			StringBuilder s = new StringBuilder();
 			s.append("Class=").append(slashedClassName).append("\n");
-			s.append("ReferencedClasses=#").append(referencedClasses.size()).append("\n");
-			s.append("ReferencedMethods=#").append(referencedMethods.size()).append("\n");
+			s.append("ReferencedClasses=#").append(getReferencedClasses().size()).append("\n");
+			s.append("ReferencedFields=#").append(getFieldCount()).append("\n");
+			s.append("ReferencedMethods=#").append(getMethodCount()).append("\n");
+			s.append("ReferencedInterfaceMethods=#").append(getInterfaceMethodCount()).append("\n");
 			return s.toString();
 		}
 		
 		/**
+		 * All the classes referenced, either directly (as a class constant, including owners of any field or
+		 * method referenced) or as part of a field, method or method type descriptor. Array types are reduced to
+		 * their element type and primitives are ignored.
 		 * @return list of classes of the form <tt>org/springframework/boot/configurationprocessor/json/JSONException</tt>
 		 */
 		public List<String> getReferencedClasses() {
+			if (referencedClasses == null) {
+				Set<String> names = new LinkedHashSet<>();
+				for (int utf8 : classes) {
+					String name = cp.utf8(utf8);
+					if (name.charAt(0) == '[') {
+						addDescriptorTypes(name, names);
+					} else {
+						names.add(name);
+					}
+				}
+				for (int utf8 : descriptors) {
+					addDescriptorTypes(cp.utf8(utf8), names);
+				}
+				referencedClasses = Collections.unmodifiableList(new ArrayList<>(names));
+			}
 			return referencedClasses;
 		}
-	}
 
+		private static void addDescriptorTypes(String descriptor, Set<String> names) {
+			int i = 0;
+			int len = descriptor.length();
+			while (i < len) {
+				if (descriptor.charAt(i) == 'L') {
+					int end = descriptor.indexOf(';', i);
+					names.add(descriptor.substring(i + 1, end));
+					i = end + 1;
+				} else {
+					i++;
+				}
+			}
+		}
+
+		/**
+		 * @return constant pool indexes of the UTF8 names of the classes referenced
+		 */
+		public int[] getClassIndexes() {
+			return classes;
+		}
+
+		/**
+		 * @return constant pool indexes of the UTF8 descriptors found in NameAndType and MethodType entries
+		 */
+		public int[] getDescriptorIndexes() {
+			return descriptors;
+		}
+
+		/**
+		 * Decode a UTF8 entry from the constant pool, for use with the indexes returned by the other methods.
+		 */
+		public String getUtf8(int cpIndex) {
+			return cp.utf8(cpIndex);
+		}
+
+		public int getFieldCount() {
+			return fields.length / 3;
+		}
+
+		public String getFieldOwner(int i) {
+			return cp.utf8(fields[i * 3]);
+		}
+
+		public String getFieldName(int i) {
+			return cp.utf8(fields[i * 3 + 1]);
+		}
+
+		public String getFieldDescriptor(int i) {
+			return cp.utf8(fields[i * 3 + 2]);
+		}
+
+		public int getMethodCount() {
+			return methods.length / 3;
+		}
+
+		public String getMethodOwner(int i) {
+			return cp.utf8(methods[i * 3]);
+		}
+
+		public String getMethodName(int i) {
+			return cp.utf8(methods[i * 3 + 1]);
+		}
+
+		public String getMethodDescriptor(int i) {
+			return cp.utf8(methods[i * 3 + 2]);
+		}
+
+		public int getInterfaceMethodCount() {
+			return interfaceMethods.length / 3;
+		}
+
+		public String getInterfaceMethodOwner(int i) {
+			return cp.utf8(interfaceMethods[i * 3]);
+		}
+
+		public String getInterfaceMethodName(int i) {
+			return cp.utf8(interfaceMethods[i * 3 + 1]);
+		}
+
+		public String getInterfaceMethodDescriptor(int i) {
+			return cp.utf8(interfaceMethods[i * 3 + 2]);
+		}
+
+		/**
+		 * @return the referenced methods in the form <tt>owner.name(descriptor)</tt>, useful for debugging
+		 */
+		public List<String> getReferencedMethods() {
+			List<String> result = new ArrayList<>(getMethodCount() + getInterfaceMethodCount());
+			for (int i = 0; i < getMethodCount(); i++) {
+				result.add(getMethodOwner(i) + "." + getMethodName(i) + getMethodDescriptor(i));
+			}
+			for (int i = 0; i < getInterfaceMethodCount(); i++) {
+				result.add(getInterfaceMethodOwner(i) + "." + getInterfaceMethodName(i) + getInterfaceMethodDescriptor(i));
+			}
+			return result;
+		}
+	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class level dependency graph of a classpath, built from the constant pools of the classes on it. Every
+ * class gets an int id and the references from each class are held in compressed sparse row form: the
+ * dependencies of class <tt>i</tt> are <tt>edges[edgeStart[i]..edgeStart[i+1])</tt>. Ids are assigned in
+ * sorted name order so all the classes in a package (and its subpackages) form a contiguous id range, which
+ * keeps 'can this reach anything under org/hibernate' checks to a scan over a few words of a bitset.
+ * <p>
+ * Only references to classes on the classpath are recorded, references into the JDK are dropped.
+ * Immutable once built and safe for concurrent use.
+ *
+ * @author Andy Clement
+ */
+public class DependencyGraph {
+
+	private final String[] names;
+
+	private final int[] edgeStart;
+
+	private final int[] edges;
+
+	/**
+	 * @param references slashed class name to the slashed names of the classes it references
+	 */
+	DependencyGraph(Map<String, List<String>> references) {
+		names = references.keySet().toArray(new String[0]);
+		Arrays.sort(names);
+		edgeStart = new int[names.length + 1];
+		int[] buffer = new int[Math.max(16, names.length)];
+		int count = 0;
+		int[] targets = new int[16];
+		for (int i = 0; i < names.length; i++) {
+			edgeStart[i] = count;
+			List<String> referenced = references.get(names[i]);
+			if (targets.length < referenced.size()) {
+				targets = new int[referenced.size()];
+			}
+			int n = 0;
+			for (String r : referenced) {
+				int id = getId(r);
+				if (id != -1 && id != i) {
+					targets[n++] = id;
+				}
+			}
+			Arrays.sort(targets, 0, n);
+			if (count + n > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + n));
+			}
+			System.arraycopy(targets, 0, buffer, count, n);
+			count += n;
+		}
+		edgeStart[names.length] = count;
+		edges = Arrays.copyOf(buffer, count);
+	}
+
+	/**
+	 * @return number of classes in the graph
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	public int getEdgeCount() {
+		return edges.length;
+	}
+
+	/**
+	 * @return the id of the slashed class name, or -1 if the class is not on the classpath
+	 */
+	public int getId(String slashedName) {
+		int id = Arrays.binarySearch(names, slashedName);
+		return id < 0 ? -1 : id;
+	}
+
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return the ids of the classes directly referenced by the class with the specified id, sorted
+	 */
+	public int[] getDependencies(int id) {
+		return Arrays.copyOfRange(edges, edgeStart[id], edgeStart[id + 1]);
+	}
+
+	/**
+	 * Compute the transitive closure of the dependencies of the specified classes. Roots not on the classpath
+	 * are ignored.
+	 * @param roots slashed class names
+	 * @return ids of the roots and everything reachable from them
+	 */
+	public BitSet reachableFrom(Collection<String> roots) {
+		BitSet reached = new BitSet(names.length);
+		int[] queue = new int[names.length];
+		int tail = 0;
+		for (String root : roots) {
+			int id = getId(root);
+			if (id != -1 && !reached.get(id)) {
+				reached.set(id);
+				queue[tail++] = id;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int id = queue[head];
+			for (int e = edgeStart[id], max = edgeStart[id + 1]; e < max; e++) {
+				int target = edges[e];
+				if (!reached.get(target)) {
+					reached.set(target);
+					queue[tail++] = target;
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * @param reached result of a previous {@link #reachableFrom(Collection)}
+	 * @param slashedPrefix a package or type prefix, e.g. <tt>org/hibernate/</tt>
+	 * @return true if any reached class has a name starting with the prefix
+	 */
+	public boolean reachesAny(BitSet reached, String slashedPrefix) {
+		int from = lowerBound(slashedPrefix);
+		int next = reached.nextSetBit(from);
+		return next != -1 && names[next].startsWith(slashedPrefix);
+	}
+
+	/**
+	 * @return index of the first name not less than the key
+	 */
+	private int lowerBound(String key) {
+		int id = Arrays.binarySearch(names, key);
+		return id < 0 ? -(id + 1) : id;
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+public class Field {
+
+	private final static String[] NO_ANNOTATIONS = new String[0];
+
+	private final String name;
+
+	private final String desc;
+
+	// Descriptors of the visible annotations on the field
+	private final String[] annotationDescriptors;
+
+	public Field(String name, String desc, String[] annotationDescriptors) {
+		this.name = name;
+		this.desc = desc;
+		this.annotationDescriptors = annotationDescriptors == null ? NO_ANNOTATIONS : annotationDescriptors;
+	}
+
+	public String toString() {
+		return name+":"+desc;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDesc() {
+		return desc;
+	}
+
+	public boolean hasAnnotation(String annotationDescriptor) {
+		for (String annotationDescriptorOnField : annotationDescriptors) {
+			if (annotationDescriptorOnField.equals(annotationDescriptor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
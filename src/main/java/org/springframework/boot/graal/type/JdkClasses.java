@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads platform classes straight from the JDK, either from the runtime image (jrt filesystem, Java 9+)
+ * or from the boot classpath jars (<tt>rt.jar</tt> and friends) on older JDKs. Keeps an index of which packages the JDK contains so that a lookup for a
+ * class in a non JDK package costs a single map check. There is one instance per JVM.
+ *
+ * @author Andy Clement
+ */
+public class JdkClasses {
+
+	private static JdkClasses instance;
+
+	// Slashed package name to the module directories in the image that contain it
+	private Map<String, List<Path>> imagePackages = new HashMap<>();
+
+	// Slashed package name to the boot classpath jar that contains it
+
+	private Map<String, ZipFile> jarPackages = new HashMap<>();
+
+	public static synchronized JdkClasses get() {
+		if (instance == null) {
+			long t = System.currentTimeMillis();
+			instance = new JdkClasses();
+			System.out.println("SBG: jdk index time: " + (System.currentTimeMillis() - t) + "ms (#"
+					+ (instance.imagePackages.size() + instance.jarPackages.size()) + " packages)");
+		}
+		return instance;
+	}
+
+	private JdkClasses() {
+		try {
+			FileSystem jrt = null;
+			try {
+				jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+			} catch (RuntimeException re) {
+				// Not running on a modular JDK
+			}
+			if (jrt != null) {
+				indexImage(jrt);
+			} else {
+				// rt.jar plus the likes of jce.jar and charsets.jar
+				String bootClasspath = System.getProperty("sun.boot.class.path",
+						new File(System.getProperty("java.home"), "lib/rt.jar").getPath());
+				for (String entry : bootClasspath.split(File.pathSeparator)) {
+					File jar = new File(entry);
+					if (jar.isFile()) {
+						indexJar(jar);
+					}
+				}
+				if (jarPackages.isEmpty()) {
+					System.out.println("SBG: WARNING: unable to locate JDK classes, neither jrt:/ nor " + bootClasspath + " found");
+				}
+			}
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Unable to index JDK classes", ioe);
+		}
+	}
+
+	// The image has a /packages/<dotted.package>/<module> entry for every package in every module
+	private void indexImage(FileSystem jrt) throws IOException {
+		try (DirectoryStream<Path> packages = Files.newDirectoryStream(jrt.getPath("/packages"))) {
+			for (Path packageDir : packages) {
+				String packageName = packageDir.getFileName().toString().replace('.', '/');
+				List<Path> roots = new ArrayList<>(1);
+				try (DirectoryStream<Path> modules = Files.newDirectoryStream(packageDir)) {
+					for (Path module : modules) {
+						roots.add(jrt.getPath("/modules", module.getFileName().toString()));
+					}
+				}
+				imagePackages.put(packageName, roots);
+			}
+		}
+	}
+
+	private void indexJar(File jar) throws IOException {
+		ZipFile zf = new ZipFile(jar);
+		Enumeration<? extends ZipEntry> entries = zf.entries();
+		while (entries.hasMoreElements()) {
+			String name = entries.nextElement().getName();
+			int lastSlash = name.lastIndexOf('/');
+			if (name.endsWith(".class") && lastSlash != -1) {
+				jarPackages.put(name.substring(0, lastSlash), zf);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the (slashed) package is one provided by the JDK
+	 */
+	public boolean containsPackage(String packageName) {
+		return imagePackages.containsKey(packageName) || jarPackages.containsKey(packageName);
+	}
+
+	/**
+	 * @return the bytes for the (slashed) type name or null if the JDK does not contain it
+	 */
+	public byte[] find(String slashedTypeName) {
+		int lastSlash = slashedTypeName.lastIndexOf('/');
+		String packageName = lastSlash == -1 ? "" : slashedTypeName.substring(0, lastSlash);
+		String classFile = slashedTypeName + ".class";
+		try {
+			List<Path> roots = imagePackages.get(packageName);
+			if (roots != null) {
+				for (Path root : roots) {
+					Path path = root.resolve(classFile);
+					if (Files.exists(path)) {
+						return Files.readAllBytes(path);
+					}
+				}
+				return null;
+			}
+			ZipFile zf = jarPackages.get(packageName);
+			if (zf != null) {
+				ZipEntry entry = zf.getEntry(classFile);
+				if (entry != null) {
+					return TypeSystem.loadFromStream(zf.getInputStream(entry), (int) entry.getSize());
+				}
+			}
+			return null;
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Problem loading JDK class " + slashedTypeName, ioe);
+		}
+	}
+
+}
@@ -16,26 +16,84 @@
 
 package org.springframework.boot.graal.type;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.MethodNode;
 
 public class Method {
-	
-	MethodNode mn;
+
+	private final static String[] NO_ANNOTATIONS = new String[0];
+
+	private final String name;
+
+	private final String desc;
+
+	// Descriptors of the visible annotations on the method
+	private final String[] annotationDescriptors;
+
+	public Method(String name, String desc, String[] annotationDescriptors) {
+		this.name = name;
+		this.desc = desc;
+		this.annotationDescriptors = annotationDescriptors == null ? NO_ANNOTATIONS : annotationDescriptors;
+	}
 
 	public Method(MethodNode mn) {
-		this.mn = mn;
+		this(mn.name, mn.desc, descriptors(mn.visibleAnnotations));
+	}
+
+	private static String[] descriptors(List<AnnotationNode> annotations) {
+		if (annotations == null) {
+			return NO_ANNOTATIONS;
+		}
+		return annotations.stream().map(an -> an.desc).toArray(String[]::new);
 	}
 	
 	public String toString() {
-		return mn.name+mn.desc;
+		return name+desc;
 	}
 
 	public String getName() {
-		return mn.name;
+		return name;
 	}
 
 	public String getDesc() {
-		return mn.desc;
+		return desc;
+	}
+
+	/**
+	 * @return the parameter types in the form {@link Class#getName()} uses, e.g. <tt>int</tt>,
+	 * <tt>java.lang.String</tt>, <tt>[Ljava.lang.String;</tt>
+	 */
+	public List<String> getParameterTypeNames() {
+		return getParameterTypeNames(desc);
+	}
+
+	static List<String> getParameterTypeNames(String desc) {
+		List<String> names = new ArrayList<>();
+		for (org.objectweb.asm.Type t : org.objectweb.asm.Type.getArgumentTypes(desc)) {
+			names.add(t.getSort() == org.objectweb.asm.Type.ARRAY ? t.getDescriptor().replace('/', '.') : t.getClassName());
+		}
+		return names;
+	}
+
+	/**
+	 * @return the descriptors of the visible annotations on the method
+	 */
+	public List<String> getAnnotationDescriptors() {
+		return Collections.unmodifiableList(Arrays.asList(annotationDescriptors));
+	}
+
+	public boolean hasAnnotation(String annotationDescriptor) {
+		for (String annotationDescriptorOnMethod : annotationDescriptors) {
+			if (annotationDescriptorOnMethod.equals(annotationDescriptor)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
-}
\ No newline at end of file
+}
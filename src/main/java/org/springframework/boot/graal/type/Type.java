@@ -19,6 +19,7 @@ import java.lang.reflect.Modifier;
 import java.sql.Types;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,7 +27,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
 import java.util.stream.Collectors;
@@ -36,6 +36,7 @@ import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.InnerClassNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.springframework.boot.context.properties.ConfigurationPropertiesBindingPostProcessorRegistrar;
@@ -71,6 +72,20 @@ public class Type {
 	
 	public final static String AtBean = "Lorg/springframework/context/annotation/Bean;";
 
+	public final static String AtAutowired = "Lorg/springframework/beans/factory/annotation/Autowired;";
+
+	public final static String AtValue = "Lorg/springframework/beans/factory/annotation/Value;";
+
+	public final static String AtInject = "Ljavax/inject/Inject;";
+
+	public final static String AtResource = "Ljavax/annotation/Resource;";
+
+	public final static String AtPostConstruct = "Ljavax/annotation/PostConstruct;";
+
+	public final static String AtPreDestroy = "Ljavax/annotation/PreDestroy;";
+
+	public final static String AtEventListener = "Lorg/springframework/context/event/EventListener;";
+
 	public final static String AtImports = "Lorg/springframework/context/annotation/Import;";
 
 	public final static String AtEnableConfigurationProperties = "Lorg/springframework/boot/context/properties/EnableConfigurationProperties;";
@@ -81,48 +96,171 @@ public class Type {
 
 	public final static String AtConditionalOnMissingBean = "Lorg/springframework/boot/autoconfigure/condition/ConditionalOnMissingBean;";
 
+	public final static String AtConditionalOnProperty = "Lorg/springframework/boot/autoconfigure/condition/ConditionalOnProperty;";
+
+	public final static String AtConditionalOnResource = "Lorg/springframework/boot/autoconfigure/condition/ConditionalOnResource;";
+
+	public final static String AtConditionalOnWebApplication = "Lorg/springframework/boot/autoconfigure/condition/ConditionalOnWebApplication;";
+
+	public final static String AtConditionalOnNotWebApplication = "Lorg/springframework/boot/autoconfigure/condition/ConditionalOnNotWebApplication;";
+
 	public final static String HypermediaConfigurationImportSelector = "Lorg/springframework/hateoas/config/HypermediaConfigurationImportSelector;";
 
 	public final static String WebStackImportSelector = "Lorg/springframework/hateoas/config/WebStackImportSelector;";
 
-	public final static Type MISSING = new Type(null, null);
+	public final static Type MISSING = new Type();
 
 	public final static Type[] NO_INTERFACES = new Type[0];
 
 	protected static Set<String> validBoxing = new HashSet<String>();
 
 
+	private final static String[] NO_STRINGS = new String[0];
+
+	private final static AnnotationNode[] NO_ANNOTATION_NODES = new AnnotationNode[0];
+
+	private final static Method[] NO_METHODS = new Method[0];
+
+	private final static Field[] NO_FIELDS = new Field[0];
+
 	private TypeSystem typeSystem;
 
-	private ClassNode node;
+	// The parts of the class file we need, extracted from the ClassNode so that it can be discarded. Names and
+	// descriptors are interned through the type system.
+
+	private final String name;
+
+	private final String superName;
+
+	private final String[] interfaceNames;
+
+	private final String signature;
+
+	private final int access;
+
+	private final AnnotationNode[] annotationNodes;
+
+	// Parallel to annotationNodes, the type system index of each annotation descriptor
+	private final int[] annotationIds;
+
+	private final String[] nestedTypeNames;
+
+	private final Method[] methods;
+
+	private final Field[] fields;
 	
-	private Type[] interfaces;
+	// Lazily computed, volatile so that a fully built array is published to other threads
+	private volatile Type[] interfaces;
+
+	private Type() {
+		this.name = null;
+		this.superName = null;
+		this.interfaceNames = NO_STRINGS;
+		this.signature = null;
+		this.access = 0;
+		this.annotationNodes = NO_ANNOTATION_NODES;
+		this.annotationIds = new int[0];
+		this.nestedTypeNames = NO_STRINGS;
+		this.methods = NO_METHODS;
+		this.fields = NO_FIELDS;
+	}
 
 	public Type(TypeSystem typeSystem, ClassNode node) {
 		this.typeSystem = typeSystem;
-		this.node = node;
+		this.name = typeSystem.intern(node.name);
+		this.superName = typeSystem.intern(node.superName);
+		this.interfaceNames = internAll(typeSystem, node.interfaces);
+		this.signature = node.signature;
+		this.access = node.access;
+		if (node.visibleAnnotations == null || node.visibleAnnotations.isEmpty()) {
+			this.annotationNodes = NO_ANNOTATION_NODES;
+			this.annotationIds = new int[0];
+		} else {
+			this.annotationNodes = node.visibleAnnotations.toArray(NO_ANNOTATION_NODES);
+			this.annotationIds = new int[annotationNodes.length];
+			for (int i = 0; i < annotationNodes.length; i++) {
+				annotationNodes[i].desc = typeSystem.intern(annotationNodes[i].desc);
+				annotationIds[i] = typeSystem.annotationId(annotationNodes[i].desc);
+			}
+		}
+		List<String> nested = new ArrayList<>();
+		for (InnerClassNode inner: node.innerClasses) {
+			if (inner.outerName != null && inner.outerName.equals(name) && !inner.name.equals(name)) {
+				nested.add(typeSystem.intern(inner.name)); // aaa/bbb/ccc/Ddd$Eee
+			}
+		}
+		this.nestedTypeNames = nested.isEmpty() ? NO_STRINGS : nested.toArray(NO_STRINGS);
+		if (node.methods.isEmpty()) {
+			this.methods = NO_METHODS;
+		} else {
+			this.methods = new Method[node.methods.size()];
+			for (int i = 0; i < methods.length; i++) {
+				MethodNode mn = node.methods.get(i);
+				methods[i] = new Method(typeSystem.intern(mn.name), typeSystem.intern(mn.desc),
+						internAll(typeSystem, descriptors(mn.visibleAnnotations)));
+			}
+		}
+		if (node.fields.isEmpty()) {
+			this.fields = NO_FIELDS;
+		} else {
+			this.fields = new Field[node.fields.size()];
+			for (int i = 0; i < fields.length; i++) {
+				FieldNode fn = node.fields.get(i);
+				fields[i] = new Field(typeSystem.intern(fn.name), typeSystem.intern(fn.desc),
+						internAll(typeSystem, descriptors(fn.visibleAnnotations)));
+			}
+		}
 	}
 
 	public static Type forClassNode(TypeSystem typeSystem, ClassNode node) {
 		return new Type(typeSystem, node);
 	}
 
+	private static String[] internAll(TypeSystem typeSystem, List<String> strings) {
+		if (strings == null || strings.isEmpty()) {
+			return NO_STRINGS;
+		}
+		String[] result = new String[strings.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = typeSystem.intern(strings.get(i));
+		}
+		return result;
+	}
+
+	private static List<String> descriptors(List<AnnotationNode> annotations) {
+		return annotations == null ? null : annotations.stream().map(an -> an.desc).collect(Collectors.toList());
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		// Evicted types are parsed again, so the same type can be represented by more than one instance
+		return other instanceof Type && name != null && name.equals(((Type) other).name);
+	}
+
+	@Override
+	public int hashCode() {
+		return name == null ? 0 : name.hashCode();
+	}
+
 	/**
 	 * @return typename in slashed form (aaa/bbb/ccc/Ddd$Eee)
 	 */
 	public String getName() {
-		return node.name;
+		return name;
 	}
 
 	public String getDottedName() {
-		return node.name.replace("/", ".");
+		return name.replace("/", ".");
 	}
 
 	public Type getSuperclass() {
-		if (node.superName == null) {
+		if (superName == null) {
 			return null;
 		}
-		return typeSystem.resolveSlashed(node.superName);
+		return typeSystem.resolveSlashed(superName);
 	}
 	
 	@Override
@@ -131,35 +269,37 @@ public class Type {
 	}
 
 	public Type[] getInterfaces() {
-		if (interfaces == null) {
-			List<String> itfs = node.interfaces;
-			if (itfs.size() == 0) {
-				interfaces = NO_INTERFACES;
+		Type[] result = interfaces;
+		if (result == null) {
+			// Racing threads compute the same answer, whichever finishes last wins
+			if (interfaceNames.length == 0) {
+				result = NO_INTERFACES;
 			} else {
-				interfaces = new Type[itfs.size()];
-				for (int i = 0; i < itfs.size(); i++) {
-					interfaces[i] = typeSystem.resolveSlashed(itfs.get(i));
+				result = new Type[interfaceNames.length];
+				for (int i = 0; i < interfaceNames.length; i++) {
+					result[i] = typeSystem.resolveSlashed(interfaceNames[i]);
 				}
 			}
+			interfaces = result;
 		}
-		return interfaces;
+		return result;
 	}
 	
 	/** @return List of slashed interface types */
 	public List<String> getInterfacesStrings() {
-		return node.interfaces;
+		return Arrays.asList(interfaceNames);
 	}
 
 	/** @return slashed supertype name */
 	public String getSuperclassString() {
-		return node.superName;
+		return superName;
 	}
 	
 	public List<String> getTypesInSignature() {
-		if (node.signature == null) {
+		if (signature == null) {
 			return Collections.emptyList();
 		} else {
-			SignatureReader reader = new SignatureReader(node.signature);
+			SignatureReader reader = new SignatureReader(signature);
 			TypeCollector tc = new TypeCollector();
 			reader.accept(tc);
 			return tc.getTypes();
@@ -213,23 +353,37 @@ public class Type {
 	}
 
 	public List<Method> getMethodsWithAnnotation(String string) {
-		return node.methods.stream().filter(m -> hasAnnotation(m, string)).map(m -> wrap(m))
-				.collect(Collectors.toList());
+		return Arrays.stream(methods).filter(m -> m.hasAnnotation(string)).collect(Collectors.toList());
 	}
 	
+	/**
+	 * @return the methods annotated with the annotation or with one meta-annotated with it (e.g.
+	 * <tt>@TransactionalEventListener</tt> for <tt>@EventListener</tt>)
+	 */
+	public List<Method> getMethodsWithMetaAnnotation(String annotationDescriptor) {
+		return Arrays.stream(methods).filter(m -> m.hasAnnotation(annotationDescriptor) || m.getAnnotationDescriptors().stream()
+				.anyMatch(desc -> !isJdkMetaAnnotation(desc) && typeSystem.findMetaAnnotated(desc, annotationDescriptor) != null))
+				.collect(Collectors.toList());
+	}
+
 	public List<Method> getMethodsWithAtBean() {
 		return getMethodsWithAnnotation(AtBean);
 	}
 
-	public Method wrap(MethodNode mn) {
-		return new Method(mn);
+	public List<Field> getFieldsWithAnnotation(String string) {
+		return Arrays.stream(fields).filter(f -> f.hasAnnotation(string)).collect(Collectors.toList());
 	}
 
-	private boolean hasAnnotation(MethodNode m, String string) {
-		List<AnnotationNode> visibleAnnotations = m.visibleAnnotations;
-		Optional<AnnotationNode> findAny = visibleAnnotations == null ? Optional.empty()
-				: visibleAnnotations.stream().filter(a -> a.desc.equals(string)).findFirst();
-		return findAny.isPresent();
+	/**
+	 * Types are usually resolved without their method bodies, this loads the complete class when the
+	 * code is actually needed. Not cached.
+	 */
+	public ClassNode getFullClassNode() {
+		return typeSystem.loadFullClassNode(getName());
+	}
+
+	public Method wrap(MethodNode mn) {
+		return new Method(mn);
 	}
 
 	static {
@@ -438,7 +592,7 @@ public class Type {
 	}
 
 	public boolean isInterface() {
-		return Modifier.isInterface(node.access);
+		return Modifier.isInterface(access);
 	}
 
 	public boolean hasAnnotationInHierarchy(String lookingFor) {
@@ -446,8 +600,8 @@ public class Type {
 	}
 
 	public boolean hasAnnotationInHierarchy(String lookingFor, List<String> seen) {
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode anno : node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode anno : annotationNodes) {
 				if (seen.contains(anno.desc))
 					continue;
 				seen.add(anno.desc);
@@ -489,7 +643,7 @@ public class Type {
 		return false;
 	}
 
-	List<Type> annotations = null;
+	volatile List<Type> annotations = null;
 
 	public static final List<Type> NO_ANNOTATIONS = Collections.emptyList();
 
@@ -497,8 +651,8 @@ public class Type {
 	public List<String> findConditionalOnMissingBeanValue() {
 		 List<String> findAnnotationValue = findAnnotationValue(AtConditionalOnMissingBean, false);
 		 if (findAnnotationValue==null) {
-			 if (node.visibleAnnotations != null) {
-					for (AnnotationNode an : node.visibleAnnotations) {
+			 if (annotationNodes.length != 0) {
+					for (AnnotationNode an : annotationNodes) {
 						if (an.desc.equals(AtConditionalOnMissingBean)) {
 							System.out.println("??? found nothing on this @COC annotated thing "+this.getName());
 						}
@@ -511,8 +665,8 @@ public class Type {
 	public List<String> findConditionalOnClassValue() {
 		 List<String> findAnnotationValue = findAnnotationValue(AtConditionalOnClass, false);
 		 if (findAnnotationValue==null) {
-			 if (node.visibleAnnotations != null) {
-					for (AnnotationNode an : node.visibleAnnotations) {
+			 if (annotationNodes.length != 0) {
+					for (AnnotationNode an : annotationNodes) {
 						if (an.desc.equals(AtConditionalOnClass)) {
 							System.out.println("??? found nothing on this @COC annotated thing "+this.getName());
 						}
@@ -531,6 +685,26 @@ public class Type {
 		 return findAnnotationValueWithHostAnnotation(AtImports, true, new HashSet<>());
 	}
 		
+	/**
+	 * @param annotationDescriptor e.g. <tt>Lorg/springframework/boot/autoconfigure/condition/ConditionalOnProperty;</tt>
+	 * @return the attributes explicitly set on that annotation directly on this type, as held by ASM (arrays as
+	 * lists, enum constants as a descriptor and name pair), or null if the type does not have the annotation
+	 */
+	public Map<String, Object> getAnnotationValues(String annotationDescriptor) {
+		for (AnnotationNode an : annotationNodes) {
+			if (an.desc.equals(annotationDescriptor)) {
+				Map<String, Object> values = new LinkedHashMap<>();
+				if (an.values != null) {
+					for (int i = 0; i < an.values.size(); i += 2) {
+						values.put((String) an.values.get(i), an.values.get(i + 1));
+					}
+				}
+				return values;
+			}
+		}
+		return null;
+	}
+
 	public List<String> findAnnotationValue(String annotationType, boolean searchMeta) {		
 		return findAnnotationValue(annotationType, searchMeta, new HashSet<>());
 	}
@@ -541,8 +715,8 @@ public class Type {
 			return Collections.emptyMap();
 		}
 		Map<String,List<String>> collectedResults = new LinkedHashMap<>();
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an : node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an : annotationNodes) {
 				if (an.desc.equals(annotationType)) {
 					List<Object> values = an.values;
 					if (values != null) {
@@ -559,7 +733,7 @@ public class Type {
 				}
 			}
 			if (searchMeta) {
-				for (AnnotationNode an: node.visibleAnnotations) {
+				for (AnnotationNode an: annotationNodes) {
 					// For example @EnableSomething might have @Import on it
 					Type annoType = null;
 					try {
@@ -582,8 +756,8 @@ public class Type {
 			return Collections.emptyList();
 		}
 		List<String> collectedResults = new ArrayList<>();
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an : node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an : annotationNodes) {
 				if (an.desc.equals(annotationType)) {
 					List<Object> values = an.values;
 					if (values != null) {
@@ -599,7 +773,7 @@ public class Type {
 				}
 			}
 			if (searchMeta) {
-				for (AnnotationNode an: node.visibleAnnotations) {
+				for (AnnotationNode an: annotationNodes) {
 					// For example @EnableSomething might have @Import on it
 					Type annoType = typeSystem.Lresolve(an.desc);
 					collectedResults.addAll(annoType.findAnnotationValue(annotationType, searchMeta, visited));
@@ -610,12 +784,14 @@ public class Type {
 	}
 
 	private List<Type> getAnnotations() {
-		if (annotations == null) {
-			annotations = new ArrayList<>();
-			if (node.visibleAnnotations != null) {
-				for (AnnotationNode an : node.visibleAnnotations) {
+		List<Type> result = annotations;
+		if (result == null) {
+			// Built locally and only then published, so other threads never see a partial list
+			result = new ArrayList<>();
+			if (annotationNodes.length != 0) {
+				for (AnnotationNode an : annotationNodes) {
 					try {
-						annotations.add(this.typeSystem.Lresolve(an.desc));
+						result.add(this.typeSystem.Lresolve(an.desc));
 					} catch (MissingTypeException mte) {
 						// that's ok you weren't relying on it anyway!
 					}
@@ -630,11 +806,12 @@ public class Type {
 //				}
 //			}
 //			}
-			if (annotations.size() == 0) {
-				annotations = NO_ANNOTATIONS;
+			if (result.size() == 0) {
+				result = NO_ANNOTATIONS;
 			}
+			annotations = result;
 		}
-		return annotations;
+		return result;
 	}
 
 	public Type findAnnotation(Type searchType) {
@@ -653,17 +830,17 @@ public class Type {
 	public Entry<String,String> isIndexedOrEntity() {
 		Type indexedType = isMetaAnnotated2("Lorg/springframework/stereotype/Indexed;");
 		if (indexedType != null) {
-			return new AbstractMap.SimpleImmutableEntry<String,String>(this.node.name.replace("/", "."),indexedType.getName().replace("/", "."));
+			return new AbstractMap.SimpleImmutableEntry<String,String>(this.name.replace("/", "."),indexedType.getName().replace("/", "."));
 		} else {
 			indexedType = isMetaAnnotated2("Ljavax/persistence/Entity;");
 			if (indexedType != null) {
-				return new AbstractMap.SimpleImmutableEntry<String,String>(this.node.name.replace("/", "."),"javax.persistence.Entity");
+				return new AbstractMap.SimpleImmutableEntry<String,String>(this.name.replace("/", "."),"javax.persistence.Entity");
 			}
 			Type t = isIndexedInHierarchy();
 			if ( t != null) {
 				// This should catch repositories where the Repository interface is marked @Indexed
 				//app.main.model.FooRepository=org.springframework.data.repository.Repository")
-				return new AbstractMap.SimpleImmutableEntry<String,String>(this.node.name.replace("/","."), t.node.name.replace("/","."));
+				return new AbstractMap.SimpleImmutableEntry<String,String>(this.name.replace("/","."), t.name.replace("/","."));
 			}
 			return null;
 		}
@@ -704,13 +881,23 @@ public class Type {
 ////							System.out.println("<> "+o+"  "+(o==null?"":o.ge
 	
 	private Type isMetaAnnotated2(String Ldescriptor) {
-		return isMetaAnnotated2(Ldescriptor, new HashSet<>());
+		for (AnnotationNode an: annotationNodes) {
+			if (an.desc.equals(Ldescriptor)) {
+				return this;
+			}
+			Type meta = typeSystem.findMetaAnnotated(an.desc, Ldescriptor);
+			if (meta != null) {
+				return meta;
+			}
+		}
+		return null;
 	}
 
 	private boolean isAnnotated(String Ldescriptor) {
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an: node.visibleAnnotations) {
-				if (an.desc.equals(Ldescriptor)) {
+		int id = typeSystem.getAnnotationId(Ldescriptor);
+		if (id != -1) {
+			for (int annotationId : annotationIds) {
+				if (annotationId == id) {
 					return true;
 				}
 			}
@@ -718,15 +905,22 @@ public class Type {
 		return false;
 	}
 	
-	private Type isMetaAnnotated2(String Ldescriptor, Set<String> seen) {
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an: node.visibleAnnotations) {
+	/**
+	 * @return true for @Retention, @Target and the like, which are never annotated with anything of interest
+	 */
+	static boolean isJdkMetaAnnotation(String Ldescriptor) {
+		return Ldescriptor.startsWith("Ljava/lang/annotation/");
+	}
+
+	Type isMetaAnnotated2(String Ldescriptor, Set<String> seen) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an: annotationNodes) {
 				if (seen.add(an.desc)) { 
 					if (an.desc.equals(Ldescriptor)) {
 						return this;//typeSystem.Lresolve(an.desc);
 					} else {
-						Type annoType = typeSystem.Lresolve(an.desc);
-						Type meta = annoType.isMetaAnnotated2(Ldescriptor, seen);
+						Type annoType = isJdkMetaAnnotation(an.desc) ? null : typeSystem.Lresolve(an.desc, true);
+						Type meta = annoType == null ? null : annoType.isMetaAnnotated2(Ldescriptor, seen);
 						if (meta != null) {
 							return meta;
 						}
@@ -738,27 +932,18 @@ public class Type {
 	}
 
 	public List<Type> getNestedTypes() {
-		List<Type> result = null;
-		List<InnerClassNode> innerClasses = node.innerClasses;
-		for (InnerClassNode inner: innerClasses) {	
-			if (inner.outerName==null || !inner.outerName.equals(getName())) {
-//				System.out.println("SKIPPPING "+inner.name+" because outer is "+inner.outerName+" and we are looking at "+getName());
-				continue;
-			}
-			if (inner.name.equals(getName())) {
-				continue;
-			}
-			Type t = typeSystem.resolve(inner.name); // aaa/bbb/ccc/Ddd$Eee
-			if (result == null) {
-				result = new ArrayList<>();
-			}
-			result.add(t);
+		if (nestedTypeNames.length == 0) {
+			return Collections.emptyList();
+		}
+		List<Type> result = new ArrayList<>(nestedTypeNames.length);
+		for (String nestedTypeName: nestedTypeNames) {
+			result.add(typeSystem.resolve(nestedTypeName));
 		}
-		return result==null?Collections.emptyList():result;
+		return result;
 	}
 
 	public String getDescriptor() {
-		return "L"+node.name.replace(".", "/")+";";
+		return "L"+name+";";
 	}
 
 	/**
@@ -772,8 +957,8 @@ public class Type {
 			s.add(this);
 			hints.put(new HintDescriptor(s, hint.skipIfTypesMissing, hint.follow, hint.name), null);
 		}
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an: node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an: annotationNodes) {
 				Type annotationType = typeSystem.Lresolve(an.desc, true);
 				if (annotationType == null) {
 					System.out.println("Couldn't resolve "+an.desc);
@@ -805,8 +990,8 @@ public class Type {
 				hints.put(new HintDescriptor(new ArrayList<>(annotationChain), hint.skipIfTypesMissing, hint.follow, hint.name), collectTypes(an));
 			}
 			// check for meta annotation
-			if (node.visibleAnnotations != null) {
-					for (AnnotationNode an2: node.visibleAnnotations) {
+			if (annotationNodes.length != 0) {
+					for (AnnotationNode an2: annotationNodes) {
 						Type annotationType = typeSystem.Lresolve(an2.desc, true);
 						if (annotationType == null) {
 							System.out.println("Couldn't resolve "+an2.desc);
@@ -824,8 +1009,8 @@ public class Type {
 		if (!visited.add(this)) {
 			return null;
 		}
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an : node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an : annotationNodes) {
 				CompilationHint compilationHint = proposedAnnotations.get(an.desc);
 				if (compilationHint != null) {
 					return compilationHint;
@@ -1018,8 +1203,8 @@ public class Type {
 		if (!visited.add(this)) {
 			return;
 		}
-		if (node.visibleAnnotations != null) {
-			for (AnnotationNode an: node.visibleAnnotations) {
+		if (annotationNodes.length != 0) {
+			for (AnnotationNode an: annotationNodes) {
 				Type annotationType = typeSystem.Lresolve(an.desc, true);
 				if (annotationType == null) {
 					missingAnnotationTypes.add(an.desc.substring(0,an.desc.length()-1).replace("/", "."));
@@ -15,61 +15,208 @@
  */
 package org.springframework.boot.graal.type;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 /**
- * Simple type system with some rudimentary caching.
+ * Simple type system with some rudimentary caching. Safe for use from multiple threads, each type is
+ * parsed at most once no matter how many threads ask for it concurrently.
  */
-public class TypeSystem {
+public class TypeSystem implements Closeable {
+
+	private static final boolean DEBUG = false;
 	
 	public static String SPRING_AT_CONFIGURATION = "Lorg/springframework/context/annotation/Configuration;";
 
-	// Map of all types on the classpath that have some kind of annotations on them
-	Map<String, AnnotationInfo> annotatedTypes;
+	// Map of all types on the classpath that have some kind of annotations on them, set once the scan completes
+	volatile Map<String, AnnotationInfo> annotatedTypes;
+
+	// Built by the scan, annotation descriptor to the (slashed) names of types annotated with it directly
+	private Map<String, List<String>> annotationIndex;
+
+	// Built by the scan, annotation descriptor to the names of types annotated or meta-annotated with it
+	private Map<String, List<String>> metaAnnotationIndex;
+
+	// Annotation descriptor to the descriptors of all the annotations (transitively) on that annotation type
+	private Map<String, Set<String>> metaAnnotationClosures = new ConcurrentHashMap<>();
 
 	// Classpath from which this type system will resolve types
 	private List<String> classpath;
 
-	// Cache of resolved types TODO time out entries?
-	private Map<String, Type> typeCache = new HashMap<>();
+	// Cache of resolved types, softly referenced so the collector can reclaim them under memory pressure.
+	// Evicted types are simply parsed again if asked for.
+	private Map<String, TypeReference> typeCache = new ConcurrentHashMap<>();
+
+	private ReferenceQueue<Type> evictedTypes = new ReferenceQueue<>();
+
+	// Types being loaded, so concurrent requests for the same type wait for the one thread loading it
+	private Map<String, CompletableFuture<Type>> loadingTypes = new ConcurrentHashMap<>();
+
+	// The most recently used types are also held strongly, so they are never evicted
+	private RecentTypes recentTypes = new RecentTypes(CACHE_SIZE);
+
+	private AtomicLong cacheHits = new AtomicLong();
+
+	private AtomicLong cacheMisses = new AtomicLong();
+
+	private AtomicLong cacheEvictions = new AtomicLong();
+
+	// Shared copies of the names and descriptors held by types, so each distinct string is only held once
+	private Map<String, String> strings = new ConcurrentHashMap<>();
+
+	// Index of every annotation descriptor seen, types record their annotations by index
+	private Map<String, Integer> annotationIds = new ConcurrentHashMap<>();
+
+	private AtomicInteger nextAnnotationId = new AtomicInteger();
 
 	// Map of which zip files contain which packages TODO split package support
-	private Map<String, File> packageCache = new HashMap<>();
+	private Map<String, File> packageCache = new ConcurrentHashMap<>();
 
 	// Map of which application files contain particular packages
-	private Map<String, List<File>> appPackages = new HashMap<>();
+	private Map<String, List<File>> appPackages = new ConcurrentHashMap<>();
+
+	// Map of which parts of Boot executable jars (nested jars or the application classes) contain which packages
+	private Map<String, BootJar.Archive> bootPackages = new ConcurrentHashMap<>();
 
+	// Boot executable jars on the classpath, read in place rather than unpacked
+	private Map<File, BootJar> bootJars = new ConcurrentHashMap<>();
+
+	// Slashed names of the application classes, those in classpath directories or BOOT-INF/classes
+	private List<String> applicationTypes = new CopyOnWriteArrayList<>();
+
+	// Annotation descriptor plus the meta-annotation descriptor searched for, to the slashed name of the
+	// annotation carrying it, see findMetaAnnotated
+	private final Map<String, Optional<String>> metaAnnotations = new ConcurrentHashMap<>();
+
+	// Persistent index of the archives on the classpath, reused across builds
+	private ClasspathIndex classpathIndex;
+
+	// Every class on the classpath, built by index(). A type the filter has never seen can only come from the JDK.
+	private volatile BloomFilter knownTypes;
+
+	private volatile DependencyGraph dependencyGraph;
+
+	private final Map<String, VerifiedMembers> verifiedMembers = new ConcurrentHashMap<>();
+
+	private final Map<String, Boolean> resolvableHierarchies = new ConcurrentHashMap<>();
+
+	private AtomicLong rejectedLookups = new AtomicLong();
+
+	// Archives kept open for lookups, least recently used are closed when the limit is reached. Guarded by
+	// itself, an evicted archive still being read by another thread is closed when that read finishes.
+	private Map<File, OpenArchive> openArchives = new LinkedHashMap<File, OpenArchive>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, OpenArchive> eldest) {
+			if (size() > MAX_OPEN_ARCHIVES) {
+				eldest.getValue().evict();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private static int MAX_OPEN_ARCHIVES;
+
+	// Number of recently used types that are held strongly by the cache
+	private static int CACHE_SIZE;
+
+	// Whether lookups for types that are not on the classpath skip straight to the JDK, rather than also
+	// asking the context class loader
+	private static boolean NEGATIVE_FILTER;
+
+	private static final int STRUCTURE_ONLY = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+	private static boolean PARALLEL;
+
+	private static int PARALLELISM;
+
+	// Directory where classpath indexes are kept (one file per classpath), by default they are not persisted
+	private static String INDEX_DIR;
+
+	static {
+		PARALLEL = Boolean.valueOf(System.getProperty("parallelTypeSystem", "false"));
+		PARALLELISM = Integer.getInteger("typeSystemParallelism", Runtime.getRuntime().availableProcessors());
+		MAX_OPEN_ARCHIVES = Integer.getInteger("typeSystemOpenArchives", 64);
+		CACHE_SIZE = Integer.getInteger("typeSystemCacheSize", 10000);
+		NEGATIVE_FILTER = Boolean.valueOf(System.getProperty("typeSystemNegativeFilter", "false"));
+		INDEX_DIR = System.getProperty("typeSystemIndex", "");
+	}
 	
+	// Whether indexing and scanning process the classpath entries in parallel
+	private boolean parallel;
+
+	// Shared by everything processing the classpath entries in parallel, worker threads are only started when needed
+	private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
 	public static TypeSystem get(List<String> classpath) {
 		return new TypeSystem(classpath);
 	}
 
+	public static TypeSystem get(List<String> classpath, boolean parallel) {
+		return new TypeSystem(classpath, parallel);
+	}
+
 	public TypeSystem(List<String> classpath) {
+		this(classpath, PARALLEL);
+	}
+
+	public TypeSystem(List<String> classpath, boolean parallel) {
 		this.classpath = classpath;
+		this.parallel = parallel;
 		index();
 	}
 	
@@ -98,7 +245,14 @@ public class TypeSystem {
 	}
 
 	public Type resolveSlashed(String slashedTypeName, boolean allowNotFound) {
-		Type type = typeCache.get(slashedTypeName);
+		expungeEvictedTypes();
+		TypeReference reference = typeCache.get(slashedTypeName);
+		Type type = reference == null ? null : reference.get();
+		if (type != null) {
+			cacheHits.incrementAndGet();
+		} else {
+			type = loadOnce(slashedTypeName);
+		}
 		if (type == Type.MISSING) {
 			if (allowNotFound) {
 				return null;
@@ -106,22 +260,358 @@ public class TypeSystem {
 				throw new MissingTypeException(slashedTypeName);
 			}
 		}
-		if (type != null) {
+		recentTypes.put(slashedTypeName, type);
+		return type;
+	}
+
+	/**
+	 * Single flight: the parse happens outside of any map lock and concurrent requests for the same type
+	 * wait for the one thread loading it, requests for other types are unaffected.
+	 */
+	private Type loadOnce(String slashedTypeName) {
+		CompletableFuture<Type> future = new CompletableFuture<>();
+		CompletableFuture<Type> inflight = loadingTypes.putIfAbsent(slashedTypeName, future);
+		if (inflight != null) {
+			cacheHits.incrementAndGet();
+			try {
+				return inflight.join();
+			} catch (CompletionException ce) {
+				if (ce.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ce.getCause();
+				}
+				throw ce;
+			}
+		}
+		try {
+			// It may have been loaded between the cache lookup and becoming the loader
+			TypeReference reference = typeCache.get(slashedTypeName);
+			Type type = reference == null ? null : reference.get();
+			if (type != null) {
+				cacheHits.incrementAndGet();
+			} else {
+				cacheMisses.incrementAndGet();
+				type = load(slashedTypeName);
+				typeCache.put(slashedTypeName, new TypeReference(slashedTypeName, type, evictedTypes));
+			}
+			future.complete(type);
 			return type;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loadingTypes.remove(slashedTypeName, future);
+		}
+	}
+
+	private void expungeEvictedTypes() {
+		Reference<? extends Type> evicted;
+		while ((evicted = evictedTypes.poll()) != null) {
+			TypeReference reference = (TypeReference) evicted;
+			if (typeCache.remove(reference.name, reference)) {
+				cacheEvictions.incrementAndGet();
+			}
+		}
+	}
+
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	public long getCacheEvictions() {
+		return cacheEvictions.get();
+	}
+
+	/**
+	 * @return how many lookups the negative filter answered without searching the classpath
+	 */
+	public long getRejectedLookups() {
+		return rejectedLookups.get();
+	}
+
+	/**
+	 * @return a shared copy of the string, so that the names and descriptors held by types are not duplicated
+	 */
+	String intern(String string) {
+		if (string == null) {
+			return null;
+		}
+		String existing = strings.putIfAbsent(string, string);
+		return existing == null ? string : existing;
+	}
+
+	/**
+	 * @return the index for the annotation descriptor, allocating one if it has not been seen before
+	 */
+	int annotationId(String annotationDescriptor) {
+		return annotationIds.computeIfAbsent(annotationDescriptor, d -> nextAnnotationId.getAndIncrement());
+	}
+
+	/**
+	 * @return the index for the annotation descriptor or -1 if no type has been seen with that annotation
+	 */
+	int getAnnotationId(String annotationDescriptor) {
+		Integer id = annotationIds.get(annotationDescriptor);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Strongly holds the most recently used types. Split by name into independently locked LRU stripes, so
+	 * concurrent resolutions rarely contend for the same lock, with the bound shared equally between them.
+	 */
+	private static class RecentTypes {
+
+		private final static int STRIPES = 16;
+
+		private final List<Map<String, Type>> stripes = new ArrayList<>(STRIPES);
+
+		RecentTypes(int capacity) {
+			int stripeCapacity = (capacity + STRIPES - 1) / STRIPES;
+			for (int i = 0; i < STRIPES; i++) {
+				stripes.add(new LinkedHashMap<String, Type>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, Type> eldest) {
+						return size() > stripeCapacity;
+					}
+				});
+			}
+		}
+
+		void put(String name, Type type) {
+			Map<String, Type> stripe = stripes.get((name.hashCode() & 0x7fffffff) % STRIPES);
+			synchronized (stripe) {
+				stripe.put(name, type);
+			}
+		}
+	}
+
+	/**
+	 * Soft reference to a cached type that remembers its key so that it can be removed from the cache once
+	 * the type has been collected.
+	 */
+	private static class TypeReference extends SoftReference<Type> {
+
+		final String name;
+
+		TypeReference(String name, Type type, ReferenceQueue<Type> queue) {
+			super(type, queue);
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Locate and parse a type, must not touch the type cache as it runs whilst the cache entry is being
+	 * computed. Only the structure of the type is kept (header, annotations, inner classes and member
+	 * signatures), see {@link #loadFullClassNode(String)}.
+	 * @return the type or {@link Type#MISSING} if it cannot be found, so we don't go looking again!
+	 */
+	private Type load(String slashedTypeName) {
+		byte[] bytes = findBytes(slashedTypeName);
+		if (bytes == null) {
+			return Type.MISSING;
+		}
+		return Type.forClassNode(this, parse(bytes, STRUCTURE_ONLY));
+	}
+
+	/**
+	 * Load the complete class, including method bodies, for a type. The result is not cached, callers
+	 * that need the code should hold on to it for as long as they need it.
+	 * @return the class node or null if the type cannot be found
+	 */
+	public ClassNode loadFullClassNode(String slashedTypeName) {
+		byte[] bytes = findBytes(slashedTypeName);
+		return bytes == null ? null : parse(bytes, ClassReader.SKIP_DEBUG);
+	}
+
+	/**
+	 * Work out which members of a type could be reflected on without hitting a missing type, from the
+	 * bytecode rather than by loading the class. Computed once per type.
+	 * @return the verified members or null if the type cannot be found
+	 */
+	public VerifiedMembers getVerifiedMembers(String slashedTypeName) {
+		VerifiedMembers members = verifiedMembers.get(slashedTypeName);
+		if (members == null) {
+			byte[] bytes = findBytes(slashedTypeName);
+			if (bytes == null) {
+				return null;
+			}
+			// Computed outside of the map as it recurses into the supertypes
+			members = verifyMembers(parse(bytes, STRUCTURE_ONLY));
+			VerifiedMembers existing = verifiedMembers.putIfAbsent(slashedTypeName, members);
+			if (existing != null) {
+				members = existing;
+			}
+		}
+		return members;
+	}
+
+	private VerifiedMembers verifyMembers(ClassNode node) {
+		List<VerifiedMembers.Member> methods = new ArrayList<>();
+		List<VerifiedMembers.Member> constructors = new ArrayList<>();
+		for (MethodNode mn : node.methods) {
+			if (mn.name.equals("<clinit>")) {
+				continue;
+			}
+			boolean verified = isResolvableDescriptor(mn.desc) && isResolvableSignature(mn.signature)
+					&& areResolvableAnnotations(mn.visibleAnnotations);
+			if (verified && mn.exceptions != null) {
+				for (String exception : mn.exceptions) {
+					verified &= isResolvableHierarchy(exception);
+				}
+			}
+			VerifiedMembers.Member member = new VerifiedMembers.Member(mn.name, mn.desc, mn.access, verified);
+			(mn.name.equals("<init>") ? constructors : methods).add(member);
+		}
+		List<VerifiedMembers.Member> fields = new ArrayList<>();
+		for (FieldNode fn : node.fields) {
+			boolean verified = isResolvableDescriptor(fn.desc) && isResolvableSignature(fn.signature)
+					&& areResolvableAnnotations(fn.visibleAnnotations);
+			fields.add(new VerifiedMembers.Member(fn.name, fn.desc, fn.access, verified));
+		}
+		boolean declaredClassesVerified = true;
+		boolean publicClassesVerified = true;
+		for (InnerClassNode inner : node.innerClasses) {
+			if (node.name.equals(inner.outerName) && !isResolvableHierarchy(inner.name)) {
+				declaredClassesVerified = false;
+				if ((inner.access & Opcodes.ACC_PUBLIC) != 0) {
+					publicClassesVerified = false;
+				}
+			}
+		}
+		boolean publicMethodsVerified = VerifiedMembers.allPublicVerified(methods);
+		boolean publicFieldsVerified = VerifiedMembers.allPublicVerified(fields);
+		List<String> supertypes = new ArrayList<>(node.interfaces);
+		if (node.superName != null) {
+			supertypes.add(node.superName);
+		}
+		for (String supertype : supertypes) {
+			if (isJdkClass(supertype)) {
+				// Nothing in the runtime image refers to types outside of it
+				continue;
+			}
+			VerifiedMembers inherited = getVerifiedMembers(supertype);
+			if (inherited == null) {
+				publicMethodsVerified = publicFieldsVerified = publicClassesVerified = false;
+			} else {
+				publicMethodsVerified &= inherited.arePublicMethodsVerified();
+				publicFieldsVerified &= inherited.arePublicFieldsVerified();
+				publicClassesVerified &= inherited.arePublicClassesVerified();
+			}
+		}
+		return new VerifiedMembers(node.name, methods, constructors, fields, declaredClassesVerified,
+				publicMethodsVerified, publicFieldsVerified, publicClassesVerified);
+	}
+
+	private boolean isResolvableDescriptor(String desc) {
+		org.objectweb.asm.Type[] types = desc.charAt(0) == '(' ? descriptorTypes(desc)
+				: new org.objectweb.asm.Type[] { org.objectweb.asm.Type.getType(desc) };
+		for (org.objectweb.asm.Type t : types) {
+			if (t.getSort() == org.objectweb.asm.Type.ARRAY) {
+				t = t.getElementType();
+			}
+			if (t.getSort() == org.objectweb.asm.Type.OBJECT && !isResolvableHierarchy(t.getInternalName())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static org.objectweb.asm.Type[] descriptorTypes(String methodDesc) {
+		org.objectweb.asm.Type[] arguments = org.objectweb.asm.Type.getArgumentTypes(methodDesc);
+		org.objectweb.asm.Type[] types = Arrays.copyOf(arguments, arguments.length + 1);
+		types[arguments.length] = org.objectweb.asm.Type.getReturnType(methodDesc);
+		return types;
+	}
+
+	private boolean isResolvableSignature(String signature) {
+		if (signature != null) {
+			Type.TypeCollector collector = new Type.TypeCollector();
+			new SignatureReader(signature).accept(collector);
+			for (String t : collector.getTypes()) {
+				if (!isResolvableHierarchy(t)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean areResolvableAnnotations(List<AnnotationNode> annotations) {
+		if (annotations != null) {
+			for (AnnotationNode annotation : annotations) {
+				if (!isResolvableHierarchy(annotation.desc.substring(1, annotation.desc.length() - 1))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isJdkType(String slashedTypeName) {
+		int lastSlash = slashedTypeName.lastIndexOf('/');
+		return lastSlash != -1 && JdkClasses.get().containsPackage(slashedTypeName.substring(0, lastSlash));
+	}
+
+	/**
+	 * @return true if the JDK itself has the type. Being in a JDK package is not enough, on JDK 8 packages such as
+	 * <tt>javax/annotation</tt> and <tt>javax/transaction</tt> are split between rt.jar and jars on the classpath.
+	 */
+	private static boolean isJdkClass(String slashedTypeName) {
+		return isJdkType(slashedTypeName) && JdkClasses.get().find(slashedTypeName) != null;
+	}
+
+	/**
+	 * @return true if the type and all its supertypes can be found, i.e. it could be loaded
+	 */
+	private boolean isResolvableHierarchy(String slashedTypeName) {
+		Boolean resolvable = resolvableHierarchies.get(slashedTypeName);
+		if (resolvable == null) {
+			if (isJdkClass(slashedTypeName)) {
+				// The runtime image is self contained, if the type is there so is its hierarchy
+				resolvableHierarchies.put(slashedTypeName, true);
+				return true;
+			}
+			Type type = resolveSlashed(slashedTypeName, true);
+			resolvable = type != null;
+			if (type != null) {
+				if (type.getSuperclassString() != null) {
+					resolvable = isResolvableHierarchy(type.getSuperclassString());
+				}
+				for (String i : type.getInterfacesStrings()) {
+					resolvable &= isResolvableHierarchy(i);
+				}
+			}
+			resolvableHierarchies.put(slashedTypeName, resolvable);
+		}
+		return resolvable;
+	}
+
+	private byte[] findBytes(String slashedTypeName) {
+		BloomFilter filter = knownTypes;
+		if (filter != null && !filter.mightContain(slashedTypeName)) {
+			// Definitely not on the classpath, so the JDK or nothing. Typically an optional type being
+			// probed by @ConditionalOnClass.
+			byte[] bytes = JdkClasses.get().find(slashedTypeName);
+			if (bytes == null) {
+				rejectedLookups.incrementAndGet();
+			}
+			return bytes;
 		}
 		byte[] bytes = find(slashedTypeName);
 		if (bytes == null) {
-			// System class?
+			bytes = JdkClasses.get().find(slashedTypeName);
+		}
+		if (bytes == null) {
+			// Somewhere else the context loader can see? (split packages are not handled by find())
 			InputStream resourceAsStream = Thread.currentThread().getContextClassLoader()
 					.getResourceAsStream(slashedTypeName + ".class");
 			if (resourceAsStream == null) {
-				// cache a missingtype so we don't go looking again!
-				typeCache.put(slashedTypeName, Type.MISSING);
-				if (allowNotFound) {
-					return null;
-				} else {
-					throw new MissingTypeException(slashedTypeName);
-				}
+				return null;
 			}
 			try {
 				bytes = loadFromStream(resourceAsStream);
@@ -129,12 +619,14 @@ public class TypeSystem {
 				throw new RuntimeException("Problems loading class from resource stream: " + slashedTypeName, e);
 			}
 		}
+		return bytes;
+	}
+
+	private static ClassNode parse(byte[] bytes, int flags) {
 		ClassNode node = new ClassNode();
 		ClassReader reader = new ClassReader(bytes);
-		reader.accept(node, ClassReader.SKIP_DEBUG);
-		type = Type.forClassNode(this, node);
-		typeCache.put(slashedTypeName, type);
-		return type;
+		reader.accept(node, flags);
+		return node;
 	}
 
 	private String toSlashedName(String dottedTypeName) {
@@ -220,60 +712,272 @@ public class TypeSystem {
 	}
 
 	public void index() {
-		for (String s : classpath) {
-			File f = new File(s);
-			if (f.isDirectory()) {
-				indexDir(f);
+		File indexFile = INDEX_DIR.isEmpty() ? null : new File(INDEX_DIR, "classpath-"
+				+ UUID.nameUUIDFromBytes(String.join(File.pathSeparator, classpath).getBytes(StandardCharsets.UTF_8)) + ".idx");
+		long t = System.currentTimeMillis();
+		classpathIndex = ClasspathIndex.load(indexFile);
+		// Application directories are cheap to walk and likely to have changed, always index them. The
+		// results are merged in classpath order, so a parallel index is identical to the sequential walk
+		// (later jars win for split packages).
+		List<IndexedEntry> results;
+		if (parallel) {
+			results = forEachClasspathEntry(this::indexEntry);
+		} else {
+			results = new ArrayList<>();
+			for (String s : classpath) {
+				results.add(indexEntry(new File(s)));
+			}
+		}
+		int classCount = 0;
+		for (IndexedEntry result : results) {
+			classCount += result.getClassCount();
+		}
+		BloomFilter filter = NEGATIVE_FILTER ? new BloomFilter(classCount) : null;
+		for (int i = 0; i < classpath.size(); i++) {
+			IndexedEntry result = results.get(i);
+			if (result.jar != null) {
+				indexJar(new File(classpath.get(i)), result.jar, filter);
+			} else if (result.bootJar != null) {
+				indexBootJar(result.bootJar, filter);
 			} else {
-				indexJar(f);
+				indexDir(new File(classpath.get(i)), result.classNames, filter);
 			}
 		}
+		knownTypes = filter;
+		classpathIndex.save(indexFile);
+		System.out.println("SBG: index time: " + (System.currentTimeMillis() - t) + "ms" + (parallel ? " (parallel)" : ""));
+	}
+
+	private IndexedEntry indexEntry(File f) {
+		if (f.isDirectory()) {
+			return new IndexedEntry(null, null, collectClassNames(f));
+		}
+		// Only walks a jar if the persistent index does not have an up to date entry for it
+		ClasspathIndex.Entry entry = classpathIndex.get(f);
+		return entry.isBootJar() ? new IndexedEntry(null, openBootJar(f), null)
+				: new IndexedEntry(entry, null, null);
+	}
+
+	/**
+	 * What indexing one classpath entry found, exactly one of a jar, a Boot executable jar or the class names
+	 * of a directory.
+	 */
+	private static class IndexedEntry {
+
+		final ClasspathIndex.Entry jar;
+
+		final BootJar bootJar;
+
+		final List<String> classNames;
+
+		IndexedEntry(ClasspathIndex.Entry jar, BootJar bootJar, List<String> classNames) {
+			this.jar = jar;
+			this.bootJar = bootJar;
+			this.classNames = classNames;
+		}
+
+		int getClassCount() {
+			return jar != null ? jar.getClassNames().length : bootJar != null ? bootJar.getClassCount() : classNames.size();
+		}
+	}
+
+	private BootJar openBootJar(File f) {
+		try {
+			return BootJar.open(f);
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Unable to read Boot jar " + f, ioe);
+		}
 	}
 
 	public void indexDir(File dir) {
+		// Anything indexed after the fact is not in the negative filter, so stop using it
+		knownTypes = null;
+		indexDir(dir, collectClassNames(dir), null);
+	}
+
+	private void indexDir(File dir, List<String> classNames, BloomFilter filter) {
+		Set<String> packages = new LinkedHashSet<>();
+		for (String className : classNames) {
+			int lastSlash = className.lastIndexOf("/");
+			if (lastSlash != -1) {
+				packages.add(className.substring(0, lastSlash));
+			}
+			if (filter != null) {
+				filter.add(className);
+			}
+		}
+		for (String packageName : packages) {
+			appPackages.computeIfAbsent(packageName, p -> new CopyOnWriteArrayList<>()).add(dir);
+		}
+		applicationTypes.addAll(classNames);
+	}
+
+	/**
+	 * @return the slashed names of the classes under the directory, e.g. <tt>a/b/C</tt>
+	 */
+	private List<String> collectClassNames(File dir) {
 		Path root = Paths.get(dir.toURI());
 		try {
-			Files.walk(root).filter(f -> f.toString().endsWith(".class")).map(f -> {
+			return Files.walk(root).filter(f -> f.toString().endsWith(".class")).map(f -> {
 				String name = f.toString().substring(root.toString().length() + 1);
-				int lastSlash = name.lastIndexOf("/");
-				if (lastSlash != -1 && name.endsWith(".class")) {
-					return name.substring(0, lastSlash);
-				}
-				return null;
-			}).forEach(n -> {
-				if (n != null) {
-					List<File> dirs = appPackages.get(n);
-					if (dirs == null) {
-						dirs = new ArrayList<>();
-						appPackages.put(n, dirs);
-					}
-					dirs.add(dir);
-				}
-			});
+				return name.substring(0, name.length() - ".class".length());
+			}).collect(Collectors.toList());
 		} catch (IOException ioe) {
 			throw new IllegalStateException("Unable to walk " + dir, ioe);
 		}
 	}
 
 	public void indexJar(File jar) {
-		// Walk the jar, index entries and cache package > this jar
-		try {
-			try (ZipFile zf = new ZipFile(jar)) {
-				Enumeration<? extends ZipEntry> entries = zf.entries();
-				while (entries.hasMoreElements()) {
-					ZipEntry entry = entries.nextElement();
-					String name = entry.getName();
-					if (name.endsWith(".class")) {
-						int lastSlash = name.lastIndexOf("/");
-						if (lastSlash != -1 && name.endsWith(".class")) {
-							packageCache.put(name.substring(0, lastSlash), jar);
+		if (classpathIndex == null) {
+			classpathIndex = new ClasspathIndex();
+		}
+		knownTypes = null;
+		ClasspathIndex.Entry entry = classpathIndex.get(jar);
+		if (entry.isBootJar()) {
+			indexBootJar(openBootJar(jar), null);
+		} else {
+			indexJar(jar, entry, null);
+		}
+	}
+
+	private void indexBootJar(BootJar bootJar, BloomFilter filter) {
+		bootJars.put(bootJar.getFile(), bootJar);
+		for (BootJar.Archive archive : bootJar.getArchives()) {
+			for (String className : archive.getClassNames()) {
+				int lastSlash = className.lastIndexOf("/");
+				if (lastSlash != -1) {
+					bootPackages.put(className.substring(0, lastSlash), archive);
+				}
+				if (filter != null) {
+					filter.add(className);
+				}
+			}
+			if (archive.isApplication()) {
+				applicationTypes.addAll(archive.getClassNames());
+			}
+		}
+	}
+
+	/**
+	 * @return the slashed names of the application classes, those in directories on the classpath or under
+	 * BOOT-INF/classes in a Boot executable jar
+	 */
+	public List<String> getApplicationTypes() {
+		return Collections.unmodifiableList(applicationTypes);
+	}
+
+	/**
+	 * @return the slashed names of the classes in the jars whose file name matches the pattern, whether on the
+	 * classpath or under BOOT-INF/lib in a Boot executable jar, in classpath order
+	 */
+	public List<String> getTypesInJars(Pattern jarNamePattern) {
+		if (classpathIndex == null) {
+			classpathIndex = new ClasspathIndex();
+		}
+		List<String> types = new ArrayList<>();
+		for (String s : classpath) {
+			File f = new File(s);
+			BootJar bootJar = bootJars.get(f);
+			if (bootJar != null) {
+				for (BootJar.Archive archive : bootJar.getArchives()) {
+					String name = archive.getName().substring(archive.getName().lastIndexOf('/') + 1);
+					if (!archive.isApplication() && jarNamePattern.matcher(name).matches()) {
+						types.addAll(archive.getClassNames());
+					}
+				}
+			} else if (f.isFile() && jarNamePattern.matcher(f.getName()).matches()) {
+				for (String className : classpathIndex.get(f).getClassNames()) {
+					types.add(className.substring(0, className.length() - ".class".length()));
+				}
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Shared by all types (and threads) so each annotation is only searched once for a particular
+	 * meta-annotation, however many types use it.
+	 * @return the annotation that is (directly) annotated with the meta-annotation, the annotation itself or
+	 * one found by following its own annotations, null if there is none or the annotation is not on the classpath
+	 */
+	Type findMetaAnnotated(String annotationDescriptor, String metaAnnotationDescriptor) {
+		Optional<String> annotated = metaAnnotations.computeIfAbsent(annotationDescriptor + metaAnnotationDescriptor, k -> {
+			Type annotationType = Type.isJdkMetaAnnotation(annotationDescriptor) ? null : Lresolve(annotationDescriptor, true);
+			Set<String> seen = new HashSet<>();
+			seen.add(annotationDescriptor);
+			Type meta = annotationType == null ? null : annotationType.isMetaAnnotated2(metaAnnotationDescriptor, seen);
+			return Optional.ofNullable(meta == null ? null : meta.getName());
+		});
+		return annotated.isPresent() ? resolveSlashed(annotated.get()) : null;
+	}
+
+	/**
+	 * Build (once) the class dependency graph of the classpath. The constant pools of the classes in each
+	 * classpath entry are read in parallel, with one reusable {@link ConstantPoolReader} per entry. Where a
+	 * class is on the classpath more than once the first occurrence wins, as it would for lookups.
+	 */
+	public DependencyGraph getDependencyGraph() {
+		DependencyGraph graph = dependencyGraph;
+		if (graph == null) {
+			synchronized (this) {
+				graph = dependencyGraph;
+				if (graph == null) {
+					long t = System.currentTimeMillis();
+					List<Map<String, List<String>>> results = forEachClasspathEntry(f -> {
+						Map<String, List<String>> entryReferences = new HashMap<>();
+						ConstantPoolReader reader = new ConstantPoolReader();
+						Set<String> referenced = new LinkedHashSet<>();
+						forEachClass(f, (location, bytes) -> {
+							reader.read(ByteBuffer.wrap(bytes));
+							referenced.clear();
+							reader.addReferencedClasses(referenced);
+							entryReferences.putIfAbsent(reader.getClassName(), new ArrayList<>(referenced));
+						});
+						return entryReferences;
+					});
+					Map<String, List<String>> references = new HashMap<>();
+					for (Map<String, List<String>> result : results) {
+						for (Map.Entry<String, List<String>> entry : result.entrySet()) {
+							references.putIfAbsent(entry.getKey(), entry.getValue());
 						}
 					}
+					graph = new DependencyGraph(references);
+					System.out.println("SBG: dependency graph: " + graph.size() + " classes, " + graph.getEdgeCount()
+							+ " references, built in " + (System.currentTimeMillis() - t) + "ms");
+					dependencyGraph = graph;
 				}
 			}
-		} catch (IOException ioe) {
-			throw new RuntimeException("Problem during scan of " + jar, ioe);
 		}
+		return graph;
+	}
+
+	private void indexJar(File jar, ClasspathIndex.Entry entry, BloomFilter filter) {
+		for (String packageName : entry.getPackages()) {
+			packageCache.put(packageName, jar);
+		}
+		if (filter != null) {
+			for (String className : entry.getClassNames()) {
+				filter.add(className.substring(0, className.length() - ".class".length()));
+			}
+		}
+	}
+
+	/**
+	 * Apply a function to each classpath entry as a separate fork/join task.
+	 * @return the results, in classpath order
+	 */
+	private <T> List<T> forEachClasspathEntry(Function<File, T> fn) {
+		List<ForkJoinTask<T>> tasks = new ArrayList<>();
+		for (String s : classpath) {
+			File f = new File(s);
+			tasks.add(ForkJoinTask.adapt(() -> fn.apply(f)));
+		}
+		pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+		List<T> results = new ArrayList<>(tasks.size());
+		for (ForkJoinTask<T> task : tasks) {
+			results.add(task.join());
+		}
+		return results;
 	}
 
 	public byte[] find(String slashedTypeName) {
@@ -282,26 +986,32 @@ public class TypeSystem {
 			int index = slashedTypeName.lastIndexOf("/");
 			String packageName = index==-1?"":slashedTypeName.substring(0, index);
 
-			if (appPackages.containsKey(packageName)) {
-				List<File> list = appPackages.get(packageName);
+			List<File> list = appPackages.get(packageName);
+			if (list != null) {
 				for (File f : list) {
 					File toTry = new File(f, search);
 					if (toTry.exists()) {
-						return loadFromStream(new FileInputStream(toTry));
+						return loadFromStream(new FileInputStream(toTry), (int) toTry.length());
 					}
 				}
 			} else {
+				BootJar.Archive bootArchive = bootPackages.get(packageName);
+				if (bootArchive != null) {
+					byte[] bytes = bootArchive.read(slashedTypeName);
+					if (bytes != null) {
+						return bytes;
+					}
+				}
 				File jarfile = packageCache.get(packageName);
 				if (jarfile != null) {
-					try (ZipFile zf = new ZipFile(jarfile)) {
-						Enumeration<? extends ZipEntry> entries = zf.entries();
-						while (entries.hasMoreElements()) {
-							ZipEntry entry = entries.nextElement();
-							String name = entry.getName();
-							if (name.equals(search)) {
-								return loadFromStream(zf.getInputStream(entry));
-							}
+					OpenArchive archive = acquireArchive(jarfile);
+					try {
+						ZipEntry entry = archive.zipFile.getEntry(search);
+						if (entry != null) {
+							return loadFromStream(archive.zipFile.getInputStream(entry), (int) entry.getSize());
 						}
+					} finally {
+						releaseArchive(archive);
 					}
 				}
 			}
@@ -312,30 +1022,112 @@ public class TypeSystem {
 		}
 	}
 
+	/**
+	 * Return the open archive for the specified jar, opening it if necessary. Archives stay open until
+	 * evicted or until {@link #close()} is called. Every acquire must be paired with a
+	 * {@link #releaseArchive(OpenArchive)}.
+	 */
+	private OpenArchive acquireArchive(File jarfile) throws IOException {
+		synchronized (openArchives) {
+			OpenArchive archive = openArchives.get(jarfile);
+			if (archive == null) {
+				archive = new OpenArchive(new ZipFile(jarfile));
+				openArchives.put(jarfile, archive);
+			}
+			archive.users++;
+			return archive;
+		}
+	}
+
+	private void releaseArchive(OpenArchive archive) {
+		synchronized (openArchives) {
+			archive.users--;
+			if (archive.evicted && archive.users == 0) {
+				closeQuietly(archive.zipFile);
+			}
+		}
+	}
+
+	/**
+	 * Close any archives opened for lookups and stop the worker threads, should be called once the type system is
+	 * no longer needed.
+	 */
+	@Override
+	public void close() {
+		System.out.println("SBG: type cache: hits=" + cacheHits + " misses=" + cacheMisses + " evictions=" + cacheEvictions
+				+ " rejected=" + rejectedLookups);
+		synchronized (openArchives) {
+			for (OpenArchive archive : openArchives.values()) {
+				archive.evict();
+			}
+			openArchives.clear();
+		}
+		pool.shutdown();
+	}
+
+	private static void closeQuietly(ZipFile zf) {
+		try {
+			zf.close();
+		} catch (IOException ioe) {
+			// ignore
+		}
+	}
+
+	/**
+	 * An archive held open for lookups plus the number of threads currently reading from it. Only
+	 * accessed whilst holding the lock on {@link TypeSystem#openArchives}.
+	 */
+	private static class OpenArchive {
+
+		final ZipFile zipFile;
+
+		int users;
+
+		boolean evicted;
+
+		OpenArchive(ZipFile zipFile) {
+			this.zipFile = zipFile;
+		}
+
+		void evict() {
+			evicted = true;
+			if (users == 0) {
+				closeQuietly(zipFile);
+			}
+		}
+	}
+
 	public static byte[] loadFromStream(InputStream stream) {
+		return loadFromStream(stream, -1);
+	}
+
+	/**
+	 * Load all the data from a stream, closing it afterwards.
+	 * @param stream the stream to read
+	 * @param size the amount of data expected if known (e.g. from the zip entry), otherwise -1
+	 */
+	public static byte[] loadFromStream(InputStream stream, int size) {
 		try {
-			BufferedInputStream bis = new BufferedInputStream(stream);
-			int size = 2048;
-			byte[] theData = new byte[size];
-			int dataReadSoFar = 0;
-			byte[] buffer = new byte[size / 2];
-			int read = 0;
-			while ((read = bis.read(buffer)) != -1) {
-				if ((read + dataReadSoFar) > theData.length) {
-					// need to make more room
-					byte[] newTheData = new byte[theData.length * 2];
-					// System.out.println("doubled to " + newTheData.length);
-					System.arraycopy(theData, 0, newTheData, 0, dataReadSoFar);
-					theData = newTheData;
+			if (size >= 0) {
+				// Read straight into a buffer of the right size
+				byte[] data = new byte[size];
+				int dataReadSoFar = 0;
+				int read = 0;
+				while (dataReadSoFar < size && (read = stream.read(data, dataReadSoFar, size - dataReadSoFar)) != -1) {
+					dataReadSoFar += read;
+				}
+				if (dataReadSoFar == size && stream.read() == -1) {
+					return data;
 				}
-				System.arraycopy(buffer, 0, theData, dataReadSoFar, read);
-				dataReadSoFar += read;
-			}
-			bis.close();
-			// Resize to actual data read
-			byte[] returnData = new byte[dataReadSoFar];
-			System.arraycopy(theData, 0, returnData, 0, dataReadSoFar);
-			return returnData;
+				throw new IOException("Expected " + size + " bytes but stream held " + (dataReadSoFar < size ? dataReadSoFar : "more"));
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+			byte[] buffer = new byte[4096];
+			int read = 0;
+			while ((read = stream.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
 		} catch (IOException e) {
 			throw new RuntimeException("Unexpectedly unable to load bytedata from input stream", e);
 		} finally {
@@ -352,31 +1144,131 @@ public class TypeSystem {
 	}
 
 	public void scan() {
+		Map<String, AnnotationInfo> found = new HashMap<>();
+		scan(found);
+		buildAnnotationIndexes(found);
+		annotatedTypes = found;
+	}
+
+	/**
+	 * Invert the scan results so that finding the types with a particular annotation, directly or as a
+	 * meta-annotation, is a lookup rather than a check of every annotated type.
+	 */
+	private void buildAnnotationIndexes(Map<String, AnnotationInfo> found) {
+		Map<String, List<String>> direct = new HashMap<>();
+		Map<String, List<String>> meta = new HashMap<>();
+		for (AnnotationInfo ai : found.values()) {
+			Set<String> descriptors = new LinkedHashSet<>();
+			for (AnnotationNode an : ai.annotations) {
+				descriptors.add(an.desc);
+			}
+			for (String descriptor : descriptors) {
+				direct.computeIfAbsent(descriptor, d -> new ArrayList<>()).add(ai.name);
+			}
+			Set<String> metaDescriptors = new LinkedHashSet<>(descriptors);
+			for (String descriptor : descriptors) {
+				metaDescriptors.addAll(getMetaAnnotationClosure(descriptor, found));
+			}
+			for (String descriptor : metaDescriptors) {
+				meta.computeIfAbsent(descriptor, d -> new ArrayList<>()).add(ai.name);
+			}
+		}
+		annotationIndex = direct;
+		metaAnnotationIndex = meta;
+	}
+
+	/**
+	 * Compute the descriptors of every annotation reachable from the annotations on the specified annotation
+	 * type, memoized per annotation type. Copes with cycles (e.g. annotations on {@link java.lang.annotation.Documented}).
+	 */
+	private Set<String> getMetaAnnotationClosure(String annotationDescriptor, Map<String, AnnotationInfo> found) {
+		Set<String> closure = metaAnnotationClosures.get(annotationDescriptor);
+		if (closure != null) {
+			return closure;
+		}
+		closure = new HashSet<>();
+		Set<String> visited = new HashSet<>();
+		Deque<String> toVisit = new ArrayDeque<>();
+		toVisit.push(annotationDescriptor);
+		while (!toVisit.isEmpty()) {
+			String descriptor = toVisit.pop();
+			if (!visited.add(descriptor)) {
+				continue;
+			}
+			// Only complete closures are memoized, so one computed earlier can be used as is
+			Set<String> known = descriptor.equals(annotationDescriptor) ? null : metaAnnotationClosures.get(descriptor);
+			if (known != null) {
+				closure.addAll(known);
+				continue;
+			}
+			AnnotationInfo ai = found.get(descriptor.substring(1, descriptor.length() - 1));
+			if (ai != null && ai.hasData()) {
+				for (AnnotationNode an : ai.annotations) {
+					closure.add(an.desc);
+					toVisit.push(an.desc);
+				}
+			}
+		}
+		Set<String> existing = metaAnnotationClosures.putIfAbsent(annotationDescriptor, closure);
+		return existing == null ? closure : existing;
+	}
+
+	private void scan(Map<String, AnnotationInfo> found) {
 		// Scan the classpath for things of interest, do this only once!
-		for (String classpathEntry : classpath) {
-			File f = new File(classpathEntry);
-			if (f.isDirectory()) {
-				scanFiles(f, f);
-			} else {
-				scanArchive(f);
+		if (parallel) {
+			List<Map<String, AnnotationInfo>> results = forEachClasspathEntry(f -> {
+				Map<String, AnnotationInfo> entryTypes = new LinkedHashMap<>();
+				scanEntry(f, entryTypes);
+				return entryTypes;
+			});
+			for (Map<String, AnnotationInfo> result : results) {
+				found.putAll(result);
+			}
+		} else {
+			for (String classpathEntry : classpath) {
+				scanEntry(new File(classpathEntry), found);
 			}
 		}
 	}
 
-	private void scanArchive(File f) {
+	private void scanEntry(File f, Map<String, AnnotationInfo> found) {
+		forEachClass(f, (location, bytes) -> {
+			ClassNode node = parse(bytes, STRUCTURE_ONLY);
+			AnnotationInfo ai = new AnnotationInfo(this, node);
+			if (ai.hasData()) {
+				if (DEBUG) {
+					System.out.println("From " + location + " got " + ai.toAnnotationString());
+				}
+				found.put(node.name, ai);
+			}
+		});
+	}
+
+	/**
+	 * Pass the bytes of every class in a classpath entry (directory, jar or Boot jar) to the consumer, along with
+	 * a description of where the class came from.
+	 */
+	void forEachClass(File f, BiConsumer<String, byte[]> consumer) {
+		if (f.isDirectory()) {
+			visitFiles(f, consumer);
+			return;
+		}
+		BootJar bootJar = bootJars.get(f);
+		if (bootJar != null) {
+			for (BootJar.Archive archive : bootJar.getArchives()) {
+				for (String className : archive.getClassNames()) {
+					consumer.accept(archive.getName(), archive.read(className));
+				}
+			}
+			return;
+		}
+		// A separate handle from the lookup archives, so concurrent visits never share one
 		try (ZipFile zf = new ZipFile(f)) {
 			Enumeration<? extends ZipEntry> entries = zf.entries();
 			while (entries.hasMoreElements()) {
 				ZipEntry entry = entries.nextElement();
 				if (entry.getName().endsWith(".class")) {
-					ClassReader reader = new ClassReader(zf.getInputStream(entry));
-					ClassNode node = new ClassNode();
-					reader.accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-					AnnotationInfo ai = new AnnotationInfo(this, node);
-					if (ai.hasData()) {
-						System.out.println("From " + entry.toString() + " got " + ai.toAnnotationString());
-						annotatedTypes.put(node.name, ai);
-					}
+					consumer.accept(entry.toString(), loadFromStream(zf.getInputStream(entry), (int) entry.getSize()));
 				}
 				// TODO resources?
 			}
@@ -385,23 +1277,80 @@ public class TypeSystem {
 		}
 	}
 
-	private void scanFiles(File file, File base) {
+	/**
+	 * Find resources under a directory prefix across the whole classpath, in parallel if the type system is.
+	 * For a Boot jar the resources under <tt>BOOT-INF/classes</tt> and in the nested jars are searched.
+	 * @param prefix the directory to look in, e.g. <tt>META-INF/native-image/</tt>
+	 * @param filter applied to the full resource name
+	 * @return the contents of each matching resource keyed by where it was found (<tt>jar!/name</tt>,
+	 * <tt>jar!/BOOT-INF/classes!/name</tt>, <tt>jar!/BOOT-INF/lib/nested.jar!/name</tt> or the file path), in
+	 * classpath order
+	 */
+	public Map<String, byte[]> findResources(String prefix, Predicate<String> filter) {
+		Map<String, byte[]> resources = new LinkedHashMap<>();
+		if (parallel) {
+			forEachClasspathEntry(f -> findResources(f, prefix, filter)).forEach(resources::putAll);
+		} else {
+			for (String s : classpath) {
+				resources.putAll(findResources(new File(s), prefix, filter));
+			}
+		}
+		return resources;
+	}
+
+	private Map<String, byte[]> findResources(File f, String prefix, Predicate<String> filter) {
+		Map<String, byte[]> found = new LinkedHashMap<>();
+		BootJar bootJar = bootJars.get(f);
+		if (f.isDirectory()) {
+			visitResources(new File(f, prefix), prefix, filter, found);
+		} else if (bootJar != null) {
+			for (BootJar.Archive archive : bootJar.getArchives()) {
+				archive.findResources(prefix, filter, found);
+			}
+		} else if (f.isFile()) {
+			try (ZipFile zf = new ZipFile(f)) {
+				Enumeration<? extends ZipEntry> entries = zf.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					String name = entry.getName();
+					if (name.startsWith(prefix) && !entry.isDirectory() && filter.test(name)) {
+						found.put(f + "!/" + name, loadFromStream(zf.getInputStream(entry), (int) entry.getSize()));
+					}
+				}
+			} catch (IOException ioe) {
+				System.out.println("SBG: WARNING: unable to search " + f + " for resources: " + ioe.getMessage());
+			}
+		}
+		return found;
+	}
+
+	private void visitResources(File file, String name, Predicate<String> filter, Map<String, byte[]> found) {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File f : files) {
+					visitResources(f, name + (name.isEmpty() || name.endsWith("/") ? "" : "/") + f.getName(), filter, found);
+				}
+			}
+		} else if (file.isFile() && filter.test(name)) {
+			try {
+				found.put(file.getPath(), Files.readAllBytes(file.toPath()));
+			} catch (IOException ioe) {
+				System.out.println("SBG: WARNING: unable to read " + file + ": " + ioe.getMessage());
+			}
+		}
+	}
+
+	private void visitFiles(File file, BiConsumer<String, byte[]> consumer) {
 		if (file.isDirectory()) {
 			File[] files = file.listFiles();
 			for (File f : files) {
-				scanFiles(f, base);
+				visitFiles(f, consumer);
 			}
 		} else if (file.getName().endsWith(".class")) {
 			try {
-				byte[] bytes = Files.readAllBytes(Paths.get(file.toURI()));
-				ClassReader reader = new ClassReader(bytes);
-				ClassNode node = new ClassNode();
-				reader.accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-				AnnotationInfo ai = new AnnotationInfo(this, node);
-				if (ai.hasData()) {
-					System.out.println("From " + file.getName() + " got " + ai.toAnnotationString());
-					annotatedTypes.put(node.name, ai);
-				}
+				consumer.accept(file.getName(), Files.readAllBytes(Paths.get(file.toURI())));
 			} catch (IOException ioe) {
 				throw new IllegalStateException(ioe);
 			}
@@ -415,10 +1364,6 @@ public class TypeSystem {
 		private TypeSystem typeSystem;
 		private List<AnnotationNode> annotations;
 
-		// if this is the annotationinfo for an annotation, this will cache meta
-		// annotations
-		private List<AnnotationNode> metaAnnotationsList = null;
-
 		// need file?
 
 		public AnnotationInfo(TypeSystem typeSystem, ClassNode node) {
@@ -427,6 +1372,10 @@ public class TypeSystem {
 			annotations = node.visibleAnnotations;
 		}
 
+		public String getName() {
+			return name;
+		}
+
 		public boolean hasData() {
 			return annotations != null && annotations.size() != 0;
 		}
@@ -460,61 +1409,19 @@ public class TypeSystem {
 			return false;
 		}
 
-		// TODO filter out java/lang/annotation annotations? Surely we don't need all of
-		// them
-
-		List<AnnotationNode> getMetaAnnotations() {
-			if (metaAnnotationsList == null) {
-				metaAnnotationsList = new ArrayList<>();
-				collectMetaAnnotations();
-				if (metaAnnotationsList.size() == 0) {
-					metaAnnotationsList = Collections.emptyList();
-				}
-			}
-			return metaAnnotationsList;
-		}
-
 		public boolean hasDescriptorMeta(String annotationDescriptor) {
-			System.out.println("Checking " + name + " for " + annotationDescriptor);
 			for (AnnotationNode an : annotations) {
-				if (an.desc.equals(annotationDescriptor)) {
-					return true;
-				}
-			}
-			for (AnnotationNode an : getMetaAnnotations()) {
-				if (an.desc.equals(annotationDescriptor)) {
+				if (an.desc.equals(annotationDescriptor)
+						|| typeSystem.getMetaAnnotationClosure(an.desc, typeSystem.annotatedTypes).contains(annotationDescriptor)) {
 					return true;
 				}
 			}
 			return false;
 		}
-
-		private void collectMetaAnnotations() {
-			for (AnnotationNode an : annotations) {
-				// Go through our annotations and grab their meta annotations
-				AnnotationInfo ai = typeSystem.annotatedTypes.get(an.desc.substring(1, an.desc.length() - 1));
-				if (ai != null && ai.hasData()) {
-					metaAnnotationsList.addAll(ai.getAnnotations());
-					metaAnnotationsList.addAll(ai.getMetaAnnotations());
-					if (name.endsWith("DemoApplication")) {
-						System.out.println("111");
-						for (AnnotationNode ann : metaAnnotationsList) {
-							System.out.println(ann.desc);
-						}
-						System.out.println("222");
-					}
-				}
-			}
-		}
-
-		private Collection<? extends AnnotationNode> getAnnotations() {
-			return annotations;
-		}
 	}
 
-	private void ensureScanned() {
+	private synchronized void ensureScanned() {
 		if (annotatedTypes == null) {
-			annotatedTypes = new HashMap<>();
 			long t = System.currentTimeMillis();
 			scan();
 			System.out.println("SBG: scan time: " + (System.currentTimeMillis() - t) + "ms");
@@ -523,15 +1430,18 @@ public class TypeSystem {
 
 	public List<String> findTypesAnnotated(String annotationDescriptor, boolean metaAnnotated) {
 		ensureScanned();
-		if (metaAnnotated) {
-			return annotatedTypes.values().stream().filter(ai -> ai.hasDescriptorMeta(annotationDescriptor))
-					.map(ai -> ai.name).collect(Collectors.toList());
-		} else {
-			return annotatedTypes.values().stream().filter(ai -> ai.hasDescriptor(annotationDescriptor))
-					.map(ai -> ai.name).collect(Collectors.toList());
-		}
+		List<String> types = (metaAnnotated ? metaAnnotationIndex : annotationIndex).get(annotationDescriptor);
+		return types == null ? new ArrayList<>() : new ArrayList<>(types);
 	}
 	
+	/**
+	 * @return what the classpath scan found for each annotated type, scanning if that has not happened yet
+	 */
+	public Collection<AnnotationInfo> getAnnotatedTypes() {
+		ensureScanned();
+		return Collections.unmodifiableCollection(annotatedTypes.values());
+	}
+
 	public List<String> findTypesAnnotationAtConfiguration(boolean metaAnnotated) {
 		return findTypesAnnotated(SPRING_AT_CONFIGURATION,metaAnnotated);
 	}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The members of a type and whether each of them could be reflected on without tripping over a missing type.
+ * A member is verified if every type mentioned in its descriptor, generic signature, throws clause and
+ * annotations can be resolved along with its complete hierarchy. Computed from the bytecode by
+ * {@link TypeSystem#getVerifiedMembers(String)}, so nothing is loaded into the JVM to find out.
+ *
+ * @author Andy Clement
+ */
+public class VerifiedMembers {
+
+	private final String name;
+
+	private final List<Member> methods;
+
+	private final List<Member> constructors;
+
+	private final List<Member> fields;
+
+	private final boolean declaredClassesVerified;
+
+	// Covering what Class.getMethods()/getFields()/getClasses() return, so inherited public members too
+	private final boolean publicMethodsVerified;
+
+	private final boolean publicFieldsVerified;
+
+	private final boolean publicClassesVerified;
+
+	VerifiedMembers(String name, List<Member> methods, List<Member> constructors, List<Member> fields,
+			boolean declaredClassesVerified, boolean publicMethodsVerified, boolean publicFieldsVerified,
+			boolean publicClassesVerified) {
+		this.name = name;
+		this.methods = methods;
+		this.constructors = constructors;
+		this.fields = fields;
+		this.declaredClassesVerified = declaredClassesVerified;
+		this.publicMethodsVerified = publicMethodsVerified;
+		this.publicFieldsVerified = publicFieldsVerified;
+		this.publicClassesVerified = publicClassesVerified;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the declared methods, excluding constructors and static initializers
+	 */
+	public List<Member> getMethods() {
+		return methods;
+	}
+
+	public List<Member> getConstructors() {
+		return constructors;
+	}
+
+	public List<Member> getFields() {
+		return fields;
+	}
+
+	public boolean areDeclaredClassesVerified() {
+		return declaredClassesVerified;
+	}
+
+	public boolean arePublicMethodsVerified() {
+		return publicMethodsVerified;
+	}
+
+	public boolean arePublicFieldsVerified() {
+		return publicFieldsVerified;
+	}
+
+	public boolean arePublicClassesVerified() {
+		return publicClassesVerified;
+	}
+
+	public static boolean allVerified(List<Member> members) {
+		for (Member member : members) {
+			if (!member.isVerified()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean allPublicVerified(List<Member> members) {
+		for (Member member : members) {
+			if (member.isPublic() && !member.isVerified()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "VerifiedMembers(" + name + ")";
+	}
+
+	/**
+	 * A field, method or constructor.
+	 */
+	public static class Member {
+
+		private final String name;
+
+		private final String desc;
+
+		private final int access;
+
+		private final boolean verified;
+
+		Member(String name, String desc, int access, boolean verified) {
+			this.name = name;
+			this.desc = desc;
+			this.access = access;
+			this.verified = verified;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getDesc() {
+			return desc;
+		}
+
+		public boolean isPublic() {
+			return (access & Opcodes.ACC_PUBLIC) != 0;
+		}
+
+		public boolean isVerified() {
+			return verified;
+		}
+
+		/**
+		 * @return for a method or constructor, the parameter types in the form {@link Class#getName()} uses
+		 */
+		public List<String> getParameterTypeNames() {
+			return Method.getParameterTypeNames(desc);
+		}
+
+		@Override
+		public String toString() {
+			return name + desc + (verified ? "" : " (unverified)");
+		}
+	}
+
+}
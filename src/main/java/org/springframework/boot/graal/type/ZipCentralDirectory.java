@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.graal.type;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Minimal reader for the central directory of a zip file. Unlike {@link java.util.zip.ZipFile} this
+ * exposes the offset of the local header for each entry, which allows entries to be located again later
+ * without walking the archive. Works against any {@link ByteBuffer} so it can be used on memory mapped
+ * files as well as slices of them. Zip64 archives are not supported, {@link #read(ByteBuffer)} returns
+ * null for them and callers should fall back to {@link java.util.zip.ZipFile}.
+ *
+ * @author Andy Clement
+ */
+public class ZipCentralDirectory {
+
+	private final static int EOCD_SIGNATURE = 0x06054b50;
+
+	private final static int CEN_SIGNATURE = 0x02014b50;
+
+	private final static int LOC_SIGNATURE = 0x04034b50;
+
+	private final static int EOCD_MIN_SIZE = 22;
+
+	private final static int CEN_HEADER_SIZE = 46;
+
+	private final static int LOC_HEADER_SIZE = 30;
+
+	public final static int STORED = 0;
+
+	private String[] names;
+
+	private int[] localHeaderOffsets;
+
+	private int[] methods;
+
+	private int[] compressedSizes;
+
+	private int[] sizes;
+
+	private long checksum;
+
+	private ZipCentralDirectory(int count) {
+		names = new String[count];
+		localHeaderOffsets = new int[count];
+		methods = new int[count];
+		compressedSizes = new int[count];
+		sizes = new int[count];
+	}
+
+	public static ZipCentralDirectory read(File f) throws IOException {
+		try (FileChannel fc = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			return read(mbb);
+		}
+	}
+
+	/**
+	 * @param zip buffer holding the complete zip, position 0 is the start of the archive
+	 * @return the central directory or null if it cannot be handled here (e.g. zip64)
+	 */
+	public static ZipCentralDirectory read(ByteBuffer zip) {
+		ByteBuffer bb = zip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int limit = bb.limit();
+		int eocd = -1;
+		// The end record is at the end, possibly followed by a comment of up to 64k
+		for (int i = limit - EOCD_MIN_SIZE, min = Math.max(0, limit - EOCD_MIN_SIZE - 0xffff); i >= min; i--) {
+			if (bb.getInt(i) == EOCD_SIGNATURE) {
+				eocd = i;
+				break;
+			}
+		}
+		if (eocd == -1) {
+			return null;
+		}
+		int count = bb.getShort(eocd + 10) & 0xffff;
+		long cenSize = bb.getInt(eocd + 12) & 0xffffffffL;
+		long cenOffset = bb.getInt(eocd + 16) & 0xffffffffL;
+		if (count == 0xffff || cenOffset == 0xffffffffL || cenOffset + cenSize > limit) {
+			return null;
+		}
+		ZipCentralDirectory cd = new ZipCentralDirectory(count);
+		CRC32 crc = new CRC32();
+		byte[] namebuf = new byte[256];
+		int ptr = (int) cenOffset;
+		for (int i = 0; i < count; i++) {
+			if (bb.getInt(ptr) != CEN_SIGNATURE) {
+				return null;
+			}
+			int nameLength = bb.getShort(ptr + 28) & 0xffff;
+			int extraLength = bb.getShort(ptr + 30) & 0xffff;
+			int commentLength = bb.getShort(ptr + 32) & 0xffff;
+			cd.methods[i] = bb.getShort(ptr + 10) & 0xffff;
+			cd.compressedSizes[i] = bb.getInt(ptr + 20);
+			cd.sizes[i] = bb.getInt(ptr + 24);
+			cd.localHeaderOffsets[i] = bb.getInt(ptr + 42);
+			if (nameLength > namebuf.length) {
+				namebuf = new byte[nameLength];
+			}
+			bb.position(ptr + CEN_HEADER_SIZE);
+			bb.get(namebuf, 0, nameLength);
+			cd.names[i] = new String(namebuf, 0, nameLength, StandardCharsets.UTF_8);
+			int entryLength = CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+			// The central directory includes the crc and sizes of every entry, so a checksum over
+			// it changes whenever the content of the archive changes
+			bb.position(ptr);
+			ByteBuffer entry = bb.slice();
+			entry.limit(entryLength);
+			crc.update(entry);
+			ptr += entryLength;
+		}
+		cd.checksum = crc.getValue();
+		return cd;
+	}
+
+	/**
+	 * Compute the start of the data for the entry whose local header is at the specified offset.
+	 */
+	public static int dataOffset(ByteBuffer zip, int localHeaderOffset) {
+		ByteBuffer bb = zip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (bb.getInt(localHeaderOffset) != LOC_SIGNATURE) {
+			throw new IllegalStateException("No local header found at offset " + localHeaderOffset);
+		}
+		int nameLength = bb.getShort(localHeaderOffset + 26) & 0xffff;
+		int extraLength = bb.getShort(localHeaderOffset + 28) & 0xffff;
+		return localHeaderOffset + LOC_HEADER_SIZE + nameLength + extraLength;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public String getName(int i) {
+		return names[i];
+	}
+
+	public int getLocalHeaderOffset(int i) {
+		return localHeaderOffsets[i];
+	}
+
+	public int getMethod(int i) {
+		return methods[i];
+	}
+
+	public int getCompressedSize(int i) {
+		return compressedSizes[i];
+	}
+
+	public int getSize(int i) {
+		return sizes[i];
+	}
+
+	/**
+	 * @return a CRC32 computed over the central directory records
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.internal.svm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The <tt>META-INF/spring.factories</tt> files of the image merged into one map at build time, after any
+ * unnecessary auto-configurations have been removed. Initialized at build time so the map is in the image heap
+ * and <tt>SpringFactoriesLoader</tt> can answer from it without opening or parsing any resources.
+ * 
+ * @author Andy Clement
+ */
+public final class SpringFactoriesIndex {
+
+	private static Map<String, List<String>> factories = Collections.emptyMap();
+
+	private SpringFactoriesIndex() {
+	}
+
+	/**
+	 * Merge the factories files, in classpath order, the way <tt>SpringFactoriesLoader.loadSpringFactories</tt> does.
+	 */
+	public static synchronized void set(List<Properties> springFactories) {
+		Map<String, List<String>> result = new LinkedHashMap<>();
+		for (Properties p : springFactories) {
+			for (Map.Entry<Object, Object> entry : p.entrySet()) {
+				String factoryTypeName = ((String) entry.getKey()).trim();
+				List<String> implementations = result.computeIfAbsent(factoryTypeName, k -> new ArrayList<>());
+				for (String implementation : ((String) entry.getValue()).split(",")) {
+					if (!implementation.trim().isEmpty()) {
+						implementations.add(implementation.trim());
+					}
+				}
+			}
+		}
+		result.replaceAll((k, v) -> Collections.unmodifiableList(v));
+		factories = Collections.unmodifiableMap(result);
+	}
+
+	public static Map<String, List<String>> get() {
+		return factories;
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.internal.svm;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * True when the feature is building a {@link SpringFactoriesIndex} (<tt>-DspringFactoriesIndex=true</tt>) and
+ * <tt>SpringFactoriesLoader</tt> is around.
+ * 
+ * @author Andy Clement
+ */
+public class SpringFactoriesIndexed implements BooleanSupplier {
+
+	@Override
+	public boolean getAsBoolean() {
+		if (!Boolean.valueOf(System.getProperty("springFactoriesIndex", "false"))) {
+			return false;
+		}
+		try {
+			Class.forName("org.springframework.core.io.support.SpringFactoriesLoader");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+}
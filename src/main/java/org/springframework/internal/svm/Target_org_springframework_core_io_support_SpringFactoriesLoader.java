@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.internal.svm;
+
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.svm.core.annotate.Substitute;
+import com.oracle.svm.core.annotate.TargetClass;
+
+/**
+ * Answers from the factories merged at build time rather than finding and parsing every
+ * <tt>META-INF/spring.factories</tt> at startup. There is only one class loader in the image so the
+ * one passed in does not matter.
+ * 
+ * @author Andy Clement
+ */
+@TargetClass(className="org.springframework.core.io.support.SpringFactoriesLoader", onlyWith = SpringFactoriesIndexed.class)
+public final class Target_org_springframework_core_io_support_SpringFactoriesLoader {
+
+	@Substitute
+	private static Map<String, List<String>> loadSpringFactories(ClassLoader classLoader) {
+		return SpringFactoriesIndex.get();
+	}
+
+}
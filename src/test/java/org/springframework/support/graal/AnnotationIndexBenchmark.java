@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.support.graal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.graal.type.TypeSystem;
+import org.springframework.boot.graal.type.TypeSystem.AnnotationInfo;
+
+/**
+ * Compares looking up the types with an annotation in the index built by the scan against filtering every
+ * annotated type, which is how queries were answered before the index existed. Run with:
+ * <pre>
+ * java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main AnnotationIndexBenchmark
+ * </pre>
+ *
+ * @author Andy Clement
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-DtypeSystemIndex=")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AnnotationIndexBenchmark {
+
+	@Param({ "Lorg/springframework/context/annotation/Configuration;", "Lorg/springframework/stereotype/Indexed;" })
+	public String annotationDescriptor;
+
+	@Param({ "false", "true" })
+	public boolean metaAnnotated;
+
+	private TypeSystem ts;
+
+	@Setup
+	public void setup() {
+		List<String> classpath = new ArrayList<>();
+		String cp = System.getProperty("benchmark.classpath", System.getProperty("java.class.path"));
+		for (String entry : cp.split(File.pathSeparator)) {
+			if (new File(entry).exists()) {
+				classpath.add(entry);
+			}
+		}
+		ts = TypeSystem.get(classpath);
+		// Trigger the scan and warm the meta-annotation closures
+		ts.findTypesAnnotated(annotationDescriptor, true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ts.close();
+	}
+
+	@Benchmark
+	public List<String> index() {
+		return ts.findTypesAnnotated(annotationDescriptor, metaAnnotated);
+	}
+
+	@Benchmark
+	public List<String> filter() {
+		if (metaAnnotated) {
+			return ts.getAnnotatedTypes().stream().filter(ai -> ai.hasDescriptorMeta(annotationDescriptor))
+					.map(AnnotationInfo::getName).collect(Collectors.toList());
+		} else {
+			return ts.getAnnotatedTypes().stream().filter(ai -> ai.hasDescriptor(annotationDescriptor))
+					.map(AnnotationInfo::getName).collect(Collectors.toList());
+		}
+	}
+
+}
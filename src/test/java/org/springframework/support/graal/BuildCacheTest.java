@@ -0,0 +1,171 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.ConditionDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.support.BuildCache;
+import org.springframework.boot.graal.support.BuildRecording;
+import org.springframework.boot.graal.support.ReflectionHandler;
+import org.springframework.boot.graal.type.TypeSystem;
+
+public class BuildCacheTest {
+
+	@Test
+	public void fingerprintFollowsClasspathContent() throws Exception {
+		File dir = Files.createTempDirectory("classes").toFile();
+		File clazz = new File(dir, "a/A.class");
+		clazz.getParentFile().mkdirs();
+		Files.write(clazz.toPath(), new byte[] { 1, 2, 3 });
+		List<String> classpath = Collections.singletonList(dir.getPath());
+		String fingerprint = BuildCache.fingerprint(classpath);
+		assertEquals(fingerprint, BuildCache.fingerprint(classpath));
+		Files.write(clazz.toPath(), new byte[] { 1, 2, 3, 4 });
+		assertNotEquals(fingerprint, BuildCache.fingerprint(classpath));
+		assertNotEquals(BuildCache.fingerprint(classpath),
+				BuildCache.fingerprint(Arrays.asList(dir.getPath(), "missing.jar")));
+		// Same size and timestamp, as a reproducible build might produce
+		fingerprint = BuildCache.fingerprint(classpath);
+		long lastModified = clazz.lastModified();
+		Files.write(clazz.toPath(), new byte[] { 1, 2, 3, 5 });
+		clazz.setLastModified(lastModified);
+		assertNotEquals(fingerprint, BuildCache.fingerprint(classpath));
+	}
+
+	@Test
+	public void fingerprintFollowsJarContent() throws Exception {
+		File jar = File.createTempFile("lib", ".jar");
+		jar.deleteOnExit();
+		List<String> classpath = Collections.singletonList(jar.getPath());
+		writeJar(jar, new byte[] { 1, 2, 3 });
+		jar.setLastModified(0);
+		String fingerprint = BuildCache.fingerprint(classpath);
+		assertEquals(fingerprint, BuildCache.fingerprint(classpath));
+		long length = jar.length();
+		writeJar(jar, new byte[] { 1, 2, 4 });
+		jar.setLastModified(0);
+		assertEquals(length, jar.length());
+		assertNotEquals(fingerprint, BuildCache.fingerprint(classpath));
+	}
+
+	private static void writeJar(File jar, byte[] content) throws Exception {
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			ZipEntry entry = new ZipEntry("a/A.class");
+			entry.setTime(0);
+			zos.putNextEntry(entry);
+			zos.write(content);
+		}
+	}
+
+	@Test
+	public void storeThenHit() throws Exception {
+		File cacheDir = Files.createTempDirectory("cache").toFile();
+		List<String> classpath = Collections.singletonList(Files.createTempDirectory("classes").toString());
+		BuildCache miss = BuildCache.open(cacheDir, classpath);
+		assertFalse(miss.isHit());
+		BuildRecording recording = miss.getRecording();
+		ClassDescriptor cd = ClassDescriptor.of("a.A");
+		cd.setFlag(Flag.allDeclaredConstructors);
+		cd.addMethodDescriptor(MethodDescriptor.of("foo", "java.lang.String"));
+		recording.getRegistered().getReflection().add(cd);
+		recording.getRegistered().getResources().add("a/A.class");
+		ClassDescriptor deferred = ClassDescriptor.of("b.B");
+		deferred.setFlag(Flag.allDeclaredMethods);
+		recording.getDeferred().add(deferred);
+		ClassDescriptor triggered = ClassDescriptor.of("c.C");
+		triggered.setCondition(ConditionDescriptor.typeReachable("c.Trigger"));
+		recording.getTriggered().add(triggered);
+		recording.addGeneratedResource("META-INF/spring.factories", "a=b".getBytes(StandardCharsets.UTF_8));
+		recording.addGeneratedResource("META-INF/spring.factories", "c=d".getBytes(StandardCharsets.UTF_8));
+		miss.store();
+
+		BuildCache hit = BuildCache.open(cacheDir, classpath);
+		assertTrue(hit.isHit());
+		BuildRecording read = hit.getRecording();
+		assertEquals(cd, read.getRegistered().getReflection().getClassDescriptor("a.A"));
+		assertEquals(Collections.singletonList("a/A.class"), read.getRegistered().getResources().getPatterns());
+		assertEquals(deferred, read.getDeferred().getClassDescriptor("b.B"));
+		assertEquals(triggered, read.getTriggered().getClassDescriptor("c.C"));
+		List<byte[]> factories = read.getGeneratedResources().get("META-INF/spring.factories");
+		assertEquals(2, factories.size());
+		assertArrayEquals("c=d".getBytes(StandardCharsets.UTF_8), factories.get(1));
+	}
+
+	@Test
+	public void deferredMembersAreRecordedAsDecided() throws Exception {
+		// One method refers to a type that is not on the classpath, a hit must not register it either
+		File dir = Files.createTempDirectory("classes").toFile();
+		byte[] bytes = generatePartial();
+		File clazz = new File(dir, "p/Partial.class");
+		clazz.getParentFile().mkdirs();
+		Files.write(clazz.toPath(), bytes);
+		Class<?> partial = new ClassLoader(getClass().getClassLoader()) {
+			Class<?> define() {
+				return defineClass("p.Partial", bytes, 0, bytes.length);
+			}
+		}.define();
+		List<String> classpath = Collections.singletonList(dir.getPath());
+		TypeSystem ts = TypeSystem.get(classpath);
+		ClassDescriptor decided;
+		try {
+			decided = ReflectionHandler.decideMembers(ts, partial,
+					EnumSet.of(Flag.allDeclaredConstructors, Flag.allDeclaredMethods, Flag.allDeclaredFields));
+		} finally {
+			ts.close();
+		}
+		assertEquals(EnumSet.of(Flag.allDeclaredConstructors, Flag.allDeclaredFields), decided.getFlags());
+		assertEquals(Collections.singletonList(MethodDescriptor.of("ok", "int")), decided.getMethods());
+
+		File cacheDir = Files.createTempDirectory("cache").toFile();
+		BuildCache miss = BuildCache.open(cacheDir, classpath);
+		miss.getRecording().getDeferred().add(decided);
+		miss.store();
+		BuildCache hit = BuildCache.open(cacheDir, classpath);
+		assertTrue(hit.isHit());
+		assertEquals(decided, hit.getRecording().getDeferred().getClassDescriptor("p.Partial"));
+	}
+
+	private static byte[] generatePartial() {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "p/Partial", null, "java/lang/Object", null);
+		cw.visitField(Opcodes.ACC_PRIVATE, "count", "I", null, null).visitEnd();
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		for (String[] method : new String[][] { { "ok", "(I)V" }, { "bad", "(Lmissing/Type;)V" } }) {
+			mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method[0], method[1], null, null);
+			mv.visitCode();
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+}
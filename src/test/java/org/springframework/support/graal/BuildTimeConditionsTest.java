@@ -0,0 +1,184 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.springframework.boot.graal.support.BuildTimeConditions;
+import org.springframework.boot.graal.support.BuildTimeConditions.WebApplicationType;
+import org.springframework.boot.graal.type.Type;
+import org.springframework.boot.graal.type.TypeSystem;
+
+public class BuildTimeConditionsTest {
+
+	private static TypeSystem ts;
+
+	private static BuildTimeConditions conditions;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		File dir = Files.createTempDirectory("conditions").toFile();
+		write(dir, "application.properties", "spring.profiles.active=prod\nfeature.enabled=false\n"
+				+ "spring.jpa.open-in-view=false\nspring.main.web-application-type=reactive\n");
+		write(dir, "config/application.properties", "feature.enabled=true\nfeature.mode=fast\n");
+		write(dir, "application-prod.properties", "feature.mode=slow\nplaceholder=${other}\n");
+		write(dir, "data/schema.sql", "");
+		generate(dir, "app/OnEnabled", Type.AtConditionalOnProperty, av -> {
+			av.visit("prefix", "feature");
+			array(av, "name", "enabled");
+		});
+		generate(dir, "app/OnFastMode", Type.AtConditionalOnProperty, av -> {
+			array(av, "name", "feature.mode");
+			av.visit("havingValue", "fast");
+		});
+		generate(dir, "app/OnOpenInView", Type.AtConditionalOnProperty, av -> array(av, "value", "spring.jpa.openInView"));
+		generate(dir, "app/OnMissing", Type.AtConditionalOnProperty, av -> array(av, "value", "not.set"));
+		generate(dir, "app/OnMissingMatches", Type.AtConditionalOnProperty, av -> {
+			array(av, "value", "not.set");
+			av.visit("matchIfMissing", true);
+		});
+		generate(dir, "app/OnPlaceholder", Type.AtConditionalOnProperty, av -> {
+			array(av, "value", "placeholder");
+			av.visit("havingValue", "x");
+		});
+		generate(dir, "app/OnSchema", Type.AtConditionalOnResource, av -> array(av, "resources", "classpath:data/schema.sql"));
+		generate(dir, "app/OnData", Type.AtConditionalOnResource, av -> array(av, "resources", "classpath:/data/data.sql"));
+		generate(dir, "app/OnFile", Type.AtConditionalOnResource, av -> array(av, "resources", "file:./data.sql"));
+		generate(dir, "app/OnServlet", Type.AtConditionalOnWebApplication, av -> av.visitEnum("type",
+				"Lorg/springframework/boot/autoconfigure/condition/ConditionalOnWebApplication$Type;", "SERVLET"));
+		generate(dir, "app/OnAnyWeb", Type.AtConditionalOnWebApplication, av -> {});
+		generate(dir, "app/OnNotWeb", Type.AtConditionalOnNotWebApplication, av -> {});
+		ts = TypeSystem.get(Collections.singletonList(dir.getPath()));
+		conditions = new BuildTimeConditions(ts);
+	}
+
+	@AfterClass
+	public static void close() {
+		ts.close();
+	}
+
+	@Test
+	public void properties() {
+		// config/ over the root, the active profile over both
+		assertEquals("true", conditions.getProperty("feature.enabled"));
+		assertEquals("slow", conditions.getProperty("feature.mode"));
+		assertNull(evaluate("app/OnEnabled"));
+		assertNotNull(evaluate("app/OnFastMode"));
+		assertNotNull(evaluate("app/OnOpenInView"));
+		assertNotNull(evaluate("app/OnMissing"));
+		assertNull(evaluate("app/OnMissingMatches"));
+		assertNull(evaluate("app/OnPlaceholder"));
+	}
+
+	@Test
+	public void resources() {
+		assertNull(evaluate("app/OnSchema"));
+		assertNotNull(evaluate("app/OnData"));
+		assertNull(evaluate("app/OnFile"));
+	}
+
+	@Test
+	public void webApplicationType() {
+		assertEquals(WebApplicationType.REACTIVE, conditions.getWebApplicationType());
+		assertNotNull(evaluate("app/OnServlet"));
+		assertNull(evaluate("app/OnAnyWeb"));
+		assertNotNull(evaluate("app/OnNotWeb"));
+	}
+
+	@Test
+	public void yamlConfiguration() throws Exception {
+		// Anything could be set in the YAML, nothing about properties or the application type can be decided
+		File dir = Files.createTempDirectory("conditions").toFile();
+		write(dir, "config/application.yml", "not:\n  set: true\n");
+		generate(dir, "app/OnMissing", Type.AtConditionalOnProperty, av -> array(av, "value", "not.set"));
+		generate(dir, "app/OnServlet", Type.AtConditionalOnWebApplication, av -> av.visitEnum("type",
+				"Lorg/springframework/boot/autoconfigure/condition/ConditionalOnWebApplication$Type;", "SERVLET"));
+		generate(dir, "app/OnData", Type.AtConditionalOnResource, av -> array(av, "resources", "classpath:data/data.sql"));
+		TypeSystem yamlTs = TypeSystem.get(Collections.singletonList(dir.getPath()));
+		try {
+			BuildTimeConditions yamlConditions = new BuildTimeConditions(yamlTs);
+			assertNull(yamlConditions.evaluate(yamlTs.resolveSlashed("app/OnMissing")));
+			assertNull(yamlConditions.evaluate(yamlTs.resolveSlashed("app/OnServlet")));
+			assertNotNull(yamlConditions.evaluate(yamlTs.resolveSlashed("app/OnData")));
+		} finally {
+			yamlTs.close();
+		}
+	}
+
+	@Test
+	public void bootJar() throws Exception {
+		File bootJar = File.createTempFile("boot", ".jar");
+		bootJar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(bootJar))) {
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/application.properties"));
+			zos.write("feature.enabled=false\n".getBytes(StandardCharsets.UTF_8));
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/data/schema.sql"));
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/app/OnEnabled.class"));
+			zos.write(generate("app/OnEnabled", Type.AtConditionalOnProperty, av -> array(av, "value", "feature.enabled")));
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/app/OnSchema.class"));
+			zos.write(generate("app/OnSchema", Type.AtConditionalOnResource, av -> array(av, "resources", "classpath:data/schema.sql")));
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/app/OnData.class"));
+			zos.write(generate("app/OnData", Type.AtConditionalOnResource, av -> array(av, "resources", "classpath:data/data.sql")));
+		}
+		TypeSystem bootTs = TypeSystem.get(Collections.singletonList(bootJar.getPath()));
+		try {
+			BuildTimeConditions bootConditions = new BuildTimeConditions(bootTs);
+			assertEquals("false", bootConditions.getProperty("feature.enabled"));
+			assertNotNull(bootConditions.evaluate(bootTs.resolveSlashed("app/OnEnabled")));
+			assertNull(bootConditions.evaluate(bootTs.resolveSlashed("app/OnSchema")));
+			assertNotNull(bootConditions.evaluate(bootTs.resolveSlashed("app/OnData")));
+		} finally {
+			bootTs.close();
+		}
+	}
+
+	private String evaluate(String slashedTypeName) {
+		return conditions.evaluate(ts.resolveSlashed(slashedTypeName));
+	}
+
+	private static void write(File dir, String name, String content) throws Exception {
+		File file = new File(dir, name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void array(AnnotationVisitor av, String name, String value) {
+		AnnotationVisitor values = av.visitArray(name);
+		values.visit(null, value);
+		values.visitEnd();
+	}
+
+	private static void generate(File dir, String slashedTypeName, String annotationDescriptor,
+			Consumer<AnnotationVisitor> attributes) throws Exception {
+		File file = new File(dir, slashedTypeName + ".class");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), generate(slashedTypeName, annotationDescriptor, attributes));
+	}
+
+	private static byte[] generate(String slashedTypeName, String annotationDescriptor,
+			Consumer<AnnotationVisitor> attributes) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, slashedTypeName, null, "java/lang/Object", null);
+		AnnotationVisitor av = cw.visitAnnotation(annotationDescriptor, true);
+		attributes.accept(av);
+		av.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.support.ReflectionHandler;
+import org.springframework.boot.graal.support.RegistrationLedger;
+import org.springframework.boot.graal.support.ResourcesHandler;
+import org.springframework.boot.graal.type.Type;
+import org.springframework.boot.graal.type.TypeSystem;
+
+import com.oracle.svm.hosted.ResourcesFeature.ResourcesRegistry;
+
+public class ConfigurationRegistrationTest {
+
+	private static final String PROXY_ASYNC_CONFIGURATION = "org.springframework.scheduling.annotation.ProxyAsyncConfiguration";
+
+	private static final String ABSTRACT_ASYNC_CONFIGURATION = "org.springframework.scheduling.annotation.AbstractAsyncConfiguration";
+
+	@Test
+	public void preciseConfigurationHierarchy() throws Exception {
+		ReflectionDescriptor registered = registerConfiguration(PROXY_ASYNC_CONFIGURATION, true);
+		ClassDescriptor config = registered.getClassDescriptor(PROXY_ASYNC_CONFIGURATION);
+		assertEquals(1, config.getFlags().size());
+		assertTrue(config.getFlags().contains(Flag.allDeclaredConstructors));
+		assertEquals(1, config.getMethods().size());
+		assertEquals("asyncAdvisor", config.getMethods().get(0).getName());
+		// The supertype gets what Spring reflects on too, its @Autowired setter
+		ClassDescriptor superConfig = registered.getClassDescriptor(ABSTRACT_ASYNC_CONFIGURATION);
+		assertFalse(superConfig.getFlags().contains(Flag.allDeclaredMethods));
+		assertEquals("setConfigurers", superConfig.getMethods().get(0).getName());
+	}
+
+	@Test
+	public void fullConfigurationHierarchy() throws Exception {
+		ReflectionDescriptor registered = registerConfiguration(PROXY_ASYNC_CONFIGURATION, false);
+		assertTrue(registered.getClassDescriptor(PROXY_ASYNC_CONFIGURATION).getFlags().contains(Flag.allDeclaredMethods));
+		assertTrue(registered.getClassDescriptor(ABSTRACT_ASYNC_CONFIGURATION).getFlags().contains(Flag.allDeclaredMethods));
+	}
+
+	@Test
+	public void preciseConfigurationCallbacks() throws Exception {
+		// Spring finds these through getDeclaredMethods() so they must be registered
+		File dir = Files.createTempDirectory("classes").toFile();
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "demo/CallbackConfiguration", null, "java/lang/Object", null);
+		cw.visitField(Opcodes.ACC_PRIVATE, "injected", "Ljava/lang/Object;", null, null).visitAnnotation(Type.AtInject, true);
+		cw.visitField(Opcodes.ACC_PRIVATE, "resource", "Ljava/lang/Object;", null, null).visitAnnotation(Type.AtResource, true);
+		cw.visitField(Opcodes.ACC_PRIVATE, "plain", "Ljava/lang/Object;", null, null);
+		method(cw, "init", Type.AtPostConstruct);
+		method(cw, "destroy", Type.AtPreDestroy);
+		method(cw, "onEvent", Type.AtEventListener);
+		method(cw, "afterCommit", "Lorg/springframework/transaction/event/TransactionalEventListener;");
+		method(cw, "setThing", Type.AtInject);
+		method(cw, "helper", null);
+		cw.visitEnd();
+		File file = new File(dir, "demo/CallbackConfiguration.class");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), cw.toByteArray());
+		List<String> classpath = springClasspath();
+		classpath.add(dir.getPath());
+		ClassDescriptor config = registerConfiguration(classpath, "demo.CallbackConfiguration", true)
+				.getClassDescriptor("demo.CallbackConfiguration");
+		assertEquals(new HashSet<>(Arrays.asList("init", "destroy", "onEvent", "afterCommit", "setThing")),
+				config.getMethods().stream().map(MethodDescriptor::getName).collect(Collectors.toSet()));
+		Set<String> fields = config.getFields().stream().map(FieldDescriptor::getName).collect(Collectors.toSet());
+		assertEquals(new HashSet<>(Arrays.asList("injected", "resource")), fields);
+	}
+
+	private static void method(ClassWriter cw, String name, String annotationDescriptor) {
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, name, "()V", null, null);
+		if (annotationDescriptor != null) {
+			mv.visitAnnotation(annotationDescriptor, true).visitEnd();
+		}
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 1);
+		mv.visitEnd();
+	}
+
+	private ReflectionDescriptor registerConfiguration(String configuration, boolean precise) {
+		return registerConfiguration(springClasspath(), configuration, precise);
+	}
+
+	private ReflectionDescriptor registerConfiguration(List<String> classpath, String configuration, boolean precise) {
+		RegistrationLedger ledger = new RegistrationLedger();
+		ReflectionHandler reflectionHandler = new ReflectionHandler() {
+			@Override
+			public Class<?> addAccess(String typename, List<MethodDescriptor> methods, List<FieldDescriptor> fields,
+					Flag... flags) {
+				ClassDescriptor request = ClassDescriptor.of(typename);
+				for (Flag flag : flags) {
+					request.setFlag(flag);
+				}
+				methods.forEach(request::addMethodDescriptor);
+				fields.forEach(request::addFieldDescriptor);
+				ledger.record(request);
+				return null;
+			}
+		};
+		ResourcesRegistry resourcesRegistry = new ResourcesRegistry() {
+			@Override
+			public void addResources(String pattern) {
+			}
+
+			@Override
+			public void addResourceBundles(String name) {
+			}
+		};
+		TypeSystem ts = TypeSystem.get(classpath);
+		try {
+			new ResourcesHandler(reflectionHandler, ts, resourcesRegistry)
+					.registerConfiguration(ts.resolveDotted(configuration), 0, precise);
+		} finally {
+			ts.close();
+		}
+		return ledger.getRecorded();
+	}
+
+	private List<String> springClasspath() {
+		List<String> classpath = new ArrayList<>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (new File(entry).getName().startsWith("spring-")) {
+				classpath.add(entry);
+			}
+		}
+		return classpath;
+	}
+
+}
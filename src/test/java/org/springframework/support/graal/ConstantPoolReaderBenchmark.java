@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.support.graal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.graal.type.ConstantPoolReader;
+import org.springframework.boot.graal.type.ConstantPoolScanner;
+import org.springframework.boot.graal.type.TypeSystem;
+
+/**
+ * Compares answering 'which classes reference this type' over every class in a jar using the original
+ * {@link ConstantPoolScanner}, the reusable {@link ConstantPoolReader} (over heap buffers and over one direct
+ * buffer holding all the classes, as a mapped file would) and ASM {@link ClassReader}. The classes are loaded
+ * up front so only the parsing is measured. Run with:
+ * <pre>
+ * java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main ConstantPoolReaderBenchmark -Dbenchmark.jar=...
+ * </pre>
+ * By default the jar containing {@link ClassReader} is used.
+ *
+ * @author Andy Clement
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ConstantPoolReaderBenchmark {
+
+	@Param({ "java/lang/StringBuilder" })
+	public String referencedType;
+
+	private List<byte[]> classes = new ArrayList<>();
+
+	private ByteBuffer mapped;
+
+	private int[] starts;
+
+	private ConstantPoolReader reader = new ConstantPoolReader();
+
+	@Setup
+	public void setup() throws IOException {
+		String jar = System.getProperty("benchmark.jar",
+				ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+		try (ZipFile zf = new ZipFile(new File(jar))) {
+			Enumeration<? extends ZipEntry> entries = zf.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.getName().endsWith(".class") && !entry.getName().endsWith("module-info.class")) {
+					classes.add(TypeSystem.loadFromStream(zf.getInputStream(entry)));
+				}
+			}
+		}
+		int total = 0;
+		for (byte[] bytes : classes) {
+			total += bytes.length;
+		}
+		mapped = ByteBuffer.allocateDirect(total);
+		starts = new int[classes.size()];
+		for (int i = 0; i < classes.size(); i++) {
+			starts[i] = mapped.position();
+			mapped.put(classes.get(i));
+		}
+	}
+
+	@Benchmark
+	public int scanner() {
+		int count = 0;
+		for (byte[] bytes : classes) {
+			if (ConstantPoolScanner.getReferences(bytes).getReferencedClasses().contains(referencedType)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int reader() {
+		int count = 0;
+		for (byte[] bytes : classes) {
+			if (reader.read(ByteBuffer.wrap(bytes)).referencesClass(referencedType)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int readerDirect() {
+		int count = 0;
+		ByteBuffer bb = mapped.duplicate();
+		for (int start : starts) {
+			bb.position(start);
+			if (reader.read(bb).referencesClass(referencedType)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int asm() {
+		int count = 0;
+		char[] buf = new char[1024];
+		for (byte[] bytes : classes) {
+			ClassReader cr = new ClassReader(bytes);
+			for (int i = 1, max = cr.getItemCount(); i < max; i++) {
+				int offset = cr.getItem(i);
+				if (offset > 0 && bytes[offset - 1] == 7 && referencedType.equals(cr.readUTF8(offset, buf))) {
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+}
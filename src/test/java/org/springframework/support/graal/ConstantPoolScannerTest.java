@@ -0,0 +1,88 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.boot.graal.type.ConstantPoolReader;
+import org.springframework.boot.graal.type.ConstantPoolScanner;
+import org.springframework.boot.graal.type.ConstantPoolScanner.References;
+import org.springframework.boot.graal.type.TypeSystem;
+
+public class ConstantPoolScannerTest {
+
+	@Test
+	public void references() throws Exception {
+		References references;
+		try (InputStream is = ConstantPoolScannerTest.class.getResourceAsStream("ConstantPoolScannerTest$Sample.class")) {
+			references = ConstantPoolScanner.getReferences(TypeSystem.loadFromStream(is));
+		}
+		assertEquals("org/springframework/support/graal/ConstantPoolScannerTest$Sample", references.slashedClassName);
+		List<String> classes = references.getReferencedClasses();
+		assertTrue(classes.contains("java/util/ArrayList"));
+		// Only mentioned in a method descriptor
+		assertTrue(classes.contains("java/io/InputStream"));
+		List<String> fields = new ArrayList<>();
+		for (int i = 0; i < references.getFieldCount(); i++) {
+			fields.add(references.getFieldOwner(i) + "." + references.getFieldName(i) + ":" + references.getFieldDescriptor(i));
+		}
+		assertTrue(fields.contains("java/lang/System.out:Ljava/io/PrintStream;"));
+		assertTrue(references.getReferencedMethods().contains("java/util/List.size()I"));
+		assertTrue(references.getReferencedMethods().contains("java/util/ArrayList.<init>()V"));
+	}
+
+	@Test
+	public void readerMatchesScanner() throws Exception {
+		ConstantPoolReader reader = new ConstantPoolReader();
+		// Reused across classes of increasing size and both kinds of buffer
+		for (Class<?> clazz : new Class<?>[] { Sample.class, TypeSystem.class, ConstantPoolScannerTest.class }) {
+			byte[] bytes;
+			try (InputStream is = clazz.getResourceAsStream(clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class")) {
+				bytes = TypeSystem.loadFromStream(is);
+			}
+			References references = ConstantPoolScanner.getReferences(bytes);
+			ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+			direct.put(new byte[3]).put(bytes).position(3);
+			for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.wrap(bytes), direct }) {
+				int position = bb.position();
+				reader.read(bb);
+				assertEquals(position, bb.position());
+				assertEquals(references.slashedClassName, reader.getClassName());
+				assertTrue(reader.isClassName(references.slashedClassName));
+				assertFalse(reader.isClassName(references.slashedClassName + "X"));
+				Set<String> classes = new LinkedHashSet<>();
+				reader.addReferencedClasses(classes);
+				assertEquals(new LinkedHashSet<>(references.getReferencedClasses()), classes);
+				assertTrue(reader.referencesClass("java/lang/Object"));
+				assertTrue(reader.referencesClassStartingWith("java/lang/"));
+				assertFalse(reader.referencesClassStartingWith("org/hibernate/"));
+			}
+		}
+		reader.read(ByteBuffer.wrap(TypeSystem.loadFromStream(getClass().getResourceAsStream("ConstantPoolScannerTest$Sample.class"))));
+		assertTrue(reader.referencesClass("java/util/ArrayList"));
+		assertFalse(reader.referencesClass("java/util/ArrayLis"));
+		assertTrue(reader.containsUtf8("(Ljava/io/InputStream;)I"));
+	}
+
+	static class Sample {
+
+		int sizeOfNothing() {
+			return size(null);
+		}
+
+		int size(InputStream is) {
+			List<String> list = new ArrayList<>();
+			System.out.println(list);
+			return list.size();
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.Test;
+import org.springframework.boot.configurationprocessor.json.JSONArray;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.boot.graal.domain.BinaryHints;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationJsonMarshaller;
+import org.springframework.boot.graal.domain.proxies.ProxiesDescriptorJsonMarshaller;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.ConditionDescriptor;
+import org.springframework.boot.graal.domain.reflect.JsonMarshaller;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.domain.resources.ResourcesJsonMarshaller;
+
+public class HintsFormatTest {
+
+	@Test
+	public void pullParserMatchesJsonTree() throws Exception {
+		String json = load("/reflect.json");
+		ReflectionDescriptor rd = JsonMarshaller.read(json);
+		JSONArray array = new JSONArray(json);
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < array.length(); i++) {
+			JSONObject object = array.getJSONObject(i);
+			String name = object.getString("name");
+			if (!names.contains(name)) {
+				names.add(name);
+			}
+			ClassDescriptor cd = rd.getClassDescriptor(name);
+			for (Flag flag : Flag.values()) {
+				if (object.optBoolean(flag.name())) {
+					assertTrue(name + " " + flag, cd.getFlags().contains(flag));
+				}
+			}
+			JSONArray methods = object.optJSONArray("methods");
+			if (methods != null) {
+				assertEquals(methods.length(), cd.getMethods().size());
+			}
+		}
+		assertEquals(names.size(), rd.size());
+		assertEquals(new JSONObject(load("/resources.json")).getJSONArray("resources").length(),
+				ResourcesJsonMarshaller.read(load("/resources.json")).getPatterns().size());
+		assertEquals(new JSONArray(load("/proxies.json")).length(),
+				ProxiesDescriptorJsonMarshaller.read(load("/proxies.json")).getProxyDescriptors().size());
+		assertEquals(new JSONObject(load("/initialization.json")).getJSONArray("runtimeInitialization").length(),
+				InitializationJsonMarshaller.read(load("/initialization.json")).getRuntimeClasses().size()
+						+ InitializationJsonMarshaller.read(load("/initialization.json")).getRuntimePackages().size());
+	}
+
+	@Test
+	public void relaxedSyntax() throws Exception {
+		ReflectionDescriptor rd = JsonMarshaller.read("# leading comment\n[ /* block\n */ {'name': 'a.A', allDeclaredMethods: true,"
+				+ " \"unknown\": {\"x\": [1, 2, {}]}, \"methods\": [{\"name\": \"foo\"}]}, ]");
+		ClassDescriptor cd = rd.getClassDescriptor("a.A");
+		assertTrue(cd.getFlags().contains(Flag.allDeclaredMethods));
+		// No parameter types means all methods of that name
+		assertNull(cd.getMethods().get(0).getParameterTypes());
+		try {
+			JsonMarshaller.read("[{\"name\": \"a.A\"}] trailing");
+			assertFalse(true);
+		} catch (IllegalStateException ise) {
+			assertTrue(ise.getMessage().contains("line 1"));
+		}
+	}
+
+	@Test
+	public void binaryRoundTrip() throws Exception {
+		BinaryHints hints = new BinaryHints();
+		hints.setReflection(JsonMarshaller.read(load("/reflect.json")));
+		hints.setResources(ResourcesJsonMarshaller.read(load("/resources.json")));
+		hints.setProxies(ProxiesDescriptorJsonMarshaller.read(load("/proxies.json")));
+		hints.setInitialization(InitializationJsonMarshaller.read(load("/initialization.json")));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		hints.write(baos);
+		BinaryHints read = BinaryHints.read(ByteBuffer.wrap(baos.toByteArray()));
+		assertEquals(hints.getReflection().toString(), read.getReflection().toString());
+		for (ClassDescriptor cd : hints.getReflection().getClassDescriptors()) {
+			ClassDescriptor other = read.getReflection().getClassDescriptor(cd.getName());
+			assertEquals(cd.getFlags(), other.getFlags());
+			assertEquals(cd.getMethods(), other.getMethods());
+			assertEquals(cd.getFields(), other.getFields());
+		}
+		assertEquals(hints.getResources().getPatterns(), read.getResources().getPatterns());
+		assertEquals(hints.getProxies().getProxyDescriptors(), read.getProxies().getProxyDescriptors());
+		assertEquals(hints.getInitialization().getBuildtimePackages(), read.getInitialization().getBuildtimePackages());
+		assertEquals(hints.getInitialization().getRuntimeClasses(), read.getInitialization().getRuntimeClasses());
+	}
+
+	@Test
+	public void conditions() throws Exception {
+		ReflectionDescriptor rd = JsonMarshaller.read("[{\"name\": \"a.A\", \"condition\": {\"typePresent\": \"a.Trigger\"}},"
+				+ "{\"name\": \"b.B\", \"condition\": {\"typeReachable\": \"b.Trigger\"}},"
+				+ "{\"name\": \"b.B\", \"condition\": {\"typeReachable\": \"b.Trigger\"}, \"allPublicMethods\": true}]");
+		assertEquals(ConditionDescriptor.typePresent("a.Trigger"), rd.getClassDescriptor("a.A").getCondition());
+		// Same condition, still conditional
+		assertEquals(ConditionDescriptor.typeReachable("b.Trigger"), rd.getClassDescriptor("b.B").getCondition());
+		// A different condition (or none) makes it unconditional
+		rd.add(ClassDescriptor.of("a.A"));
+		assertNull(rd.getClassDescriptor("a.A").getCondition());
+		BinaryHints hints = new BinaryHints();
+		hints.setReflection(rd);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		hints.write(baos);
+		BinaryHints read = BinaryHints.read(ByteBuffer.wrap(baos.toByteArray()));
+		assertNull(read.getReflection().getClassDescriptor("a.A").getCondition());
+		assertEquals(ConditionDescriptor.typeReachable("b.Trigger"), read.getReflection().getClassDescriptor("b.B").getCondition());
+	}
+
+	private String load(String resource) throws Exception {
+		try (InputStream is = HintsFormatTest.class.getResourceAsStream(resource);
+				Scanner scanner = new Scanner(is, StandardCharsets.UTF_8.name())) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+
+}
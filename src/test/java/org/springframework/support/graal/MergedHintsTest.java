@@ -0,0 +1,129 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.springframework.boot.graal.domain.MergedHints;
+import org.springframework.boot.graal.domain.buildtimeinit.InitializationDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.support.HintsMerger;
+import org.springframework.boot.graal.type.TypeSystem;
+
+public class MergedHintsTest {
+
+	@Test
+	public void mergesHintFilesFromTheClasspath() throws Exception {
+		File dir = Files.createTempDirectory("hints").toFile();
+		File config = new File(dir, "META-INF/native-image/demo/reflect-config.json");
+		config.getParentFile().mkdirs();
+		Files.write(config.toPath(), ("[{\"name\": \"demo.Foo\", \"allDeclaredConstructors\": true},"
+				+ "{\"name\": \"java.lang.Class\", \"allPublicMethods\": true}]").getBytes(StandardCharsets.UTF_8));
+		File jar = File.createTempFile("hints", ".jar");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry("META-INF/native-image/lib/reflect-config.json"));
+			zos.write(("[{\"name\": \"demo.Foo\", \"allDeclaredMethods\": true,"
+					+ " \"fields\": [{\"name\": \"f\", \"allowWrite\": true}]}]").getBytes(StandardCharsets.UTF_8));
+			zos.putNextEntry(new ZipEntry("META-INF/native-image/lib/resource-config.json"));
+			zos.write("{\"resources\": [{\"pattern\": \".*.proto\"}, {\"pattern\": \"META-INF/spring.factories\"}]}"
+					.getBytes(StandardCharsets.UTF_8));
+			zos.putNextEntry(new ZipEntry("META-INF/native-image/lib/broken/proxy-config.json"));
+			zos.write("[[".getBytes(StandardCharsets.UTF_8));
+			zos.putNextEntry(new ZipEntry("META-INF/native-image/lib/native-image.properties"));
+			zos.write("Args = -H:+ReportExceptionStackTraces".getBytes(StandardCharsets.UTF_8));
+		}
+		TypeSystem ts = TypeSystem.get(Arrays.asList(dir.getPath(), jar.getPath()));
+		try {
+			MergedHints hints = HintsMerger.merge(ts);
+			// The feature's own hints plus the three readable files, the broken one is skipped
+			assertEquals(4, hints.getSources().size());
+			assertFalse(hints.getSources().stream().anyMatch(s -> s.contains("broken")));
+			ClassDescriptor foo = hints.getReflection().getClassDescriptor("demo.Foo");
+			assertTrue(foo.getFlags().contains(Flag.allDeclaredConstructors));
+			assertTrue(foo.getFlags().contains(Flag.allDeclaredMethods));
+			assertTrue(foo.getFieldDescriptor("f").isAllowWrite());
+			assertEquals(2, hints.getReflectionSources("demo.Foo").size());
+			assertTrue(hints.getReflectionSources("demo.Foo").iterator().next().endsWith("reflect-config.json"));
+			// Also in the feature's own reflect.json
+			assertEquals(2, hints.getReflectionSources("java.lang.Class").size());
+			assertEquals(1, hints.getReflection().getClassDescriptors().stream()
+					.filter(cd -> cd.getName().equals("java.lang.Class")).count());
+			assertTrue(hints.getResources().getPatterns().contains(".*.proto"));
+			assertEquals(1, hints.getResources().getPatterns().stream()
+					.filter(p -> p.equals("META-INF/spring.factories")).count());
+			assertEquals(2, hints.getResourceSources("META-INF/spring.factories").size());
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void mergesHintFilesFromBootJars() throws Exception {
+		ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		try (ZipOutputStream zos = new ZipOutputStream(nested)) {
+			zos.putNextEntry(new ZipEntry("META-INF/native-image/lib/resource-config.json"));
+			zos.write("{\"resources\": [{\"pattern\": \".*.proto\"}]}".getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] lib = nested.toByteArray();
+		File bootJar = File.createTempFile("boot", ".jar");
+		bootJar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(bootJar))) {
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/demo/App.class"));
+			zos.write(new byte[] { 1, 2, 3 });
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/META-INF/native-image/demo/reflect-config.json"));
+			zos.write("[{\"name\": \"demo.Foo\", \"allDeclaredConstructors\": true}]".getBytes(StandardCharsets.UTF_8));
+			// Boot stores nested jars uncompressed
+			ZipEntry entry = new ZipEntry("BOOT-INF/lib/lib.jar");
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(lib.length);
+			CRC32 crc = new CRC32();
+			crc.update(lib);
+			entry.setCrc(crc.getValue());
+			zos.putNextEntry(entry);
+			zos.write(lib);
+		}
+		TypeSystem ts = TypeSystem.get(Collections.singletonList(bootJar.getPath()));
+		try {
+			MergedHints hints = HintsMerger.merge(ts);
+			assertTrue(hints.getReflection().getClassDescriptor("demo.Foo").getFlags().contains(Flag.allDeclaredConstructors));
+			assertEquals(Collections.singleton(bootJar + "!/BOOT-INF/classes!/META-INF/native-image/demo/reflect-config.json"),
+					hints.getReflectionSources("demo.Foo"));
+			assertTrue(hints.getResources().getPatterns().contains(".*.proto"));
+			assertEquals(Collections.singleton(bootJar + "!/BOOT-INF/lib/lib.jar!/META-INF/native-image/lib/resource-config.json"),
+					hints.getResourceSources(".*.proto"));
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void runtimeInitializationWins() {
+		MergedHints hints = new MergedHints();
+		InitializationDescriptor a = new InitializationDescriptor();
+		a.addBuildtimeClass("a.A");
+		a.addBuildtimeClass("b.B");
+		InitializationDescriptor b = new InitializationDescriptor();
+		b.addRuntimeClass("a.A");
+		b.addBuildtimeClass("b.B");
+		hints.add("one", a);
+		hints.add("two", b);
+		InitializationDescriptor merged = hints.getInitialization();
+		assertEquals(Collections.singletonList("b.B"), merged.getBuildtimeClasses());
+		assertEquals(Collections.singletonList("a.A"), merged.getRuntimeClasses());
+		assertFalse(merged.getBuildtimeClasses().contains("a.A"));
+	}
+
+}
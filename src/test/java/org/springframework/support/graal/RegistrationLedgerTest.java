@@ -0,0 +1,76 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor;
+import org.springframework.boot.graal.domain.reflect.ClassDescriptor.Flag;
+import org.springframework.boot.graal.domain.reflect.FieldDescriptor;
+import org.springframework.boot.graal.domain.reflect.MethodDescriptor;
+import org.springframework.boot.graal.domain.reflect.ReflectionDescriptor;
+import org.springframework.boot.graal.support.RegistrationLedger;
+
+public class RegistrationLedgerTest {
+
+	@Test
+	public void descriptorIndexMergesDuplicates() {
+		ReflectionDescriptor rd = new ReflectionDescriptor();
+		ClassDescriptor a = ClassDescriptor.of("a.A");
+		a.setFlag(Flag.allDeclaredConstructors);
+		rd.add(a);
+		rd.add(ClassDescriptor.of("b.B"));
+		// Nothing set at all, merging must cope with that
+		rd.add(ClassDescriptor.of("a.A"));
+		ClassDescriptor a2 = ClassDescriptor.of("a.A");
+		a2.setFlag(Flag.allPublicMethods);
+		a2.addFieldDescriptor(FieldDescriptor.of("f", false));
+		rd.add(a2);
+		assertEquals(2, rd.size());
+		assertEquals("a.A", rd.getClassDescriptors().get(0).getName());
+		assertTrue(rd.hasClassDescriptor("b.B"));
+		assertFalse(rd.hasClassDescriptor("c.C"));
+		ClassDescriptor merged = rd.getClassDescriptor("a.A");
+		assertTrue(merged.getFlags().contains(Flag.allDeclaredConstructors));
+		assertTrue(merged.getFlags().contains(Flag.allPublicMethods));
+		assertEquals(1, merged.getFields().size());
+	}
+
+	@Test
+	public void ledgerReturnsOnlyWhatIsNew() {
+		RegistrationLedger ledger = new RegistrationLedger();
+		ClassDescriptor first = ClassDescriptor.of("a.A");
+		first.setFlag(Flag.allDeclaredConstructors);
+		assertFalse(ledger.isRecorded("a.A"));
+		assertEquals(first.getFlags(), ledger.record(first).getFlags());
+		assertTrue(ledger.isRecorded("a.A"));
+		assertNull(ledger.record(first));
+
+		ClassDescriptor richer = ClassDescriptor.of("a.A");
+		richer.setFlag(Flag.allDeclaredConstructors);
+		richer.setFlag(Flag.allDeclaredMethods);
+		richer.addMethodDescriptor(MethodDescriptor.of("foo", "java.lang.String"));
+		richer.addFieldDescriptor(FieldDescriptor.of("f", false));
+		ClassDescriptor delta = ledger.record(richer);
+		assertEquals(1, delta.getFlags().size());
+		assertTrue(delta.getFlags().contains(Flag.allDeclaredMethods));
+		assertEquals(1, delta.getMethods().size());
+		assertEquals(1, delta.getFields().size());
+		assertNull(ledger.record(richer));
+
+		// Write access to a field already readable is still new
+		ClassDescriptor write = ClassDescriptor.of("a.A");
+		write.addFieldDescriptor(FieldDescriptor.of("f", true));
+		delta = ledger.record(write);
+		assertNull(delta.getFlags());
+		assertTrue(delta.getFields().get(0).isAllowWrite());
+		assertNull(ledger.record(write));
+
+		ledger.reset();
+		assertEquals(0, ledger.size());
+		assertEquals(first.getFlags(), ledger.record(first).getFlags());
+	}
+
+}
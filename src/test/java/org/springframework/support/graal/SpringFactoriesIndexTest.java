@@ -0,0 +1,31 @@
+package org.springframework.support.graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.springframework.internal.svm.SpringFactoriesIndex;
+
+public class SpringFactoriesIndexTest {
+
+	@Test
+	public void mergesInClasspathOrder() throws Exception {
+		Properties boot = load("a.Listener=a.One,\\\n  a.Two\nb.Initializer=b.One\n");
+		Properties app = load("a.Listener = c.Three\n");
+		SpringFactoriesIndex.set(Arrays.asList(boot, app));
+		assertEquals(Arrays.asList("a.One", "a.Two", "c.Three"), SpringFactoriesIndex.get().get("a.Listener"));
+		assertEquals(Arrays.asList("b.One"), SpringFactoriesIndex.get().get("b.Initializer"));
+		assertNull(SpringFactoriesIndex.get().get("c.Missing"));
+	}
+
+	private Properties load(String content) throws Exception {
+		Properties p = new Properties();
+		p.load(new StringReader(content));
+		return p;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.support.graal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.graal.type.TypeSystem;
+
+/**
+ * Compares sequential and parallel indexing/scanning of a classpath. By default the test classpath is used,
+ * point <tt>-Dbenchmark.classpath</tt> at a real Boot application classpath for representative numbers. The
+ * persistent classpath index is disabled so every iteration walks the jars. Run with:
+ * <pre>
+ * java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main TypeSystemBenchmark
+ * </pre>
+ *
+ * @author Andy Clement
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 2)
+@Fork(value = 1, jvmArgsAppend = "-DtypeSystemIndex=")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TypeSystemBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private List<String> classpath;
+
+	@Setup
+	public void setup() {
+		classpath = new ArrayList<>();
+		String cp = System.getProperty("benchmark.classpath", System.getProperty("java.class.path"));
+		for (String entry : cp.split(File.pathSeparator)) {
+			if (new File(entry).exists()) {
+				classpath.add(entry);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<String> indexAndScan() {
+		TypeSystem ts = TypeSystem.get(classpath, parallel);
+		try {
+			return ts.findTypesAnnotationAtConfiguration(false);
+		} finally {
+			ts.close();
+		}
+	}
+
+}
@@ -1,8 +1,40 @@
 package org.springframework.support.graal;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.springframework.boot.graal.type.ClasspathIndex;
+import org.springframework.boot.graal.type.DependencyGraph;
+import org.springframework.boot.graal.type.Method;
+import org.springframework.boot.graal.type.Type;
+import org.springframework.boot.graal.type.TypeSystem;
+import org.springframework.boot.graal.type.VerifiedMembers;
 
 public class TypeSystemTest {
 
@@ -12,4 +44,281 @@ public class TypeSystemTest {
 		System.out.println(file.getCanonicalPath());
 	}
 
+	@Test
+	public void parallelIndexAndScanMatchSequential() throws Exception {
+		List<String> classpath = springClasspath();
+		TypeSystem sequential = TypeSystem.get(classpath, false);
+		TypeSystem parallel = TypeSystem.get(classpath, true);
+		try {
+			List<String> expected = sequential.findTypesAnnotated("Lorg/springframework/stereotype/Component;", false);
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, parallel.findTypesAnnotated("Lorg/springframework/stereotype/Component;", false));
+			assertEquals(sequential.toString(), parallel.toString());
+			assertEquals(sequential.resolveDotted("org.springframework.context.annotation.Configuration").getName(),
+					parallel.resolveDotted("org.springframework.context.annotation.Configuration").getName());
+		} finally {
+			sequential.close();
+			parallel.close();
+		}
+	}
+
+	@Test
+	public void classpathIndexOnlyKeepsArchivesInUse() throws Exception {
+		File one = jar("one", "a/A.class");
+		File two = jar("two", "b/B.class");
+		File indexFile = File.createTempFile("classpath", ".idx");
+		indexFile.delete();
+		ClasspathIndex index = ClasspathIndex.load(indexFile);
+		index.get(one);
+		index.get(two);
+		index.save(indexFile);
+		index = ClasspathIndex.load(indexFile);
+		assertEquals(0, index.size());
+		assertArrayEquals(new String[] { "a/A.class" }, index.get(one).getClassNames());
+		assertFalse(index.isModified());
+		// Two was not asked for this time so it is dropped
+		index.save(indexFile);
+		index = ClasspathIndex.load(indexFile);
+		assertArrayEquals(new String[] { "b/B.class" }, index.get(two).getClassNames());
+		assertTrue(index.isModified());
+	}
+
+	private File jar(String name, String entry) throws Exception {
+		File jar = File.createTempFile(name, ".jar");
+		jar.deleteOnExit();
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry(entry));
+			zos.write(new byte[] { 1, 2, 3 });
+		}
+		return jar;
+	}
+
+	@Test
+	public void bootJarsAreKnownByTheirLayout() throws Exception {
+		// The spring-boot-loader jar on a normal classpath has the launcher but is not a Boot jar
+		File loader = jar("spring-boot-loader", "org/springframework/boot/loader/JarLauncher.class");
+		File libsOnly = jar("boot", "BOOT-INF/lib/nested.jar");
+		ClasspathIndex index = new ClasspathIndex();
+		assertFalse(index.get(loader).isBootJar());
+		assertTrue(index.get(libsOnly).isBootJar());
+		TypeSystem ts = TypeSystem.get(Collections.singletonList(loader.getPath()));
+		try {
+			assertEquals(Collections.singletonList("org/springframework/boot/loader/JarLauncher"),
+					ts.getTypesInJars(Pattern.compile("spring-boot-loader.*\\.jar")));
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void concurrentResolutionParsesOnce() throws Exception {
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Type>> tasks = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				tasks.add(() -> {
+					Type type = ts.resolveDotted("org.springframework.context.annotation.AnnotationConfigApplicationContext");
+					type.getInterfaces();
+					return type;
+				});
+			}
+			List<Future<Type>> results = executor.invokeAll(tasks);
+			Type first = results.get(0).get();
+			for (Future<Type> result : results) {
+				assertSame(first, result.get());
+			}
+			assertSame(first, ts.resolveDotted("org.springframework.context.annotation.AnnotationConfigApplicationContext"));
+		} finally {
+			executor.shutdown();
+			ts.close();
+		}
+	}
+
+	@Test
+	public void metaAnnotatedQueriesFollowAnnotationsOnAnnotations() throws Exception {
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		try {
+			// @Configuration is itself annotated with @Component
+			List<String> configurations = ts.findTypesAnnotationAtConfiguration(false);
+			assertFalse(configurations.isEmpty());
+			List<String> components = ts.findTypesAnnotated("Lorg/springframework/stereotype/Component;", true);
+			assertTrue(components.containsAll(configurations));
+			assertFalse(ts.findTypesAnnotated("Lorg/springframework/stereotype/Component;", false).containsAll(configurations));
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void dependencyGraphAnswersReachability() throws Exception {
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		try {
+			DependencyGraph graph = ts.getDependencyGraph();
+			assertSame(graph, ts.getDependencyGraph());
+			int context = graph.getId("org/springframework/context/annotation/AnnotationConfigApplicationContext");
+			assertTrue(context != -1);
+			assertEquals(-1, graph.getId("java/lang/Object"));
+			BitSet reached = graph.reachableFrom(Collections.singletonList(graph.getName(context)));
+			assertTrue(reached.get(graph.getId("org/springframework/beans/factory/BeanFactory")));
+			assertTrue(graph.reachesAny(reached, "org/springframework/core/"));
+			assertFalse(graph.reachesAny(reached, "org/hibernate/"));
+			// Nothing in spring-core depends on spring-context
+			BitSet fromCore = graph.reachableFrom(Collections.singletonList("org/springframework/core/io/Resource"));
+			assertFalse(graph.reachesAny(fromCore, "org/springframework/context/"));
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void configurationInjectionPoints() throws Exception {
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		try {
+			Type async = ts.resolveDotted("org.springframework.scheduling.annotation.AbstractAsyncConfiguration");
+			List<Method> autowired = async.getMethodsWithAnnotation(Type.AtAutowired);
+			assertEquals(1, autowired.size());
+			assertEquals("setConfigurers", autowired.get(0).getName());
+			assertEquals(Collections.singletonList("java.util.Collection"), autowired.get(0).getParameterTypeNames());
+			Type proxyAsync = ts.resolveDotted("org.springframework.scheduling.annotation.ProxyAsyncConfiguration");
+			assertEquals("asyncAdvisor", proxyAsync.getMethodsWithAtBean().get(0).getName());
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void verifiedMembersFromBytecode() throws Exception {
+		// Only spring jars and directories, so the native-image builder types are missing. The context class
+		// loader is asked for anything not on the classpath, so it must not see them either.
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(new URLClassLoader(new URL[0], null));
+		try {
+			VerifiedMembers members = ts.getVerifiedMembers("org/springframework/boot/graal/support/ReflectionHandler");
+			assertSame(members, ts.getVerifiedMembers("org/springframework/boot/graal/support/ReflectionHandler"));
+			assertFalse(member(members.getFields(), "rra").isVerified());
+			assertTrue(member(members.getFields(), "constantReflectionDescriptor").isVerified());
+			assertTrue(member(members.getMethods(), "getConstantData").isVerified());
+			// DuringSetupAccess is in the graal sdk
+			assertFalse(member(members.getMethods(), "register").isVerified());
+			assertFalse(VerifiedMembers.allVerified(members.getMethods()));
+			assertTrue(VerifiedMembers.allVerified(members.getConstructors()));
+			assertNull(ts.getVerifiedMembers("does/not/Exist"));
+		} finally {
+			thread.setContextClassLoader(contextClassLoader);
+			ts.close();
+		}
+	}
+
+	@Test
+	public void verifiedMembersSeeClasspathTypesInJdkPackages() throws Exception {
+		// The JDK has javax/transaction/xa but not this type, as on JDK 8 where jars such as jta add to javax/transaction
+		File dir = Files.createTempDirectory("classes").toFile();
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+				"javax/transaction/xa/Extra", null, "java/lang/Object", null);
+		cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "extra", "()V", null, null).visitEnd();
+		cw.visitEnd();
+		write(dir, "javax/transaction/xa/Extra", cw.toByteArray());
+		cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "demo/Uses", null, "java/lang/Object",
+				new String[] { "javax/transaction/xa/Extra" });
+		cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "use", "(Ljavax/transaction/xa/Extra;)V", null, null).visitEnd();
+		cw.visitEnd();
+		write(dir, "demo/Uses", cw.toByteArray());
+		TypeSystem ts = TypeSystem.get(Collections.singletonList(dir.getPath()));
+		try {
+			VerifiedMembers members = ts.getVerifiedMembers("demo/Uses");
+			assertTrue(member(members.getMethods(), "use").isVerified());
+			assertTrue(members.arePublicMethodsVerified());
+		} finally {
+			ts.close();
+		}
+	}
+
+	private static void write(File dir, String slashedTypeName, byte[] bytes) throws Exception {
+		File file = new File(dir, slashedTypeName + ".class");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), bytes);
+	}
+
+	private VerifiedMembers.Member member(List<VerifiedMembers.Member> members, String name) {
+		for (VerifiedMembers.Member member : members) {
+			if (member.getName().equals(name)) {
+				return member;
+			}
+		}
+		throw new IllegalStateException("No member " + name);
+	}
+
+	@Test
+	public void bootJarIsReadInPlace() throws Exception {
+		File bootJar = File.createTempFile("boot", ".jar");
+		bootJar.deleteOnExit();
+		File springContext = null;
+		for (String entry : springClasspath()) {
+			if (new File(entry).getName().startsWith("spring-context-")) {
+				springContext = new File(entry);
+			}
+		}
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(bootJar))) {
+			zos.putNextEntry(new ZipEntry("BOOT-INF/classes/org/springframework/boot/graal/type/Method.class"));
+			try (InputStream is = TypeSystem.class.getResourceAsStream("Method.class")) {
+				zos.write(TypeSystem.loadFromStream(is));
+			}
+			// Boot stores nested jars uncompressed
+			byte[] jar = Files.readAllBytes(springContext.toPath());
+			ZipEntry lib = new ZipEntry("BOOT-INF/lib/" + springContext.getName());
+			lib.setMethod(ZipEntry.STORED);
+			lib.setSize(jar.length);
+			CRC32 crc = new CRC32();
+			crc.update(jar);
+			lib.setCrc(crc.getValue());
+			zos.putNextEntry(lib);
+			zos.write(jar);
+		}
+		TypeSystem ts = TypeSystem.get(Collections.singletonList(bootJar.getPath()));
+		try {
+			assertEquals(Collections.singletonList("org/springframework/boot/graal/type/Method"), ts.getApplicationTypes());
+			assertEquals("org/springframework/boot/graal/type/Method", ts.resolve("org/springframework/boot/graal/type/Method").getName());
+			assertEquals("org/springframework/context/annotation/Configuration",
+					ts.resolve("org/springframework/context/annotation/Configuration").getName());
+			assertFalse(ts.findTypesAnnotated("Lorg/springframework/stereotype/Component;", true).isEmpty());
+			assertTrue(ts.getTypesInJars(Pattern.compile("spring-context-.*\\.jar"))
+					.contains("org/springframework/context/annotation/Configuration"));
+		} finally {
+			ts.close();
+		}
+	}
+
+	@Test
+	public void stereotypesFromJars() throws Exception {
+		TypeSystem ts = TypeSystem.get(springClasspath());
+		try {
+			List<String> types = ts.getTypesInJars(Pattern.compile("spring-context-.*\\.jar"));
+			assertTrue(types.contains("org/springframework/stereotype/Service"));
+			assertFalse(types.contains("org/springframework/beans/factory/BeanFactory"));
+			// Both find @Indexed through @Component, the second from the shared meta-annotation search
+			assertEquals("org.springframework.stereotype.Component",
+					ts.resolve("org/springframework/stereotype/Service").isIndexedOrEntity().getValue());
+			assertEquals("org.springframework.stereotype.Component",
+					ts.resolve("org/springframework/context/annotation/Configuration").isIndexedOrEntity().getValue());
+		} finally {
+			ts.close();
+		}
+	}
+
+	private List<String> springClasspath() {
+		List<String> classpath = new ArrayList<>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			File f = new File(entry);
+			if (f.getName().startsWith("spring-") || f.isDirectory()) {
+				classpath.add(entry);
+			}
+		}
+		return classpath;
+	}
+
 }